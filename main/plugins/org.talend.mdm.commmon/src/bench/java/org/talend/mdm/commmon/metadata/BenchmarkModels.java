@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * <p>
+ * Generates data models for benchmark harnesses. Entity <code>Entity<i>n</i></code> has an <code>Id</code> key, a
+ * number of optional simple fields (<code>field0</code>, <code>field1</code>...), a foreign key to the previous entity
+ * and a contained <code>address</code> type.
+ * </p>
+ * <p>
+ * A <i>modified</i> model has the same entities, but simple fields are mandatory (except the last one) and each entity
+ * has a new <code>added</code> field: comparing a model with its modified version gives
+ * <code>entityCount * fieldCount</code> changes.
+ * </p>
+ */
+public class BenchmarkModels {
+
+    private BenchmarkModels() {
+    }
+
+    /**
+     * @param entityCount Number of entity types in model.
+     * @param fieldCount Number of simple fields per entity type (at least 1).
+     * @param isModified <code>true</code> to generate the modified version of the model.
+     * @return A XML schema for the generated model.
+     */
+    public static String generate(int entityCount, int fieldCount, boolean isModified) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+        builder.append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">\n"); //$NON-NLS-1$
+        for (int i = 0; i < entityCount; i++) {
+            String entityName = "Entity" + i; //$NON-NLS-1$
+            builder.append("<xsd:element name=\"").append(entityName).append("\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            builder.append("<xsd:complexType><xsd:sequence>\n"); //$NON-NLS-1$
+            appendField(builder, "Id", "xsd:string", true); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int j = 0; j < fieldCount; j++) {
+                boolean isMandatory = isModified && j < fieldCount - 1;
+                appendField(builder, "field" + j, j % 2 == 0 ? "xsd:string" : "xsd:int", isMandatory); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            if (isModified) {
+                appendField(builder, "added", "xsd:string", false); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (i > 0) {
+                builder.append("<xsd:element name=\"ref\" type=\"xsd:string\" minOccurs=\"0\" maxOccurs=\"1\">"); //$NON-NLS-1$
+                builder.append("<xsd:annotation><xsd:appinfo source=\"X_ForeignKey\">Entity").append(i - 1) //$NON-NLS-1$
+                        .append("/Id</xsd:appinfo></xsd:annotation></xsd:element>\n"); //$NON-NLS-1$
+            }
+            builder.append("<xsd:element name=\"address\" minOccurs=\"0\" maxOccurs=\"1\"><xsd:complexType><xsd:sequence>"); //$NON-NLS-1$
+            appendField(builder, "city", "xsd:string", false); //$NON-NLS-1$ //$NON-NLS-2$
+            builder.append("</xsd:sequence></xsd:complexType></xsd:element>\n"); //$NON-NLS-1$
+            builder.append("</xsd:sequence></xsd:complexType>\n"); //$NON-NLS-1$
+            builder.append("<xsd:unique name=\"").append(entityName) //$NON-NLS-1$
+                    .append("\"><xsd:selector xpath=\".\"/><xsd:field xpath=\"Id\"/></xsd:unique>\n"); //$NON-NLS-1$
+            builder.append("</xsd:element>\n"); //$NON-NLS-1$
+        }
+        builder.append("</xsd:schema>\n"); //$NON-NLS-1$
+        return builder.toString();
+    }
+
+    /**
+     * @return A new {@link MetadataRepository} with the model generated by
+     * {@link #generate(int, int, boolean)} loaded.
+     */
+    public static MetadataRepository load(int entityCount, int fieldCount, boolean isModified) {
+        MetadataRepository repository = new MetadataRepository();
+        try {
+            repository.load(new ByteArrayInputStream(generate(entityCount, fieldCount, isModified).getBytes("UTF-8"))); //$NON-NLS-1$
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return repository;
+    }
+
+    private static void appendField(StringBuilder builder, String name, String type, boolean isMandatory) {
+        builder.append("<xsd:element name=\"").append(name).append("\" type=\"").append(type) //$NON-NLS-1$ //$NON-NLS-2$
+                .append("\" minOccurs=\"").append(isMandatory ? 1 : 0).append("\" maxOccurs=\"1\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
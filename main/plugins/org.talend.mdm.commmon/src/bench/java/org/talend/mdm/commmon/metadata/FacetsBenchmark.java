@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>
+ * Compares the digit scan used by {@link Facets#check(CharSequence)} for total and fraction digits facets with the
+ * usual check that parses each value with {@link BigDecimal} (<code>stripTrailingZeros()</code>, then precision and
+ * scale). Both counts are compared for each value before measure starts.
+ * </p>
+ * <p>
+ * This is a plain harness (not part of the plug-in build): run <code>main</code> with the plug-in classes on class
+ * path. Arguments are the number of values per round (default 1000000) and the number of rounds (default 10, first
+ * half is warm up).
+ * </p>
+ */
+public class FacetsBenchmark {
+
+    private static final String[] VALUES = { "0", "42", "-12345", "1234567.89", "0.001", "100.500", "+007.250", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+            "99999999999999999999.99", " 3.14 ", "1.5E3" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        for (String value : VALUES) {
+            if (Facets.countDigits(value) != countDigitsWithBigDecimal(value)) {
+                throw new IllegalStateException("Digit counts differ for '" + value + "'."); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += countDigitsWithBigDecimal(VALUES[i % VALUES.length]);
+            }
+            long bigDecimalTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += Facets.countDigits(VALUES[i % VALUES.length]);
+            }
+            long scanTime = System.nanoTime() - start;
+            if (round >= rounds / 2) {
+                System.out.println("Round " + round + ": BigDecimal " + nanosPerValue(bigDecimalTime, count) //$NON-NLS-1$ //$NON-NLS-2$
+                        + " ns/value, digit scan " + nanosPerValue(scanTime, count) + " ns/value"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        System.out.println("(" + sink + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    // Same result as Facets#countDigits(CharSequence), but parses every value.
+    private static long countDigitsWithBigDecimal(String value) {
+        try {
+            BigDecimal decimal = new BigDecimal(value.trim());
+            if (decimal.signum() == 0) {
+                return 1L << 32;
+            }
+            decimal = decimal.stripTrailingZeros();
+            int fractionDigits = Math.max(decimal.scale(), 0);
+            int totalDigits = decimal.scale() < 0 ? decimal.precision() - decimal.scale() : Math.max(decimal.precision(),
+                    fractionDigits);
+            return ((long) totalDigits << 32) | fractionDigits;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long nanosPerValue(long time, int count) {
+        return time / Math.max(1, count);
+    }
+}
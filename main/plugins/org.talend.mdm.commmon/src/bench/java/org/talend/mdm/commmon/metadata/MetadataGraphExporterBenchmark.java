@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * <p>
+ * Measures {@link MetadataGraphExporter} throughput (entities per second) and peak heap usage for each
+ * {@link MetadataGraphExporter.Format format} on a {@link BenchmarkModels generated model}. Graph is written to a
+ * writer that only counts characters, so measure does not include I/O.
+ * </p>
+ * <p>
+ * This is a plain harness (not part of the plug-in build): run <code>main</code> with the plug-in classes and their
+ * dependencies on class path. Arguments are the number of entities (default 2000) and the number of rounds (default
+ * 10, first half is warm up). Peak memory is read from heap memory pools (reset before each export).
+ * </p>
+ */
+public class MetadataGraphExporterBenchmark {
+
+    private static final int FIELD_COUNT = 5;
+
+    public static void main(String[] args) throws IOException {
+        int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        MetadataRepository repository = BenchmarkModels.load(entityCount, FIELD_COUNT, false);
+        for (int round = 0; round < rounds; round++) {
+            for (MetadataGraphExporter.Format format : MetadataGraphExporter.Format.values()) {
+                MetadataGraphExporter exporter = new MetadataGraphExporter(format);
+                CountingWriter writer = new CountingWriter();
+                System.gc();
+                resetPeakUsage();
+                long start = System.nanoTime();
+                exporter.export(repository, writer);
+                long time = System.nanoTime() - start;
+                long peakUsage = getPeakUsage();
+                if (round >= rounds / 2) {
+                    System.out.println("Round " + round + ": " + format + " " + writer.count + " chars, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                            + (long) (entityCount / (time / 1e9)) + " entities/s, peak heap " + (peakUsage / 1024) //$NON-NLS-1$
+                            + " KB"); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakUsage() {
+        long peakUsage = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakUsage += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peakUsage;
+    }
+
+    private static class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String value, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
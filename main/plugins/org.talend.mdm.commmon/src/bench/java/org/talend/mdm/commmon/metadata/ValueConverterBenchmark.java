@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>
+ * Compares {@link ValueConverter} (resolved once per type) with the usual conversion that dispatches on type name for
+ * each value (<code>Types</code> constants compared with the type name, then <code>Integer.valueOf</code>...).
+ * </p>
+ * <p>
+ * This is a plain harness (not part of the plug-in build): run <code>main</code> with the plug-in classes on class
+ * path. Arguments are the number of values per round (default 1000000) and the number of rounds (default 10, first
+ * half is warm up).
+ * </p>
+ */
+public class ValueConverterBenchmark {
+
+    private static final String[] TYPE_NAMES = { Types.INT, Types.LONG, Types.DECIMAL, Types.BOOLEAN, Types.STRING };
+
+    private static final String[][] VALUES = { { "0", "42", "-12345", "2147483647" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            { "0", "9876543210", "-1", "9223372036854775807" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            { "0.5", "12.25", "-3.125", "1000" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            { "true", "false", "1", "0" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            { "a", "value", "", "another value" } }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ValueConverter[] converters = new ValueConverter[TYPE_NAMES.length];
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            converters[i] = ValueConverter.get(TYPE_NAMES[i]);
+        }
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                int type = i % TYPE_NAMES.length;
+                sink += dispatch(TYPE_NAMES[type], VALUES[type][i & 3]).hashCode();
+            }
+            long dispatchTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                int type = i % TYPE_NAMES.length;
+                sink += converters[type].parse(VALUES[type][i & 3]).hashCode();
+            }
+            long converterTime = System.nanoTime() - start;
+            if (round >= rounds / 2) {
+                System.out.println("Round " + round + ": type name dispatch " + nanosPerValue(dispatchTime, count) //$NON-NLS-1$ //$NON-NLS-2$
+                        + " ns/value, value converter " + nanosPerValue(converterTime, count) + " ns/value"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        System.out.println("(" + sink + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    // Conversion as done by callers that only know the type name of the value.
+    private static Object dispatch(String typeName, String value) {
+        if (Types.STRING.equals(typeName)) {
+            return value;
+        } else if (Types.INTEGERS.contains(typeName)) {
+            return Integer.valueOf(value.trim());
+        } else if (Types.LONGS.contains(typeName)) {
+            return Long.valueOf(value.trim());
+        } else if (Types.DECIMAL.equals(typeName)) {
+            return new BigDecimal(value.trim());
+        } else if (Types.BOOLEAN.equals(typeName)) {
+            String trimmed = value.trim();
+            return Boolean.valueOf("true".equals(trimmed) || "1".equals(trimmed)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return value;
+    }
+
+    private static long nanosPerValue(long time, int count) {
+        return time / Math.max(1, count);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import org.talend.mdm.commmon.metadata.BenchmarkModels;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+
+/**
+ * <p>
+ * Measures binary and JSON encoding and decoding of a diff with {@link DiffResultsCodec}. Diff is computed between 2
+ * {@link BenchmarkModels generated models} (5 changes per entity, so 10,000 changes with default arguments).
+ * </p>
+ * <p>
+ * This is a plain harness (not part of the plug-in build): run <code>main</code> with the plug-in classes and their
+ * dependencies on class path. Arguments are the number of entities (default 2000) and the number of rounds (default
+ * 10, first half is warm up).
+ * </p>
+ */
+public class DiffResultsCodecBenchmark {
+
+    private static final int FIELD_COUNT = 5;
+
+    public static void main(String[] args) throws Exception {
+        int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        MetadataRepository previous = BenchmarkModels.load(entityCount, FIELD_COUNT, false);
+        MetadataRepository current = BenchmarkModels.load(entityCount, FIELD_COUNT, true);
+        Compare.DiffResults diffResults = Compare.compare(previous, current);
+        int changeCount = diffResults.getActions().size();
+        System.out.println("Diff has " + changeCount + " changes."); //$NON-NLS-1$ //$NON-NLS-2$
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            byte[] encoded = DiffResultsCodec.encode(diffResults);
+            long binaryEncodeTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            sink += DiffResultsCodec.decode(encoded, previous, current).getActions().size();
+            long binaryDecodeTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            String json = DiffResultsCodec.encodeJson(diffResults);
+            long jsonEncodeTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            sink += DiffResultsCodec.decodeJson(json, previous, current).getActions().size();
+            long jsonDecodeTime = System.nanoTime() - start;
+            if (round >= rounds / 2) {
+                System.out.println("Round " + round + ": binary " + encoded.length + " bytes, encode " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + nanosPerChange(binaryEncodeTime, changeCount) + " ns/change, decode " //$NON-NLS-1$
+                        + nanosPerChange(binaryDecodeTime, changeCount) + " ns/change; JSON " + json.length() //$NON-NLS-1$
+                        + " chars, encode " + nanosPerChange(jsonEncodeTime, changeCount) + " ns/change, decode " //$NON-NLS-1$ //$NON-NLS-2$
+                        + nanosPerChange(jsonDecodeTime, changeCount) + " ns/change"); //$NON-NLS-1$
+            }
+        }
+        System.out.println("(" + sink + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static long nanosPerChange(long time, int count) {
+        return time / Math.max(1, count);
+    }
+}
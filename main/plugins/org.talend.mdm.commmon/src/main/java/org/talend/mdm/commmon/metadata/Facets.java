@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Facets of a simple type (max length, total digits, fraction digits and enumeration) resolved once from the type and
+ * its super types: a facet not declared on a type is inherited from the closest super type with the same concrete XML
+ * schema type (same rule as {@link org.talend.mdm.commmon.util.core.CommonUtil#getSuperTypeMaxLength(TypeMetadata, TypeMetadata)}).
+ * </p>
+ * <p>
+ * Instances are immutable. {@link #check(CharSequence)} checks a lexical value against facets: digits are counted
+ * with a single scan of the value (no number parsing) for plain decimal values.
+ * </p>
+ *
+ * @see SimpleTypeMetadata#getFacets()
+ */
+public class Facets {
+
+    /**
+     * Value of a facet that is not set.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Facets of a type with no facet.
+     */
+    public static final Facets EMPTY = new Facets(NONE, NONE, NONE, null);
+
+    private final int maxLength;
+
+    private final int totalDigits;
+
+    private final int fractionDigits;
+
+    private final Set<String> enumeration;
+
+    private Facets(int maxLength, int totalDigits, int fractionDigits, Set<String> enumeration) {
+        this.maxLength = maxLength;
+        this.totalDigits = totalDigits;
+        this.fractionDigits = fractionDigits;
+        this.enumeration = enumeration;
+    }
+
+    /**
+     * @param type A simple type.
+     * @return Facets of <code>type</code> (uses the facets cached by {@link SimpleTypeMetadata} when possible).
+     */
+    public static Facets of(TypeMetadata type) {
+        if (type instanceof SimpleTypeMetadata) {
+            return ((SimpleTypeMetadata) type).getFacets();
+        }
+        return resolve(type);
+    }
+
+    static Facets resolve(TypeMetadata type) {
+        if (type == null) {
+            return EMPTY;
+        }
+        String concreteTypeName = MetadataUtils.getSuperConcreteType(type).getName();
+        int maxLength = toInt(getFacet(type, concreteTypeName, MetadataRepository.DATA_MAX_LENGTH));
+        int totalDigits = toInt(getFacet(type, concreteTypeName, MetadataRepository.DATA_TOTAL_DIGITS));
+        int fractionDigits = toInt(getFacet(type, concreteTypeName, MetadataRepository.DATA_FRACTION_DIGITS));
+        List<String> enumerationValues = getFacet(type, concreteTypeName, MetadataRepository.DATA_ENUMERATION_VALUES);
+        Set<String> enumeration = enumerationValues == null ? null : Collections.unmodifiableSet(new HashSet<String>(
+                enumerationValues));
+        if (maxLength == NONE && totalDigits == NONE && fractionDigits == NONE && enumeration == null) {
+            return EMPTY;
+        }
+        return new Facets(maxLength, totalDigits, fractionDigits, enumeration);
+    }
+
+    private static <T> T getFacet(TypeMetadata type, String concreteTypeName, String facetName) {
+        T value = type.<T> getData(facetName);
+        if (value == null) {
+            for (TypeMetadata superType : type.getSuperTypes()) {
+                if (concreteTypeName.equals(MetadataUtils.getSuperConcreteType(superType).getName())) {
+                    value = getFacet(superType, concreteTypeName, facetName);
+                }
+            }
+        }
+        return value;
+    }
+
+    private static int toInt(Object facetValue) {
+        if (facetValue == null) {
+            return NONE;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(facetValue));
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * @return Max length or {@link #NONE}.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return Total digits or {@link #NONE}.
+     */
+    public int getTotalDigits() {
+        return totalDigits;
+    }
+
+    /**
+     * @return Fraction digits or {@link #NONE}.
+     */
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    /**
+     * @return Read only set of enumeration values or <code>null</code> if type is not an enumeration.
+     */
+    public Set<String> getEnumeration() {
+        return enumeration;
+    }
+
+    /**
+     * @return <code>true</code> if no facet is set.
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /**
+     * @param value A lexical value.
+     * @return A message that describes the first facet <code>value</code> does not satisfy, or <code>null</code> if
+     * value satisfies all facets. Digits facets are only checked on number values.
+     */
+    public String check(CharSequence value) {
+        if (this == EMPTY) {
+            return null;
+        }
+        if (enumeration != null && !enumeration.contains(value.toString())) {
+            return "Value '" + value + "' is not in enumeration " + enumeration + "."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        if (maxLength != NONE && value.length() > maxLength
+                && Character.codePointCount(value, 0, value.length()) > maxLength) {
+            return "Value '" + value + "' exceeds max length (" + maxLength + ")."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        if (totalDigits != NONE || fractionDigits != NONE) {
+            long digits = countDigits(value);
+            if (digits >= 0) {
+                int total = (int) (digits >>> 32);
+                int fraction = (int) digits;
+                if (totalDigits != NONE && total > totalDigits) {
+                    return "Value '" + value + "' has more than " + totalDigits + " total digits."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                }
+                if (fractionDigits != NONE && fraction > fractionDigits) {
+                    return "Value '" + value + "' has more than " + fractionDigits + " fraction digits."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts significant digits (leading zeros of integer part and trailing zeros of fraction part are not significant).
+     *
+     * @return Total digits in high 32 bits and fraction digits in low 32 bits, or <code>-1</code> if value is not a
+     * number.
+     */
+    static long countDigits(CharSequence value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end && (value.charAt(start) == '+' || value.charAt(start) == '-')) {
+            start++;
+        }
+        int integerDigits = 0; // Significant digits in integer part
+        int fractionEnd = -1; // Position after last non zero fraction digit
+        int fractionStart = -1;
+        boolean hasDigit = false;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (fractionStart < 0) {
+                    if (integerDigits > 0 || c != '0') {
+                        integerDigits++;
+                    }
+                } else if (c != '0') {
+                    fractionEnd = i + 1;
+                }
+            } else if (c == '.' && fractionStart < 0) {
+                fractionStart = i + 1;
+            } else {
+                return countDigitsSlow(value.subSequence(start, end).toString()); // e.g. exponent notation
+            }
+        }
+        if (!hasDigit) {
+            return -1;
+        }
+        int fractionDigits = fractionEnd < 0 ? 0 : fractionEnd - fractionStart;
+        int totalDigits = Math.max(integerDigits + fractionDigits, 1); // "0" has 1 digit
+        return ((long) totalDigits << 32) | fractionDigits;
+    }
+
+    private static long countDigitsSlow(String value) {
+        try {
+            BigDecimal decimal = new BigDecimal(value);
+            if (decimal.signum() == 0) {
+                return 1L << 32;
+            }
+            decimal = decimal.stripTrailingZeros();
+            int fractionDigits = Math.max(decimal.scale(), 0);
+            // Same count as plain values: leading zeros of fraction part (e.g. 0.01) are digits
+            int totalDigits = decimal.scale() < 0 ? decimal.precision() - decimal.scale() : Math.max(decimal.precision(),
+                    fractionDigits);
+            return ((long) totalDigits << 32) | fractionDigits;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Facets {maxLength=" + maxLength + ", totalDigits=" + totalDigits + ", fractionDigits=" + fractionDigits //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + ", enumeration=" + enumeration + '}'; //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Computes entity rank (see {@link MetadataUtils#computeEntityRank(MetadataRepository)}) with power iteration over the
+ * foreign key graph of a {@link ReferenceGraph}. Each iteration computes all ranks from the ranks of previous iteration,
+ * so entities can be split in ranges processed by different threads.
+ */
+class IterativeEntityRank {
+
+    private static final Logger LOGGER = Logger.getLogger(IterativeEntityRank.class);
+
+    static final int MAX_ITERATIONS = 1000;
+
+    private final ReferenceGraph graph;
+
+    private final double damping;
+
+    private final double tolerance;
+
+    private final int threads;
+
+    // Direct foreign keys (self references excluded) in CSR form: source i references targets[offsets[i]..offsets[i+1]-1]
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    // Number of direct foreign keys that point to each entity (self references included).
+    private final int[] inboundCount;
+
+    IterativeEntityRank(ReferenceGraph graph, double damping, double tolerance, int threads) {
+        if (damping < 0 || damping >= 1) {
+            throw new IllegalArgumentException("Damping factor must be in [0, 1[ (was " + damping + ").");
+        }
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be greater than 0 (was " + tolerance + ").");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread number must be greater than 0 (was " + threads + ").");
+        }
+        this.graph = graph;
+        this.damping = damping;
+        this.tolerance = tolerance;
+        this.threads = threads;
+        int size = graph.size();
+        int[] outboundOffsets = graph.getOutboundOffsets();
+        int[] outboundTargets = graph.getOutboundTargets();
+        offsets = new int[size + 1];
+        inboundCount = new int[size];
+        int[] directTargets = new int[graph.getEdgeCount()];
+        int count = 0;
+        for (int source = 0; source < size; source++) {
+            offsets[source] = count;
+            for (int edge = outboundOffsets[source]; edge < outboundOffsets[source + 1]; edge++) {
+                int target = outboundTargets[edge];
+                // Graph also links a FK to all sub types of the referenced type: only keep the referenced type.
+                if (graph.getId(graph.getOutboundField(edge).getReferencedType()) != target) {
+                    continue;
+                }
+                inboundCount[target]++;
+                if (target != source) {
+                    directTargets[count++] = target;
+                }
+            }
+        }
+        offsets[size] = count;
+        targets = new int[count];
+        System.arraycopy(directTargets, 0, targets, 0, count);
+    }
+
+    Map<ComplexTypeMetadata, Long> compute() {
+        int size = graph.size();
+        double[] rank = new double[size];
+        double[] nextRank = new double[size];
+        double[] contribution = new double[size];
+        for (int i = 0; i < size; i++) {
+            rank[i] = size;
+        }
+        ExecutorService executor = threads > 1 && size > threads ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            int iteration = 0;
+            double delta = Double.MAX_VALUE;
+            while (delta > tolerance && iteration < MAX_ITERATIONS) {
+                for (int i = 0; i < size; i++) {
+                    contribution[i] = inboundCount[i] == 0 ? 0 : rank[i] / inboundCount[i];
+                }
+                if (executor == null) {
+                    delta = iterate(0, size, contribution, rank, nextRank);
+                } else {
+                    delta = iterate(executor, contribution, rank, nextRank);
+                }
+                double[] swap = rank;
+                rank = nextRank;
+                nextRank = swap;
+                iteration++;
+            }
+            if (delta > tolerance) {
+                LOGGER.warn("Entity rank did not converge after " + iteration + " iterations (delta: " + delta + ").");
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Entity rank converged after " + iteration + " iterations.");
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        Map<ComplexTypeMetadata, Long> entityRank = new HashMap<ComplexTypeMetadata, Long>(size * 2);
+        for (int i = 0; i < size; i++) {
+            entityRank.put(graph.getType(i), Math.round(rank[i]));
+        }
+        return entityRank;
+    }
+
+    private double iterate(ExecutorService executor, final double[] contribution, final double[] rank, final double[] nextRank) {
+        int size = graph.size();
+        int chunk = (size + threads - 1) / threads;
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(threads);
+        for (int start = 0; start < size; start += chunk) {
+            final int from = start;
+            final int to = Math.min(size, start + chunk);
+            tasks.add(new Callable<Double>() {
+
+                @Override
+                public Double call() throws Exception {
+                    return iterate(from, to, contribution, rank, nextRank);
+                }
+            });
+        }
+        try {
+            double delta = 0;
+            for (Future<Double> future : executor.invokeAll(tasks)) {
+                delta += future.get();
+            }
+            return delta;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during entity rank computation.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not compute entity rank.", e.getCause());
+        }
+    }
+
+    // Computes rank for entities in [from, to[ and returns the L1 distance with previous ranks for this range.
+    private double iterate(int from, int to, double[] contribution, double[] rank, double[] nextRank) {
+        int size = graph.size();
+        double delta = 0;
+        for (int i = from; i < to; i++) {
+            double sum = 0;
+            for (int edge = offsets[i]; edge < offsets[i + 1]; edge++) {
+                sum += contribution[targets[edge]];
+            }
+            nextRank[i] = size + damping * sum;
+            delta += Math.abs(nextRank[i] - rank[i]);
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Computes structural fingerprints (64 bits hashes) of types and repositories. Fingerprint covers everything that
+ * {@link org.talend.mdm.commmon.metadata.compare.Compare} takes into account: type names and inheritance, fields (name,
+ * type, key/many/mandatory flags, length and digits facets, default value rules), foreign keys (referenced type and
+ * integrity settings) and contained types. Labels, descriptions and access rights are <b>not</b> part of the
+ * fingerprint.
+ * </p>
+ * <p>
+ * Two types with same structure have same fingerprint; different fingerprints always mean different structures
+ * (same fingerprint for different structures is possible but very unlikely).
+ * </p>
+ */
+public class MetadataFingerprint {
+
+    private static final String REPOSITORY_FINGERPRINT = MetadataFingerprint.class.getName() + ".repository"; //$NON-NLS-1$
+
+    private static final String ENTITY_FINGERPRINTS = MetadataFingerprint.class.getName() + ".entities"; //$NON-NLS-1$
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private MetadataFingerprint() {
+    }
+
+    /**
+     * @param type A type (entity type, contained type, reusable type or simple type).
+     * @return The structural fingerprint of <code>type</code>.
+     */
+    public static long getFingerprint(TypeMetadata type) {
+        Hash hash = new Hash();
+        addType(hash, type, new HashSet<String>());
+        return hash.value;
+    }
+
+    /**
+     * @param field A field.
+     * @return The structural fingerprint of <code>field</code> (including contained type for a contained field).
+     */
+    public static long getFingerprint(FieldMetadata field) {
+        Hash hash = new Hash();
+        addField(hash, field, new HashSet<String>());
+        return hash.value;
+    }
+
+    /**
+     * <p>
+     * Returns the fingerprint of all user types in <code>repository</code> (entity types, reusable types and simple
+     * types).
+     * </p>
+     * <p>
+     * Value is cached in <code>repository</code> until repository is modified.
+     * </p>
+     *
+     * @param repository A loaded {@link MetadataRepository}.
+     * @return The structural fingerprint of <code>repository</code>.
+     */
+    public static long getFingerprint(MetadataRepository repository) {
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        Long fingerprint = (Long) computedValues.get(REPOSITORY_FINGERPRINT);
+        if (fingerprint == null) {
+            Hash hash = new Hash();
+            for (Map.Entry<String, Long> entry : getEntityFingerprints(repository).entrySet()) {
+                hash.add(entry.getKey());
+                hash.add(entry.getValue());
+            }
+            for (ComplexTypeMetadata type : repository.getNonInstantiableTypes()) {
+                hash.add(getFingerprint(type));
+            }
+            // Named simple types (facets of a super type may change without any change in fields declarations)
+            Map<String, Long> simpleTypeFingerprints = new TreeMap<String, Long>();
+            for (TypeMetadata type : repository.getTypes()) {
+                if (type instanceof SimpleTypeMetadata && repository.getUserNamespace().equals(type.getNamespace())) {
+                    simpleTypeFingerprints.put(type.getName(), getFingerprint(type));
+                }
+            }
+            for (Map.Entry<String, Long> entry : simpleTypeFingerprints.entrySet()) {
+                hash.add(entry.getKey());
+                hash.add(entry.getValue());
+            }
+            fingerprint = hash.value;
+            computedValues.put(REPOSITORY_FINGERPRINT, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * <p>
+     * Returns fingerprints of all entity types in <code>repository</code>: comparing this map for 2 repositories gives
+     * the entity types that differ without comparing types content.
+     * </p>
+     * <p>
+     * Value is cached in <code>repository</code> until repository is modified.
+     * </p>
+     *
+     * @param repository A loaded {@link MetadataRepository}.
+     * @return A read only map of entity type name to fingerprint (ordered by entity type name).
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Long> getEntityFingerprints(MetadataRepository repository) {
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        Map<String, Long> fingerprints = (Map<String, Long>) computedValues.get(ENTITY_FINGERPRINTS);
+        if (fingerprints == null) {
+            Map<String, Long> entityFingerprints = new LinkedHashMap<String, Long>();
+            for (ComplexTypeMetadata type : repository.getUserComplexTypes()) {
+                if (type.isInstantiable()) {
+                    entityFingerprints.put(type.getName(), getFingerprint(type));
+                }
+            }
+            fingerprints = Collections.unmodifiableMap(entityFingerprints);
+            computedValues.put(ENTITY_FINGERPRINTS, fingerprints);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @return <code>hash</code> updated with <code>value</code> (used to build keys from fingerprints and other
+     * values).
+     */
+    static long combine(long hash, String value) {
+        Hash combined = new Hash(hash);
+        combined.add(value);
+        return combined.value;
+    }
+
+    /**
+     * @return <code>hash</code> updated with <code>value</code> (used to build keys from fingerprints and other
+     * values).
+     */
+    static long combine(long hash, long value) {
+        Hash combined = new Hash(hash);
+        combined.add(value);
+        return combined.value;
+    }
+
+    // Path contains names of contained types being hashed (prevents infinite loops on recursive types).
+    private static void addType(Hash hash, TypeMetadata type, Set<String> path) {
+        hash.add(type.getNamespace());
+        hash.add(type.getName());
+        for (TypeMetadata superType : type.getSuperTypes()) {
+            hash.add(superType.getName());
+        }
+        if (type instanceof ComplexTypeMetadata) {
+            ComplexTypeMetadata complexType = (ComplexTypeMetadata) type;
+            hash.add(complexType.isInstantiable());
+            if (!path.add(complexType.getName())) {
+                return; // Recursive type: name is enough
+            }
+            for (FieldMetadata field : complexType.getFields()) {
+                addField(hash, field, path);
+            }
+            path.remove(complexType.getName());
+        } else {
+            addFacets(hash, type);
+        }
+    }
+
+    private static void addField(Hash hash, FieldMetadata field, Set<String> path) {
+        hash.add(field.getClass().getSimpleName());
+        hash.add(field.getName());
+        hash.add(field.isKey());
+        hash.add(field.isMany());
+        hash.add(field.isMandatory());
+        hash.add(String.valueOf(field.<Object> getData(MetadataRepository.DEFAULT_VALUE_RULE)));
+        TypeMetadata fieldType = field.getType();
+        if (field instanceof ReferenceFieldMetadata) {
+            ReferenceFieldMetadata referenceField = (ReferenceFieldMetadata) field;
+            hash.add(referenceField.getReferencedType().getName());
+            hash.add(referenceField.getReferencedField().getPath());
+            hash.add(referenceField.isFKIntegrity());
+            hash.add(referenceField.allowFKIntegrityOverride());
+        } else if (field instanceof ContainedTypeFieldMetadata) {
+            addType(hash, ((ContainedTypeFieldMetadata) field).getContainedType(), path);
+        } else if (fieldType != null) {
+            hash.add(fieldType.getName());
+            addFacets(hash, fieldType);
+        }
+    }
+
+    // Effective facets (including facets inherited from super types), as compared by Compare.
+    private static void addFacets(Hash hash, TypeMetadata type) {
+        Facets facets = Facets.of(type);
+        hash.add(facets.getMaxLength());
+        hash.add(facets.getTotalDigits());
+        hash.add(facets.getFractionDigits());
+        Set<String> enumeration = facets.getEnumeration();
+        if (enumeration == null) {
+            hash.add(false);
+        } else {
+            hash.add(true);
+            for (String value : new TreeSet<String>(enumeration)) {
+                hash.add(value);
+            }
+        }
+        hash.add(MetadataUtils.getSuperConcreteType(type).getName());
+    }
+
+    /**
+     * 64 bits FNV-1a hash.
+     */
+    private static class Hash {
+
+        private long value;
+
+        private Hash() {
+            this(FNV_OFFSET_BASIS);
+        }
+
+        private Hash(long value) {
+            this.value = value;
+        }
+
+        private void add(String s) {
+            if (s == null) {
+                addByte(0);
+            } else {
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    addByte(c & 0xFF);
+                    addByte(c >>> 8);
+                }
+            }
+            addByte(0xFF); // Separator (so "ab" + "c" differs from "a" + "bc")
+        }
+
+        private void add(boolean b) {
+            addByte(b ? 1 : 2);
+        }
+
+        private void add(long l) {
+            for (int i = 0; i < 8; i++) {
+                addByte((int) (l >>> (i * 8)) & 0xFF);
+            }
+        }
+
+        private void addByte(int b) {
+            value ^= b;
+            value *= FNV_PRIME;
+        }
+    }
+}
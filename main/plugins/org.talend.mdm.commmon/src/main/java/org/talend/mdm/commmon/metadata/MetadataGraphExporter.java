@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.NotImplementedException;
+
+/**
+ * <p>
+ * Exports the graph of a data model to a {@link Writer}. Exported graph contains:
+ * <ul>
+ * <li>Nodes for entity types and for contained types (a contained type node is identified by its path in the entity,
+ * e.g. <code>Person/address</code>).</li>
+ * <li><i>contains</i> edges from an entity (or a contained type) to its contained types.</li>
+ * <li><i>extends</i> edges from an entity to its super entity types.</li>
+ * <li><i>references</i> edges from an entity (or a contained type) to the entity referenced by a foreign key.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Export is streamed: nodes and edges are written as types are visited and nothing is kept in memory but the path of
+ * contained types being visited. This makes export suitable for large data models. Writer is not buffered by this class
+ * (callers should use a {@link java.io.BufferedWriter} when needed) and is not closed.
+ * </p>
+ */
+public class MetadataGraphExporter {
+
+    public static enum Format {
+        /**
+         * Graphviz DOT format.
+         */
+        DOT,
+        /**
+         * GraphML (XML) format.
+         */
+        GRAPHML,
+        /**
+         * JSON format: <code>{"nodes":[...],"edges":[...]}</code>.
+         */
+        JSON
+    }
+
+    private static final String ENTITY = "entity"; //$NON-NLS-1$
+
+    private static final String CONTAINED = "contained"; //$NON-NLS-1$
+
+    private static final String CONTAINS = "contains"; //$NON-NLS-1$
+
+    private static final String EXTENDS = "extends"; //$NON-NLS-1$
+
+    private static final String REFERENCES = "references"; //$NON-NLS-1$
+
+    private final Format format;
+
+    private final Set<String> entityNames;
+
+    private final boolean fkIntegrityOnly;
+
+    /**
+     * Creates an exporter for all entities and all foreign keys.
+     *
+     * @param format The output format.
+     */
+    public MetadataGraphExporter(Format format) {
+        this(format, null, false);
+    }
+
+    /**
+     * @param format The output format.
+     * @param entityNames Names of the entities to export, or <code>null</code> for all entities. Edges to entities
+     * not in this collection are not exported.
+     * @param fkIntegrityOnly <code>true</code> to only export foreign keys with FK integrity enabled.
+     */
+    public MetadataGraphExporter(Format format, Collection<String> entityNames, boolean fkIntegrityOnly) {
+        if (format == null) {
+            throw new IllegalArgumentException("Format cannot be null.");
+        }
+        this.format = format;
+        this.entityNames = entityNames == null ? null : new HashSet<String>(entityNames);
+        this.fkIntegrityOnly = fkIntegrityOnly;
+    }
+
+    /**
+     * Writes the graph of the entity types in <code>repository</code> to <code>writer</code>.
+     *
+     * @param repository A loaded {@link MetadataRepository}.
+     * @param writer The writer where graph is written.
+     * @throws IOException In case of error while writing to <code>writer</code>.
+     */
+    public void export(MetadataRepository repository, Writer writer) throws IOException {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null.");
+        }
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null.");
+        }
+        GraphWriter graphWriter = createGraphWriter(writer);
+        graphWriter.begin();
+        // Nodes (all nodes are written before edges, as expected by JSON format)
+        for (ComplexTypeMetadata type : repository.getUserComplexTypes()) {
+            if (isExported(type)) {
+                graphWriter.node(type.getName(), type.getName(), ENTITY);
+                exportContainedNodes(graphWriter, type, type.getName(), new HashSet<String>());
+            }
+        }
+        // Edges
+        graphWriter.beginEdges();
+        for (ComplexTypeMetadata type : repository.getUserComplexTypes()) {
+            if (isExported(type)) {
+                for (TypeMetadata superType : type.getSuperTypes()) {
+                    if (superType instanceof ComplexTypeMetadata && isExported((ComplexTypeMetadata) superType)) {
+                        graphWriter.edge(type.getName(), superType.getName(), EXTENDS, null);
+                    }
+                }
+                exportEdges(graphWriter, type, type.getName(), new HashSet<String>());
+            }
+        }
+        graphWriter.end();
+        writer.flush();
+    }
+
+    private boolean isExported(ComplexTypeMetadata type) {
+        return type.isInstantiable() && (entityNames == null || entityNames.contains(type.getName()));
+    }
+
+    // Path keeps names of contained types being visited: prevents infinite loops on recursive types.
+    private void exportContainedNodes(GraphWriter graphWriter, ComplexTypeMetadata type, String nodeId, Set<String> path)
+            throws IOException {
+        for (FieldMetadata field : type.getFields()) {
+            if (field instanceof ContainedTypeFieldMetadata) {
+                ComplexTypeMetadata containedType = ((ContainedTypeFieldMetadata) field).getContainedType();
+                if (path.add(containedType.getName())) {
+                    String containedId = nodeId + '/' + field.getName();
+                    graphWriter.node(containedId, containedType.getName(), CONTAINED);
+                    exportContainedNodes(graphWriter, containedType, containedId, path);
+                    path.remove(containedType.getName());
+                }
+            }
+        }
+    }
+
+    private void exportEdges(GraphWriter graphWriter, ComplexTypeMetadata type, String nodeId, Set<String> path)
+            throws IOException {
+        for (FieldMetadata field : type.getFields()) {
+            if (field instanceof ContainedTypeFieldMetadata) {
+                ComplexTypeMetadata containedType = ((ContainedTypeFieldMetadata) field).getContainedType();
+                if (path.add(containedType.getName())) {
+                    String containedId = nodeId + '/' + field.getName();
+                    graphWriter.edge(nodeId, containedId, CONTAINS, field);
+                    exportEdges(graphWriter, containedType, containedId, path);
+                    path.remove(containedType.getName());
+                }
+            } else if (field instanceof ReferenceFieldMetadata) {
+                ReferenceFieldMetadata referenceField = (ReferenceFieldMetadata) field;
+                ComplexTypeMetadata referencedType = referenceField.getReferencedType().getEntity();
+                if ((!fkIntegrityOnly || referenceField.isFKIntegrity()) && isExported(referencedType)) {
+                    graphWriter.edge(nodeId, referencedType.getName(), REFERENCES, referenceField);
+                }
+            }
+        }
+    }
+
+    private GraphWriter createGraphWriter(Writer writer) {
+        switch (format) {
+        case DOT:
+            return new DotWriter(writer);
+        case GRAPHML:
+            return new GraphMLWriter(writer);
+        case JSON:
+            return new JsonWriter(writer);
+        default:
+            throw new NotImplementedException("Format '" + format + "' is not supported.");
+        }
+    }
+
+    private abstract static class GraphWriter {
+
+        protected final Writer writer;
+
+        GraphWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        abstract void begin() throws IOException;
+
+        abstract void node(String id, String label, String kind) throws IOException;
+
+        void beginEdges() throws IOException {
+        }
+
+        /**
+         * @param field The field that creates the edge, <code>null</code> for inheritance edges.
+         */
+        abstract void edge(String source, String target, String kind, FieldMetadata field) throws IOException;
+
+        abstract void end() throws IOException;
+    }
+
+    private static class DotWriter extends GraphWriter {
+
+        DotWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void begin() throws IOException {
+            writer.write("digraph DataModel {\n"); //$NON-NLS-1$
+        }
+
+        @Override
+        void node(String id, String label, String kind) throws IOException {
+            writer.write("  "); //$NON-NLS-1$
+            writeQuoted(id);
+            writer.write(" [label="); //$NON-NLS-1$
+            writeQuoted(label);
+            writer.write(ENTITY.equals(kind) ? ", shape=box];\n" : ", shape=ellipse];\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        @Override
+        void edge(String source, String target, String kind, FieldMetadata field) throws IOException {
+            writer.write("  "); //$NON-NLS-1$
+            writeQuoted(source);
+            writer.write(" -> "); //$NON-NLS-1$
+            writeQuoted(target);
+            if (EXTENDS.equals(kind)) {
+                writer.write(" [arrowhead=empty];\n"); //$NON-NLS-1$
+            } else if (CONTAINS.equals(kind)) {
+                writer.write(" [arrowhead=diamond];\n"); //$NON-NLS-1$
+            } else {
+                writer.write(" [label="); //$NON-NLS-1$
+                writeQuoted(field.getName());
+                if (!((ReferenceFieldMetadata) field).isFKIntegrity()) {
+                    writer.write(", style=dashed"); //$NON-NLS-1$
+                }
+                writer.write("];\n"); //$NON-NLS-1$
+            }
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("}\n"); //$NON-NLS-1$
+        }
+
+        private void writeQuoted(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    writer.write('\\');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+    }
+
+    private static class GraphMLWriter extends GraphWriter {
+
+        private int edgeCount = 0;
+
+        GraphMLWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void begin() throws IOException {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+            writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"kind\" for=\"all\" attr.name=\"kind\" attr.type=\"string\"/>\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"field\" for=\"edge\" attr.name=\"field\" attr.type=\"string\"/>\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"fkIntegrity\" for=\"edge\" attr.name=\"fkIntegrity\" attr.type=\"boolean\"/>\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"mandatory\" for=\"edge\" attr.name=\"mandatory\" attr.type=\"boolean\"/>\n"); //$NON-NLS-1$
+            writer.write("  <key id=\"many\" for=\"edge\" attr.name=\"many\" attr.type=\"boolean\"/>\n"); //$NON-NLS-1$
+            writer.write("  <graph id=\"DataModel\" edgedefault=\"directed\">\n"); //$NON-NLS-1$
+        }
+
+        @Override
+        void node(String id, String label, String kind) throws IOException {
+            writer.write("    <node id=\""); //$NON-NLS-1$
+            writeEscaped(id);
+            writer.write("\">"); //$NON-NLS-1$
+            writeData("label", label); //$NON-NLS-1$
+            writeData("kind", kind); //$NON-NLS-1$
+            writer.write("</node>\n"); //$NON-NLS-1$
+        }
+
+        @Override
+        void edge(String source, String target, String kind, FieldMetadata field) throws IOException {
+            writer.write("    <edge id=\"e"); //$NON-NLS-1$
+            writer.write(String.valueOf(edgeCount++));
+            writer.write("\" source=\""); //$NON-NLS-1$
+            writeEscaped(source);
+            writer.write("\" target=\""); //$NON-NLS-1$
+            writeEscaped(target);
+            writer.write("\">"); //$NON-NLS-1$
+            writeData("kind", kind); //$NON-NLS-1$
+            if (field != null) {
+                writeData("field", field.getPath()); //$NON-NLS-1$
+                if (field instanceof ReferenceFieldMetadata) {
+                    writeData("fkIntegrity", String.valueOf(((ReferenceFieldMetadata) field).isFKIntegrity())); //$NON-NLS-1$
+                }
+                writeData("mandatory", String.valueOf(field.isMandatory())); //$NON-NLS-1$
+                writeData("many", String.valueOf(field.isMany())); //$NON-NLS-1$
+            }
+            writer.write("</edge>\n"); //$NON-NLS-1$
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("  </graph>\n</graphml>\n"); //$NON-NLS-1$
+        }
+
+        private void writeData(String key, String value) throws IOException {
+            writer.write("<data key=\""); //$NON-NLS-1$
+            writer.write(key);
+            writer.write("\">"); //$NON-NLS-1$
+            writeEscaped(value);
+            writer.write("</data>"); //$NON-NLS-1$
+        }
+
+        private void writeEscaped(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                case '&':
+                    writer.write("&amp;"); //$NON-NLS-1$
+                    break;
+                case '<':
+                    writer.write("&lt;"); //$NON-NLS-1$
+                    break;
+                case '>':
+                    writer.write("&gt;"); //$NON-NLS-1$
+                    break;
+                case '"':
+                    writer.write("&quot;"); //$NON-NLS-1$
+                    break;
+                default:
+                    writer.write(c);
+                }
+            }
+        }
+    }
+
+    private static class JsonWriter extends GraphWriter {
+
+        private boolean isFirst = true;
+
+        JsonWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void begin() throws IOException {
+            writer.write("{\"nodes\":["); //$NON-NLS-1$
+        }
+
+        @Override
+        void node(String id, String label, String kind) throws IOException {
+            separator();
+            writer.write("{\"id\":"); //$NON-NLS-1$
+            writeString(id);
+            writer.write(",\"label\":"); //$NON-NLS-1$
+            writeString(label);
+            writer.write(",\"kind\":"); //$NON-NLS-1$
+            writeString(kind);
+            writer.write('}');
+        }
+
+        @Override
+        void beginEdges() throws IOException {
+            writer.write("],\n\"edges\":["); //$NON-NLS-1$
+            isFirst = true;
+        }
+
+        @Override
+        void edge(String source, String target, String kind, FieldMetadata field) throws IOException {
+            separator();
+            writer.write("{\"source\":"); //$NON-NLS-1$
+            writeString(source);
+            writer.write(",\"target\":"); //$NON-NLS-1$
+            writeString(target);
+            writer.write(",\"kind\":"); //$NON-NLS-1$
+            writeString(kind);
+            if (field != null) {
+                writer.write(",\"field\":"); //$NON-NLS-1$
+                writeString(field.getPath());
+                if (field instanceof ReferenceFieldMetadata) {
+                    writer.write(",\"fkIntegrity\":"); //$NON-NLS-1$
+                    writer.write(String.valueOf(((ReferenceFieldMetadata) field).isFKIntegrity()));
+                }
+                writer.write(",\"mandatory\":"); //$NON-NLS-1$
+                writer.write(String.valueOf(field.isMandatory()));
+                writer.write(",\"many\":"); //$NON-NLS-1$
+                writer.write(String.valueOf(field.isMany()));
+            }
+            writer.write('}');
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("]}\n"); //$NON-NLS-1$
+        }
+
+        private void separator() throws IOException {
+            if (isFirst) {
+                isFirst = false;
+                writer.write('\n');
+            } else {
+                writer.write(",\n"); //$NON-NLS-1$
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                case '"':
+                    writer.write("\\\""); //$NON-NLS-1$
+                    break;
+                case '\\':
+                    writer.write("\\\\"); //$NON-NLS-1$
+                    break;
+                case '\n':
+                    writer.write("\\n"); //$NON-NLS-1$
+                    break;
+                case '\r':
+                    writer.write("\\r"); //$NON-NLS-1$
+                    break;
+                case '\t':
+                    writer.write("\\t"); //$NON-NLS-1$
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        writer.write("\\u"); //$NON-NLS-1$
+                        for (int j = hex.length(); j < 4; j++) {
+                            writer.write('0');
+                        }
+                        writer.write(hex);
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+            writer.write('"');
+        }
+    }
+}
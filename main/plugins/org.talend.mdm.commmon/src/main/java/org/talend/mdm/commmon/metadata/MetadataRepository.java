@@ -12,18 +12,24 @@ package org.talend.mdm.commmon.metadata;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.XMLConstants;
 
@@ -64,6 +70,7 @@ import org.talend.mdm.commmon.metadata.annotation.UserAccessProcessor;
 import org.talend.mdm.commmon.metadata.annotation.XmlSchemaAnnotationProcessor;
 import org.talend.mdm.commmon.metadata.annotation.XmlSchemaAnnotationProcessorState;
 import org.talend.mdm.commmon.metadata.validation.ValidationFactory;
+import org.talend.mdm.commmon.metadata.validation.ValidationStats;
 import org.talend.mdm.commmon.metadata.xsd.XSDVisitor;
 import org.talend.mdm.commmon.metadata.xsd.XmlSchemaWalker;
 import org.talend.mdm.commmon.util.core.ICoreConstants;
@@ -85,6 +92,11 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
 
     public static final String DATA_ZIPPED = "metadata.zipped"; //$NON-NLS-1$
 
+    /**
+     * Enumeration values (a read only <code>List&lt;String&gt;</code>) of a simple type with enumeration facets.
+     */
+    public static final String DATA_ENUMERATION_VALUES = "metadata.data.enumeration"; //$NON-NLS-1$
+
     public static final String XSD_LINE_NUMBER = "metadata.xsd.line"; //$NON-NLS-1$
 
     public static final String XSD_COLUMN_NUMBER = "metadata.xsd.column"; //$NON-NLS-1$
@@ -133,6 +145,9 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
 
     private int anonymousCounter = 0;
 
+    // Values computed from repository content (e.g. type sort), a new map is used each time repository is modified.
+    private transient volatile ConcurrentMap<Object, Object> computedValues;
+
     static {
         // Load XML Schema types
         InputStream xmlSchemaDef = MetadataRepository.class.getResourceAsStream("XMLSchema.xsd"); //$NON-NLS-1$
@@ -266,9 +281,22 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
     }
 
     public void load(InputStream inputStream, ValidationHandler handler) {
+        load(inputStream, handler, null);
+    }
+
+    /**
+     * Loads data model from <code>inputStream</code> and validates it.
+     *
+     * @param inputStream A stream that contains a data model (XML schema).
+     * @param handler The {@link ValidationHandler} that receives validation errors and warnings.
+     * @param validationCache A {@link ValidationCache} used to replay validation results of types that did not change
+     * since a previous load, or <code>null</code> to validate all types.
+     */
+    public void load(InputStream inputStream, ValidationHandler handler, ValidationCache validationCache) {
         if (inputStream == null) {
             throw new IllegalArgumentException("Input stream can not be null.");
         }
+        resetComputedValues();
         // Validates data model using shared studio / server classes
         // Load user defined data model now
         Map<String, Object> options = new HashMap<String, Object>();
@@ -299,24 +327,139 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
         // "Freeze" all reusable type usages in the data model.
         freezeUsages();
         entityTypes.put(getUserNamespace(), freezeTypes(entityTypes.get(getUserNamespace())));
+        resetComputedValues(); // Types are now frozen (frozen instances replace the resolved types)
         // Validate types
         for (TypeMetadata type : getUserComplexTypes()) {
             if (!XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(type.getNamespace())) {
-                type.validate(handler);
+                validate(type, handler, validationCache);
             }
         }
         for (TypeMetadata type : getNonInstantiableTypes()) {
             if (!XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(type.getNamespace())) {
-                type.validate(handler);
+                validate(type, handler, validationCache);
             }
         }
         ValidationFactory.getRule(this).perform(handler); // Perform data model-scoped validation (e.g. cycles).
+        if (validationCache != null) {
+            validationCache.clearPendingIssues(this);
+        }
+        ValidationStats.logSummary();
         handler.end();
         if (handler.getErrorCount() != 0) {
             LOGGER.error("Could not parse data model (" + handler.getErrorCount() + " error(s) found).");
         }
     }
 
+    /**
+     * <p>
+     * Validates again <code>changedTypes</code> and the types whose validation depends on them, instead of validating
+     * the whole data model. Types to validate are:
+     * <ul>
+     * <li><code>changedTypes</code> (for a contained type, its entity type).</li>
+     * <li>Entity types with a foreign key to a changed entity type.</li>
+     * <li>Sub types of changed types.</li>
+     * <li>Entity types that use a changed reusable type.</li>
+     * </ul>
+     * Circular dependency check only considers these types and the types they depend on (any cycle that includes one of
+     * the validated types is found).
+     * </p>
+     * <p>
+     * Changed types are expected to be already updated in this repository (types frozen).
+     * </p>
+     *
+     * @param changedTypes Types changed since last validation.
+     * @param handler The {@link ValidationHandler} that receives validation errors and warnings.
+     */
+    public void revalidate(Collection<? extends TypeMetadata> changedTypes, ValidationHandler handler) {
+        if (changedTypes == null) {
+            throw new IllegalArgumentException("Changed types cannot be null.");
+        }
+        resetComputedValues(); // Changed types might not have been added using addTypeMetadata()
+        ReferenceGraph referenceGraph = MetadataUtils.getReferenceGraph(this);
+        Set<ComplexTypeMetadata> typesToValidate = new LinkedHashSet<ComplexTypeMetadata>();
+        for (TypeMetadata changedType : changedTypes) {
+            if (changedType instanceof ComplexTypeMetadata
+                    && !XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(changedType.getNamespace())) {
+                addDependentTypes(referenceGraph, ((ComplexTypeMetadata) changedType).getEntity(), typesToValidate);
+            }
+        }
+        for (ComplexTypeMetadata type : typesToValidate) {
+            ValidationFactory.resetValidation(type);
+        }
+        for (ComplexTypeMetadata type : typesToValidate) {
+            type.validate(handler);
+        }
+        List<ComplexTypeMetadata> cycleCheckScope = getDependencies(referenceGraph, typesToValidate);
+        if (!cycleCheckScope.isEmpty()) {
+            ValidationFactory.getRule(this, cycleCheckScope).perform(handler);
+        }
+        resetComputedValues();
+        handler.end();
+    }
+
+    // Adds type, referencing entity types (direct references only), sub types and entity types that use type.
+    private static void addDependentTypes(ReferenceGraph referenceGraph, ComplexTypeMetadata type,
+            Set<ComplexTypeMetadata> dependentTypes) {
+        if (!dependentTypes.add(type)) {
+            return;
+        }
+        int id = referenceGraph.getId(type);
+        if (id >= 0) {
+            int[] offsets = referenceGraph.getInboundOffsets();
+            int[] sources = referenceGraph.getInboundSources();
+            for (int edge = offsets[id]; edge < offsets[id + 1]; edge++) {
+                dependentTypes.add(referenceGraph.getType(sources[edge]));
+            }
+        }
+        for (ComplexTypeMetadata subType : type.getSubTypes()) {
+            addDependentTypes(referenceGraph, subType, dependentTypes);
+        }
+        if (!type.isInstantiable()) {
+            for (ComplexTypeMetadata usage : type.getUsages()) {
+                addDependentTypes(referenceGraph, usage.getEntity(), dependentTypes);
+            }
+        }
+    }
+
+    // Returns entity types in 'types' and all entity types they depend on (same dependencies as a strict sort).
+    private static List<ComplexTypeMetadata> getDependencies(ReferenceGraph referenceGraph, Collection<ComplexTypeMetadata> types) {
+        Set<ComplexTypeMetadata> dependencies = new LinkedHashSet<ComplexTypeMetadata>();
+        Deque<ComplexTypeMetadata> typesToProcess = new ArrayDeque<ComplexTypeMetadata>();
+        for (ComplexTypeMetadata type : types) {
+            if (referenceGraph.getId(type) >= 0) {
+                typesToProcess.push(type);
+            }
+        }
+        while (!typesToProcess.isEmpty()) {
+            ComplexTypeMetadata type = typesToProcess.pop();
+            if (!dependencies.add(type)) {
+                continue;
+            }
+            List<ComplexTypeMetadata> next = new ArrayList<ComplexTypeMetadata>();
+            next.addAll(referenceGraph.getReferencedTypes(type, ReferenceGraph.Filter.MANDATORY_FK_INTEGRITY));
+            next.addAll(type.getSubTypes());
+            for (TypeMetadata superType : type.getSuperTypes()) {
+                if (superType instanceof ComplexTypeMetadata) {
+                    next.add((ComplexTypeMetadata) superType);
+                }
+            }
+            for (ComplexTypeMetadata nextType : next) {
+                if (referenceGraph.getId(nextType) >= 0 && !dependencies.contains(nextType)) {
+                    typesToProcess.push(nextType);
+                }
+            }
+        }
+        return new ArrayList<ComplexTypeMetadata>(dependencies);
+    }
+
+    private void validate(TypeMetadata type, ValidationHandler handler, ValidationCache validationCache) {
+        if (validationCache == null) {
+            type.validate(handler);
+        } else {
+            validationCache.validate(this, type, handler);
+        }
+    }
+
     protected void freezeUsages() {
         for (List<ComplexTypeMetadata> entityTypes : entityTypeUsage.values()) {
             for (ComplexTypeMetadata entityType : entityTypes) {
@@ -404,6 +547,7 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
     }
 
     public void addTypeMetadata(TypeMetadata typeMetadata) {
+        resetComputedValues();
         String namespace = typeMetadata.getNamespace();
         if (typeMetadata.isInstantiable()) {
             registerType(typeMetadata, namespace, entityTypes);
@@ -427,6 +571,59 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
     public void close() {
         entityTypes.clear();
         nonInstantiableTypes.clear();
+        resetComputedValues();
+    }
+
+    /**
+     * <p>
+     * Returns the cache for values computed from this repository's content (such as type sort or entity rank). Cache
+     * is safe for concurrent use and is discarded each time the repository is modified.
+     * </p>
+     * <p>
+     * Values are only cached once all user types are frozen: before that (e.g. during a load), a new empty map is
+     * returned on each call, so values computed on types still being resolved are never reused.
+     * </p>
+     * <p>
+     * Callers should get the cache <b>before</b> starting the computation and store the result in this same instance:
+     * this ensures a result computed on a previous state of the repository is never made visible. Callers outside this
+     * package must use keys no other caller can use (e.g. a private object).
+     * </p>
+     *
+     * @return The current cache for computed values.
+     */
+    public ConcurrentMap<Object, Object> getComputedValues() {
+        ConcurrentMap<Object, Object> values = computedValues;
+        if (values == null) {
+            synchronized (this) {
+                values = computedValues;
+                if (values == null) {
+                    values = new ConcurrentHashMap<Object, Object>();
+                    if (!isFrozen()) {
+                        return values;
+                    }
+                    computedValues = values;
+                }
+            }
+        }
+        return values;
+    }
+
+    private boolean isFrozen() {
+        for (TypeMetadata type : getUserComplexTypes()) {
+            if (!type.isFrozen()) {
+                return false;
+            }
+        }
+        for (TypeMetadata type : getNonInstantiableTypes()) {
+            if (!type.isFrozen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resetComputedValues() {
+        computedValues = null;
     }
 
     public Collection<TypeMetadata> getInstantiableTypes() {
@@ -471,6 +668,7 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
             if (baseType != null && baseType.getName() != null) {
                 superTypes.add(new SoftTypeRef(this, baseType.getTargetNamespace(), baseType.getName(), false));
                 EList<XSDConstrainingFacet> facets = type.getFacetContents();
+                List<String> enumerationValues = new ArrayList<String>();
                 for (XSDConstrainingFacet currentFacet : facets) {
                     if (currentFacet instanceof XSDMaxLengthFacet) {
                         typeMetadata.setData(MetadataRepository.DATA_MAX_LENGTH,
@@ -484,10 +682,16 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
                     } else if(currentFacet instanceof XSDFractionDigitsFacet){ // this is the fractionDigits
                         typeMetadata.setData(MetadataRepository.DATA_FRACTION_DIGITS,
                                 String.valueOf(((XSDFractionDigitsFacet) currentFacet).getValue()));
+                    } else if (currentFacet instanceof XSDEnumerationFacet) {
+                        enumerationValues.add(currentFacet.getLexicalValue());
                     } else if (LOGGER.isTraceEnabled()) {
                         LOGGER.trace("Ignore simple type facet on type '" + typeName + "': " + currentFacet);
                     }
                 }
+                if (!enumerationValues.isEmpty()) {
+                    typeMetadata.setData(MetadataRepository.DATA_ENUMERATION_VALUES,
+                            Collections.unmodifiableList(enumerationValues));
+                }
             }
         }
         if (getNonInstantiableType(targetNamespace, typeName) == null) {
@@ -729,6 +933,7 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
                     fieldType.addSuperType(new SoftTypeRef(this, content.getTargetNamespace(), content.getName(), false));
                 }
                 EList<XSDConstrainingFacet> facets = simpleSchemaType.getFacetContents();
+                List<String> enumerationValues = new ArrayList<String>();
                 for (XSDConstrainingFacet currentFacet : facets) {
                     if (currentFacet instanceof XSDMaxLengthFacet) {
                         fieldType.setData(MetadataRepository.DATA_MAX_LENGTH,
@@ -739,10 +944,16 @@ public class MetadataRepository implements MetadataVisitable, XSDVisitor, Serial
                     } else if(currentFacet instanceof XSDFractionDigitsFacet){ // this is the fractionDigits
                         fieldType.setData(MetadataRepository.DATA_FRACTION_DIGITS,
                                 String.valueOf(((XSDFractionDigitsFacet) currentFacet).getValue()));
+                    } else if (currentFacet instanceof XSDEnumerationFacet) {
+                        enumerationValues.add(currentFacet.getLexicalValue());
                     } else if (LOGGER.isTraceEnabled()) {
                         LOGGER.trace("Ignore simple type facet on type '" + fieldName + "': " + currentFacet);
                     }
                 }
+                if (!enumerationValues.isEmpty()) {
+                    fieldType.setData(MetadataRepository.DATA_ENUMERATION_VALUES,
+                            Collections.unmodifiableList(enumerationValues));
+                }
             }
             fieldType.setData(XSD_LINE_NUMBER, XSDParser.getStartLine(element.getElement()));
             fieldType.setData(XSD_COLUMN_NUMBER, XSDParser.getStartColumn(element.getElement()));
@@ -11,13 +11,17 @@
 
 package org.talend.mdm.commmon.metadata;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -58,11 +62,59 @@ public class MetadataUtils {
      * Code is expected to run in linear time (O(n+p) where n is the number of entities and p the number of references).
      * Used memory is O(n^2) (due to a dependency ordering).
      * </p>
+     * <p>
+     * Result is cached in <code>repository</code> until repository is modified.
+     * </p>
      *
      * @param repository A {@link MetadataRepository} instance that contains entity types.
      * @return A {@link Map} that maps a entity to its entity rank value.
      */
+    @SuppressWarnings("unchecked")
     public static Map<ComplexTypeMetadata, Long> computeEntityRank(MetadataRepository repository) {
+        Map<Object, Object> computedValues = repository.getComputedValues();
+        ComputationKey key = new ComputationKey(ComputationKey.ENTITY_RANK, SortType.LENIENT);
+        Map<ComplexTypeMetadata, Long> entityRank = (Map<ComplexTypeMetadata, Long>) computedValues.get(key);
+        if (entityRank == null) {
+            entityRank = _computeEntityRank(repository);
+            computedValues.put(key, entityRank);
+        }
+        return new HashMap<ComplexTypeMetadata, Long>(entityRank);
+    }
+
+    /**
+     * <p>
+     * Computes "entity rank" (see {@link #computeEntityRank(MetadataRepository)}) using power iteration: all ranks are
+     * computed from the ranks of the previous iteration until the sum of rank changes gets lower than
+     * <code>tolerance</code>. Unlike {@link #computeEntityRank(MetadataRepository)}, this does not depend on a type
+     * order, so references involved in cycles are taken into account. Foreign keys declared in contained types count
+     * for their containing entity.
+     * </p>
+     * <p>
+     * Each iteration runs in O(n+p) and iterations are split across <code>threads</code> threads. Result is cached in
+     * <code>repository</code> until repository is modified.
+     * </p>
+     *
+     * @param repository A {@link MetadataRepository} instance that contains entity types.
+     * @param damping The adjustment factor (<i>d</i> in formula), in [0, 1[.
+     * @param tolerance The convergence threshold (greater than 0).
+     * @param threads Number of threads used for each iteration (1 to compute in caller's thread).
+     * @return A {@link Map} that maps a entity to its entity rank value.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<ComplexTypeMetadata, Long> computeEntityRank(MetadataRepository repository, double damping,
+            double tolerance, int threads) {
+        Map<Object, Object> computedValues = repository.getComputedValues();
+        ComputationKey key = new ComputationKey(ComputationKey.ENTITY_RANK + '/' + damping + '/' + tolerance, null);
+        Map<ComplexTypeMetadata, Long> entityRank = (Map<ComplexTypeMetadata, Long>) computedValues.get(key);
+        if (entityRank == null) {
+            entityRank = new IterativeEntityRank(getReferenceGraph(repository), damping, tolerance, threads).compute();
+            computedValues.put(key, entityRank);
+        }
+        return new HashMap<ComplexTypeMetadata, Long>(entityRank);
+    }
+
+    // Internal method for entity rank computation
+    private static Map<ComplexTypeMetadata, Long> _computeEntityRank(MetadataRepository repository) {
         List<ComplexTypeMetadata> sortedTypes = sortTypes(repository, SortType.LENIENT);
         int totalNumber = sortedTypes.size();
 
@@ -206,7 +258,7 @@ public class MetadataUtils {
      * between types). This method uses <i>n²</i> bytes in memory for processing.
      * </p>
      * <p>
-     * This method is thread safe.
+     * This method is thread safe. Result is cached in <code>repository</code> until repository is modified.
      * </p>
      * 
      * @param repository The repository that contains entity types to sort.
@@ -216,8 +268,7 @@ public class MetadataUtils {
      * cyclic dependency. Error message contains information on where the cycle is.
      */
     public static List<ComplexTypeMetadata> sortTypes(MetadataRepository repository, SortType sortType) {
-        List<ComplexTypeMetadata> types = new ArrayList<ComplexTypeMetadata>(repository.getUserComplexTypes());
-        return _sortTypes(repository, types, sortType);
+        return cachedSortTypes(repository, null, sortType);
     }
 
     /**
@@ -232,7 +283,7 @@ public class MetadataUtils {
      * between types). This method uses <i>n²</i> bytes in memory for processing.
      * </p>
      * <p>
-     * This method is thread safe.
+     * This method is thread safe. Result is not cached (only a sort of all types in repository is).
      * </p>
      *
      * @param repository This is used to display information in case of cycle.
@@ -251,7 +302,7 @@ public class MetadataUtils {
      * cyclic dependency. Error message contains information on where the cycle is.
      */
     public static List<ComplexTypeMetadata> sortTypes(MetadataRepository repository, List<ComplexTypeMetadata> types) {
-        return _sortTypes(repository, types, SortType.STRICT);
+        return cachedSortTypes(repository, types, SortType.STRICT);
     }
     
     /**
@@ -266,7 +317,7 @@ public class MetadataUtils {
      * between types). This method uses <i>n²</i> bytes in memory for processing.
      * </p>
      * <p>
-     * This method is thread safe.
+     * This method is thread safe. Result is not cached (only a sort of all types in repository is).
      * </p>
      *
      * @param repository This is used to display information in case of cycle.
@@ -286,140 +337,353 @@ public class MetadataUtils {
      * cyclic dependency. Error message contains information on where the cycle is.
      */
     public static List<ComplexTypeMetadata> sortTypes(MetadataRepository repository, List<ComplexTypeMetadata> types, SortType sortType) {
-        return _sortTypes(repository, types, sortType);
+        return cachedSortTypes(repository, types, sortType);
     }
 
-    // Internal method for type sort
-    private static List<ComplexTypeMetadata> _sortTypes(MetadataRepository repository, List<ComplexTypeMetadata> typesSubSet,
-            final SortType sortType) {
-        /*
-         * Compute additional data for topological sorting
-         */
-        // Ensure to get only top level types (TMDM-7235)
-        final List<ComplexTypeMetadata> types = new ArrayList<ComplexTypeMetadata>();
-        for (ComplexTypeMetadata currentType : typesSubSet) {
-            if (currentType instanceof ContainedComplexTypeMetadata) {
-                types.add(currentType.getEntity());
-            } else if (!types.contains(currentType)) {
-                types.add(currentType);
+    // Sort of all types (types is null) is cached in repository (key is the sort type). Sorts of sub sets are not cached:
+    // callers pass many different sub sets, so keys would accumulate until repository is modified. A failed sort is
+    // not cached: a repository with cycles keeps throwing CircularDependencyException.
+    @SuppressWarnings("unchecked")
+    private static List<ComplexTypeMetadata> cachedSortTypes(MetadataRepository repository, List<ComplexTypeMetadata> types,
+            SortType sortType) {
+        if (repository == null || types != null) {
+            return _sortTypes(repository, types, sortType);
+        }
+        Map<Object, Object> computedValues = repository.getComputedValues();
+        ComputationKey key = new ComputationKey(ComputationKey.SORT, sortType);
+        List<ComplexTypeMetadata> sortedTypes = (List<ComplexTypeMetadata>) computedValues.get(key);
+        if (sortedTypes == null) {
+            sortedTypes = _sortTypes(repository, new ArrayList<ComplexTypeMetadata>(repository.getUserComplexTypes()),
+                    sortType);
+            computedValues.put(key, sortedTypes);
+        }
+        return new LinkedList<ComplexTypeMetadata>(sortedTypes);
+    }
+
+    /**
+     * Returns the {@link ReferenceGraph} for <code>repository</code>. Graph is cached in <code>repository</code> until
+     * repository is modified.
+     */
+    static ReferenceGraph getReferenceGraph(MetadataRepository repository) {
+        Map<Object, Object> computedValues = repository.getComputedValues();
+        ComputationKey key = new ComputationKey(ComputationKey.REFERENCE_GRAPH, null);
+        ReferenceGraph referenceGraph = (ReferenceGraph) computedValues.get(key);
+        if (referenceGraph == null) {
+            referenceGraph = new ReferenceGraph(repository);
+            computedValues.put(key, referenceGraph);
+        }
+        return referenceGraph;
+    }
+
+    /**
+     * Key for values cached in {@link MetadataRepository#getComputedValues()}.
+     */
+    private static class ComputationKey {
+
+        private static final String SORT = "sort"; //$NON-NLS-1$
+
+        private static final String SORT_LEVELS = "sortLevels"; //$NON-NLS-1$
+
+        private static final String ENTITY_RANK = "entityRank"; //$NON-NLS-1$
+
+        private static final String REFERENCE_GRAPH = "referenceGraph"; //$NON-NLS-1$
+
+        private final String computation;
+
+        private final SortType sortType;
+
+        private final int hashCode;
+
+        private ComputationKey(String computation, SortType sortType) {
+            this.computation = computation;
+            this.sortType = sortType;
+            hashCode = 31 * computation.hashCode() + (sortType != null ? sortType.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ComputationKey)) {
+                return false;
             }
+            ComputationKey that = (ComputationKey) o;
+            return computation.equals(that.computation) && sortType == that.sortType;
         }
-        // Create the dependency matrix
-        final int typeNumber = types.size();
-        byte[][] dependencyGraph = new byte[typeNumber][typeNumber];
-        for (final ComplexTypeMetadata type : types) {
-            dependencyGraph[getId(type, types)] = type.accept(new DefaultMetadataVisitor<byte[]>() {
 
-                final Set<TypeMetadata> processedTypes = new HashSet<TypeMetadata>();
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 
-                final Set<TypeMetadata> processedReferences = new HashSet<TypeMetadata>();
+    /**
+     * Result of a {@link #sortTypesInLevels(MetadataRepository, SortType) level sort}.
+     */
+    public static class SortLevels {
 
-                final byte[] lineContent = new byte[typeNumber]; // Stores dependencies of current type
+        private final List<List<ComplexTypeMetadata>> levels;
 
-                @Override
-                public byte[] visit(ComplexTypeMetadata complexType) {
-                    if (processedTypes.contains(complexType)) {
-                        return lineContent;
-                    } else {
-                        processedTypes.add(complexType);
-                    }
-                    if (complexType.isInstantiable()) {
-                        Collection<TypeMetadata> superTypes = complexType.getSuperTypes();
-                        for (TypeMetadata superType : superTypes) {
-                            if (superType instanceof ComplexTypeMetadata) {
-                                int id = types.indexOf(superType);
-                                if (id >= 0) {
-                                    lineContent[id]++;
-                                }
+        private final Set<ReferenceFieldMetadata> deferredReferences;
+
+        private SortLevels(List<List<ComplexTypeMetadata>> levels, Set<ReferenceFieldMetadata> deferredReferences) {
+            List<List<ComplexTypeMetadata>> readOnlyLevels = new ArrayList<List<ComplexTypeMetadata>>(levels.size());
+            for (List<ComplexTypeMetadata> level : levels) {
+                readOnlyLevels.add(Collections.unmodifiableList(level));
+            }
+            this.levels = Collections.unmodifiableList(readOnlyLevels);
+            this.deferredReferences = Collections.unmodifiableSet(deferredReferences);
+        }
+
+        /**
+         * @return The levels in dependency order: types in a level only depend on types of previous levels, so all
+         * types of a level can be processed concurrently once previous levels are done.
+         */
+        public List<List<ComplexTypeMetadata>> getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return The foreign keys ignored to break cycles ({@link SortType#LENIENT} only). Values for those foreign
+         * keys should be set once all levels are processed. Empty set if there was no cycle.
+         */
+        public Set<ReferenceFieldMetadata> getDeferredReferences() {
+            return deferredReferences;
+        }
+    }
+
+    /**
+     * <p>
+     * Sorts types in inverse order of dependency (same dependencies as {@link #sortTypes(MetadataRepository, SortType)})
+     * but returns a partial order: types are grouped in levels, and types within a level have no dependency between
+     * them (layered topological sort).
+     * </p>
+     * <p>
+     * In case of cycles, {@link SortType#STRICT} sort throws a {@link CircularDependencyException} and
+     * {@link SortType#LENIENT} sort breaks cycles: in a cycle (a strongly connected component of the remaining types),
+     * the type with the fewest unresolved dependencies is put in a level of its own and its foreign keys to types of
+     * the same cycle are reported as {@link SortLevels#getDeferredReferences() deferred}.
+     * </p>
+     * <p>
+     * This method is thread safe. Result is cached in <code>repository</code> until repository is modified.
+     * </p>
+     *
+     * @param repository The repository that contains entity types to sort.
+     * @param sortType The type how to sort
+     * @return The {@link SortLevels levels} for all entity types in <code>repository</code>.
+     * @throws org.talend.mdm.commmon.metadata.CircularDependencyException If repository contains types that creates a
+     * cyclic dependency and <code>sortType</code> is {@link SortType#STRICT}.
+     */
+    public static SortLevels sortTypesInLevels(MetadataRepository repository, SortType sortType) {
+        Map<Object, Object> computedValues = repository.getComputedValues();
+        ComputationKey key = new ComputationKey(ComputationKey.SORT_LEVELS, sortType);
+        SortLevels sortLevels = (SortLevels) computedValues.get(key);
+        if (sortLevels == null) {
+            sortLevels = _sortTypesInLevels(repository, sortType);
+            computedValues.put(key, sortLevels);
+        }
+        return sortLevels;
+    }
+
+    // Internal method for level sort
+    private static SortLevels _sortTypesInLevels(MetadataRepository repository, SortType sortType) {
+        List<ComplexTypeMetadata> types = getTopLevelTypes(new ArrayList<ComplexTypeMetadata>(repository.getUserComplexTypes()));
+        int typeNumber = types.size();
+        byte[][] dependencyGraph = buildDependencyGraph(types, sortType);
+        // Number of (distinct) unresolved dependencies for each type
+        int[] unresolved = new int[typeNumber];
+        for (int i = 0; i < typeNumber; i++) {
+            for (int j = 0; j < typeNumber; j++) {
+                if (dependencyGraph[i][j] > 0) {
+                    unresolved[i]++;
+                }
+            }
+        }
+        boolean[] isSorted = new boolean[typeNumber];
+        List<List<ComplexTypeMetadata>> levels = new ArrayList<List<ComplexTypeMetadata>>();
+        Set<ReferenceFieldMetadata> deferredReferences = new HashSet<ReferenceFieldMetadata>();
+        ReferenceGraph referenceGraph = null;
+        List<Integer> level = new ArrayList<Integer>();
+        for (int i = 0; i < typeNumber; i++) {
+            if (unresolved[i] == 0) {
+                level.add(i);
+            }
+        }
+        int sortedNumber = 0;
+        while (sortedNumber < typeNumber) {
+            if (level.isEmpty()) {
+                // Only cycles remain
+                if (referenceGraph == null) {
+                    referenceGraph = getReferenceGraph(repository);
+                }
+                List<List<Integer>> cycles = new TypeComponents(dependencyGraph, isSorted).getCycles();
+                switch (sortType) {
+                case STRICT:
+                    Map<ComplexTypeMetadata, List<FieldMetadata>> cycleHints =
+                            new LinkedHashMap<ComplexTypeMetadata, List<FieldMetadata>>();
+                    for (List<Integer> cycle : cycles) {
+                        boolean[] inCycle = toMask(cycle, typeNumber);
+                        for (Integer id : cycle) {
+                            Set<ReferenceFieldMetadata> fields = getCycleReferences(referenceGraph, types, inCycle, id);
+                            if (!fields.isEmpty()) {
+                                cycleHints.put(getType(types, id), new ArrayList<FieldMetadata>(fields));
                             }
                         }
-                        super.visit(complexType);
                     }
-                    if (complexType.isInstantiable()) {
-                        processedTypes.clear();
+                    throw new CircularDependencyException(cycleHints);
+                case LENIENT:
+                    // First cycle has no dependency on other unsorted types: only dependencies inside the cycle are
+                    // unresolved, so only foreign keys inside the cycle need to be deferred.
+                    List<Integer> cycle = cycles.get(0);
+                    int candidate = -1;
+                    for (Integer id : cycle) {
+                        if (candidate < 0 || unresolved[id] < unresolved[candidate]) {
+                            candidate = id;
+                        }
                     }
-                    return lineContent;
+                    deferredReferences.addAll(getCycleReferences(referenceGraph, types, toMask(cycle, typeNumber),
+                            candidate));
+                    level.add(candidate);
+                    break;
+                default:
+                    throw new NotImplementedException("Sort '" + sortType + "' is not implemented.");
                 }
-
-                @Override
-                public byte[] visit(ContainedTypeFieldMetadata containedField) {
-                    ComplexTypeMetadata containedType = containedField.getContainedType();
-                    if (processedTypes.contains(containedType)) {
-                        return lineContent;
-                    } else {
-                        processedTypes.add(containedType);
-                    }
-                    containedType.accept(this);
-                    for (ComplexTypeMetadata subType : containedType.getSubTypes()) {
-                        if (processedTypes.contains(subType)) {
-                            return lineContent;
-                        } else {
-                            processedTypes.add(subType);
-                            subType.accept(this);
-                        }
+            }
+            List<ComplexTypeMetadata> levelTypes = new ArrayList<ComplexTypeMetadata>(level.size());
+            for (Integer id : level) {
+                isSorted[id] = true;
+                levelTypes.add(getType(types, id));
+            }
+            levels.add(levelTypes);
+            sortedNumber += level.size();
+            // Next level: types whose dependencies are now all sorted.
+            List<Integer> nextLevel = new ArrayList<Integer>();
+            for (Integer id : level) {
+                for (int i = 0; i < typeNumber; i++) {
+                    if (!isSorted[i] && dependencyGraph[i][id] > 0 && --unresolved[i] == 0) {
+                        nextLevel.add(i);
                     }
-                    return lineContent;
                 }
+            }
+            level = nextLevel;
+        }
+        return new SortLevels(levels, deferredReferences);
+    }
 
-                @Override
-                public byte[] visit(ReferenceFieldMetadata referenceField) {
-                    boolean isInherited = !referenceField.getDeclaringType().equals(referenceField.getContainingType());
-                    // Only handle FK declared IN the type (inherited FKs are already processed).
-                    if (isInherited) {
-                        return lineContent;
-                    }
-                    // Within entity count only once references to other type
-                    ComplexTypeMetadata referencedType = referenceField.getReferencedType();
-                    if (!processedReferences.add(referencedType)) {
-                        return lineContent;
-                    }
-                    // Only takes into account mandatory and FK integrity-enabled FKs.
-                    if (include(referenceField) && referenceField.isFKIntegrity()) {
-                        if (referencedType.isInstantiable()) {
-                            if (types.contains(referencedType) && (!processedTypes.contains(referencedType) || isReferencedBySelf(referenceField))) {
-                                lineContent[getId(referencedType, types)]++;
-                                if (sortType == SortType.LENIENT) {
-                                    // Implicitly include reference to sub types of referenced type for LENIENT sort (STRICT should
-                                    // take in account sub types to exclude false cyclic dependencies).
-                                    for (ComplexTypeMetadata subType : referencedType.getSubTypes()) {
-                                        lineContent[getId(subType, types)]++;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    return lineContent;
+    // internal method for sortTypesInLevels: FKs of type at index 'id' that point to a type of the cycle.
+    private static Set<ReferenceFieldMetadata> getCycleReferences(ReferenceGraph referenceGraph,
+            List<ComplexTypeMetadata> types, boolean[] inCycle, int id) {
+        Set<ReferenceFieldMetadata> references = new HashSet<ReferenceFieldMetadata>();
+        int source = referenceGraph.getId(getType(types, id));
+        if (source < 0) {
+            return references;
+        }
+        int[] offsets = referenceGraph.getOutboundOffsets();
+        int[] targets = referenceGraph.getOutboundTargets();
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+            ReferenceFieldMetadata field = referenceGraph.getOutboundField(edge);
+            int target = types.indexOf(referenceGraph.getType(targets[edge]));
+            // Only FK integrity-enabled FKs are dependencies (see buildDependencyGraph).
+            if (field.isFKIntegrity() && target >= 0 && inCycle[target]) {
+                references.add(field);
+            }
+        }
+        return references;
+    }
+
+    private static boolean[] toMask(List<Integer> ids, int typeNumber) {
+        boolean[] mask = new boolean[typeNumber];
+        for (Integer id : ids) {
+            mask[id] = true;
+        }
+        return mask;
+    }
+
+    /**
+     * Strongly connected components (Tarjan's algorithm) of the dependency graph restricted to types not sorted yet.
+     */
+    private static class TypeComponents {
+
+        private final byte[][] dependencyGraph;
+
+        private final boolean[] isSorted;
+
+        private final int[] index;
+
+        private final int[] lowLink;
+
+        private final boolean[] onStack;
+
+        private final Deque<Integer> stack = new ArrayDeque<Integer>();
+
+        private final List<List<Integer>> cycles = new ArrayList<List<Integer>>();
+
+        private int counter;
+
+        private TypeComponents(byte[][] dependencyGraph, boolean[] isSorted) {
+            this.dependencyGraph = dependencyGraph;
+            this.isSorted = isSorted;
+            index = new int[isSorted.length];
+            lowLink = new int[isSorted.length];
+            onStack = new boolean[isSorted.length];
+            Arrays.fill(index, -1);
+        }
+
+        /**
+         * @return Components that contain a cycle (more than one type, or a type that depends on itself), in reverse
+         * topological order: a component does not depend on types of the components after it.
+         */
+        private List<List<Integer>> getCycles() {
+            for (int i = 0; i < isSorted.length; i++) {
+                if (!isSorted[i] && index[i] < 0) {
+                    visit(i);
                 }
+            }
+            return cycles;
+        }
 
-                private boolean include(FieldMetadata field) {
-                    if (field == null) {
-                        return false;
-                    }
-                    ComplexTypeMetadata containingType = field.getContainingType();
-                    FieldMetadata containerField = containingType.getContainer();
-                    switch (sortType) {
-                    case STRICT:
-                        if (containerField != null) {
-                            return include(containerField) && field.isMandatory();
-                        } else {
-                            return field.isMandatory();
-                        }
-                    case LENIENT:
-                        return true;
-                    default:
-                        throw new NotImplementedException("Sort '" + sortType + "' is not implemented.");
-                    }
+        private void visit(int id) {
+            index[id] = counter;
+            lowLink[id] = counter;
+            counter++;
+            stack.push(id);
+            onStack[id] = true;
+            for (int dependency = 0; dependency < isSorted.length; dependency++) {
+                if (isSorted[dependency] || dependencyGraph[id][dependency] == 0) {
+                    continue;
                 }
-                
-                private boolean isReferencedBySelf(ReferenceFieldMetadata referenceField) {
-                    ComplexTypeMetadata containingType = referenceField.getContainingType();
-                    if (containingType instanceof ContainedComplexTypeMetadata) {
-                        containingType = containingType.getContainer().getContainingType();
-                    }
-                    return containingType.equals(referenceField.getReferencedType());
+                if (index[dependency] < 0) {
+                    visit(dependency);
+                    lowLink[id] = Math.min(lowLink[id], lowLink[dependency]);
+                } else if (onStack[dependency]) {
+                    lowLink[id] = Math.min(lowLink[id], index[dependency]);
                 }
-            });
+            }
+            if (lowLink[id] == index[id]) {
+                List<Integer> component = new ArrayList<Integer>();
+                int member;
+                do {
+                    member = stack.pop();
+                    onStack[member] = false;
+                    component.add(member);
+                } while (member != id);
+                if (component.size() > 1 || dependencyGraph[id][id] > 0) {
+                    cycles.add(component);
+                }
+            }
         }
+    }
+
+    // Internal method for type sort
+    private static List<ComplexTypeMetadata> _sortTypes(MetadataRepository repository, List<ComplexTypeMetadata> typesSubSet,
+            final SortType sortType) {
+        /*
+         * Compute additional data for topological sorting
+         */
+        final List<ComplexTypeMetadata> types = getTopLevelTypes(typesSubSet);
+        final int typeNumber = types.size();
+        byte[][] dependencyGraph = buildDependencyGraph(types, sortType);
         // Log dependency matrix (before sort)
         if (LOGGER.isTraceEnabled()) {
             StringBuilder builder = logDependencyMatrix(dependencyGraph);
@@ -561,6 +825,140 @@ public class MetadataUtils {
         return sortedTypes;
     }
 
+    // Internal method for type sort: ensure to get only top level types (TMDM-7235)
+    private static List<ComplexTypeMetadata> getTopLevelTypes(List<ComplexTypeMetadata> typesSubSet) {
+        List<ComplexTypeMetadata> types = new ArrayList<ComplexTypeMetadata>();
+        for (ComplexTypeMetadata currentType : typesSubSet) {
+            if (currentType instanceof ContainedComplexTypeMetadata) {
+                types.add(currentType.getEntity());
+            } else if (!types.contains(currentType)) {
+                types.add(currentType);
+            }
+        }
+        return types;
+    }
+
+    // Internal method for type sort: creates the dependency matrix (line i has a value > 0 in column j if type i
+    // depends on type j).
+    private static byte[][] buildDependencyGraph(final List<ComplexTypeMetadata> types, final SortType sortType) {
+        final int typeNumber = types.size();
+        byte[][] dependencyGraph = new byte[typeNumber][typeNumber];
+        for (final ComplexTypeMetadata type : types) {
+            dependencyGraph[getId(type, types)] = type.accept(new DefaultMetadataVisitor<byte[]>() {
+
+                final Set<TypeMetadata> processedTypes = new HashSet<TypeMetadata>();
+
+                final Set<TypeMetadata> processedReferences = new HashSet<TypeMetadata>();
+
+                final byte[] lineContent = new byte[typeNumber]; // Stores dependencies of current type
+
+                @Override
+                public byte[] visit(ComplexTypeMetadata complexType) {
+                    if (processedTypes.contains(complexType)) {
+                        return lineContent;
+                    } else {
+                        processedTypes.add(complexType);
+                    }
+                    if (complexType.isInstantiable()) {
+                        Collection<TypeMetadata> superTypes = complexType.getSuperTypes();
+                        for (TypeMetadata superType : superTypes) {
+                            if (superType instanceof ComplexTypeMetadata) {
+                                int id = types.indexOf(superType);
+                                if (id >= 0) {
+                                    lineContent[id]++;
+                                }
+                            }
+                        }
+                        super.visit(complexType);
+                    }
+                    if (complexType.isInstantiable()) {
+                        processedTypes.clear();
+                    }
+                    return lineContent;
+                }
+
+                @Override
+                public byte[] visit(ContainedTypeFieldMetadata containedField) {
+                    ComplexTypeMetadata containedType = containedField.getContainedType();
+                    if (processedTypes.contains(containedType)) {
+                        return lineContent;
+                    } else {
+                        processedTypes.add(containedType);
+                    }
+                    containedType.accept(this);
+                    for (ComplexTypeMetadata subType : containedType.getSubTypes()) {
+                        if (processedTypes.contains(subType)) {
+                            return lineContent;
+                        } else {
+                            processedTypes.add(subType);
+                            subType.accept(this);
+                        }
+                    }
+                    return lineContent;
+                }
+
+                @Override
+                public byte[] visit(ReferenceFieldMetadata referenceField) {
+                    boolean isInherited = !referenceField.getDeclaringType().equals(referenceField.getContainingType());
+                    // Only handle FK declared IN the type (inherited FKs are already processed).
+                    if (isInherited) {
+                        return lineContent;
+                    }
+                    // Within entity count only once references to other type
+                    ComplexTypeMetadata referencedType = referenceField.getReferencedType();
+                    if (!processedReferences.add(referencedType)) {
+                        return lineContent;
+                    }
+                    // Only takes into account mandatory and FK integrity-enabled FKs.
+                    if (include(referenceField) && referenceField.isFKIntegrity()) {
+                        if (referencedType.isInstantiable()) {
+                            if (types.contains(referencedType) && (!processedTypes.contains(referencedType) || isReferencedBySelf(referenceField))) {
+                                lineContent[getId(referencedType, types)]++;
+                                if (sortType == SortType.LENIENT) {
+                                    // Implicitly include reference to sub types of referenced type for LENIENT sort (STRICT should
+                                    // take in account sub types to exclude false cyclic dependencies).
+                                    for (ComplexTypeMetadata subType : referencedType.getSubTypes()) {
+                                        lineContent[getId(subType, types)]++;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    return lineContent;
+                }
+
+                private boolean include(FieldMetadata field) {
+                    if (field == null) {
+                        return false;
+                    }
+                    ComplexTypeMetadata containingType = field.getContainingType();
+                    FieldMetadata containerField = containingType.getContainer();
+                    switch (sortType) {
+                    case STRICT:
+                        if (containerField != null) {
+                            return include(containerField) && field.isMandatory();
+                        } else {
+                            return field.isMandatory();
+                        }
+                    case LENIENT:
+                        return true;
+                    default:
+                        throw new NotImplementedException("Sort '" + sortType + "' is not implemented.");
+                    }
+                }
+                
+                private boolean isReferencedBySelf(ReferenceFieldMetadata referenceField) {
+                    ComplexTypeMetadata containingType = referenceField.getContainingType();
+                    if (containingType instanceof ContainedComplexTypeMetadata) {
+                        containingType = containingType.getContainer().getContainingType();
+                    }
+                    return containingType.equals(referenceField.getReferencedType());
+                }
+            });
+        }
+        return dependencyGraph;
+    }
+
     private static StringBuilder logDependencyMatrix(byte[][] dependencyGraph) {
         StringBuilder builder = new StringBuilder();
         builder.append("Dependency matrix").append('\n');
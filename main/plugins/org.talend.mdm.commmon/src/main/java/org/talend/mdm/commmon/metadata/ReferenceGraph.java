@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A read only, index based view of the foreign key graph between the entity types of a (frozen)
+ * {@link MetadataRepository}. Each entity type gets an integer id and foreign keys are stored as primitive arrays in
+ * compressed sparse row (CSR) layout, in both directions (outbound and inbound).
+ * </p>
+ * <p>
+ * A FK to a type is also considered as a FK to all its sub types (a FK to <i>A</i> may point to an instance of
+ * <i>B</i> if <i>B</i> extends <i>A</i>). FKs declared in contained types are attached to their top level entity.
+ * </p>
+ * <p>
+ * Transitive closures are computed once per query root (and per {@link Filter filter}) and then memoized, so
+ * repeated queries (delete checks, cache invalidation...) don't need to visit the repository again. This class is
+ * thread safe.
+ * </p>
+ *
+ * @see InboundReferences
+ * @see OutboundReferences
+ */
+public class ReferenceGraph {
+
+    private static final byte FK_INTEGRITY = 1;
+
+    private static final byte MANDATORY = 2;
+
+    /**
+     * Selects the foreign keys to follow during a graph traversal.
+     */
+    public static enum Filter {
+        /**
+         * Follow all foreign keys.
+         */
+        ALL(0),
+        /**
+         * Follow only foreign keys with {@link ReferenceFieldMetadata#isFKIntegrity() FK integrity} enabled.
+         */
+        FK_INTEGRITY(ReferenceGraph.FK_INTEGRITY),
+        /**
+         * Follow only mandatory foreign keys (a FK contained in an optional element is not mandatory).
+         */
+        MANDATORY(ReferenceGraph.MANDATORY),
+        /**
+         * Follow only mandatory foreign keys with FK integrity enabled (same dependencies as a
+         * {@link MetadataUtils.SortType#STRICT strict} sort).
+         */
+        MANDATORY_FK_INTEGRITY(ReferenceGraph.FK_INTEGRITY | ReferenceGraph.MANDATORY);
+
+        private final int mask;
+
+        Filter(int mask) {
+            this.mask = mask;
+        }
+
+        boolean accept(byte flags) {
+            return (flags & mask) == mask;
+        }
+    }
+
+    private final ComplexTypeMetadata[] types;
+
+    private final Map<ComplexTypeMetadata, Integer> typeIds;
+
+    private final int[] outboundOffsets;
+
+    private final int[] outboundTargets;
+
+    private final byte[] outboundFlags;
+
+    private final ReferenceFieldMetadata[] outboundFields;
+
+    private final int[] inboundOffsets;
+
+    private final int[] inboundSources;
+
+    private final byte[] inboundFlags;
+
+    private final int edgeCount;
+
+    private final ConcurrentMap<Integer, TypeSet> closures = new ConcurrentHashMap<Integer, TypeSet>();
+
+    /**
+     * Builds the foreign key graph for all entity types in <code>repository</code>. Repository is expected to be
+     * loaded (all types frozen): later changes to the repository are <b>not</b> reflected in this graph.
+     *
+     * @param repository A loaded {@link MetadataRepository}.
+     */
+    public ReferenceGraph(MetadataRepository repository) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null.");
+        }
+        List<ComplexTypeMetadata> entityTypes = new ArrayList<ComplexTypeMetadata>();
+        for (ComplexTypeMetadata type : repository.getUserComplexTypes()) {
+            if (type.isInstantiable()) {
+                entityTypes.add(type);
+            }
+        }
+        types = entityTypes.toArray(new ComplexTypeMetadata[entityTypes.size()]);
+        typeIds = new HashMap<ComplexTypeMetadata, Integer>(types.length * 2);
+        for (int i = 0; i < types.length; i++) {
+            typeIds.put(types[i], i);
+        }
+        // Collect edges (source, target, flags, field)
+        EdgeList edges = new EdgeList();
+        for (int i = 0; i < types.length; i++) {
+            types[i].accept(new EdgeCollector(i, edges));
+        }
+        edgeCount = edges.size;
+        // Outbound CSR
+        outboundOffsets = new int[types.length + 1];
+        outboundTargets = new int[edgeCount];
+        outboundFlags = new byte[edgeCount];
+        outboundFields = new ReferenceFieldMetadata[edgeCount];
+        int[] position = countOffsets(edges.sources, edgeCount, outboundOffsets);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int index = position[edges.sources[edge]]++;
+            outboundTargets[index] = edges.targets[edge];
+            outboundFlags[index] = edges.flags[edge];
+            outboundFields[index] = edges.fields.get(edge);
+        }
+        // Inbound CSR
+        inboundOffsets = new int[types.length + 1];
+        inboundSources = new int[edgeCount];
+        inboundFlags = new byte[edgeCount];
+        position = countOffsets(edges.targets, edgeCount, inboundOffsets);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int index = position[edges.targets[edge]]++;
+            inboundSources[index] = edges.sources[edge];
+            inboundFlags[index] = edges.flags[edge];
+        }
+    }
+
+    // Counting sort on edge end points: fills offsets and returns a copy of offsets to be used as insert positions.
+    private static int[] countOffsets(int[] endPoints, int count, int[] offsets) {
+        for (int edge = 0; edge < count; edge++) {
+            offsets[endPoints[edge] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        return Arrays.copyOf(offsets, offsets.length - 1);
+    }
+
+    /**
+     * @return Number of entity types in the graph.
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * @return Number of foreign keys (edges) in the graph (a FK to a type with sub types counts as many edges).
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param type An entity type.
+     * @return The id of <code>type</code> in this graph or <code>-1</code> if type is not an entity type of the
+     * repository. If <code>type</code> is a contained type, returns id of its top level entity.
+     */
+    public int getId(ComplexTypeMetadata type) {
+        if (type == null) {
+            return -1;
+        }
+        Integer id = typeIds.get(type.getEntity());
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id An id between 0 (inclusive) and {@link #size()} (exclusive).
+     * @return The entity type for this id.
+     */
+    public ComplexTypeMetadata getType(int id) {
+        return types[id];
+    }
+
+    /**
+     * @param type An entity type.
+     * @param filter Selects the foreign keys to follow.
+     * @return All entity types that <b>transitively</b> reference <code>type</code> (i.e. the types whose instances
+     * may have to be checked before deleting an instance of <code>type</code>). <code>type</code> itself is only
+     * included if it is part of a reference cycle. Returned set is read only.
+     */
+    public Set<ComplexTypeMetadata> getReferencingTypes(ComplexTypeMetadata type, Filter filter) {
+        return getClosure(checkId(type), filter, false);
+    }
+
+    /**
+     * @param type An entity type.
+     * @param filter Selects the foreign keys to follow.
+     * @return All entity types <b>transitively</b> referenced by <code>type</code> (i.e. the types that must be
+     * present for an instance of <code>type</code> to be consistent). <code>type</code> itself is only included if
+     * it is part of a reference cycle. Returned set is read only.
+     */
+    public Set<ComplexTypeMetadata> getReferencedTypes(ComplexTypeMetadata type, Filter filter) {
+        return getClosure(checkId(type), filter, true);
+    }
+
+    /**
+     * @param source An entity type.
+     * @param target Another entity type.
+     * @param filter Selects the foreign keys to follow.
+     * @return <code>true</code> if there's a path of foreign keys from <code>source</code> to <code>target</code>.
+     */
+    public boolean isReachable(ComplexTypeMetadata source, ComplexTypeMetadata target, Filter filter) {
+        int targetId = getId(target);
+        return targetId >= 0 && getClosure(checkId(source), filter, true).bits.get(targetId);
+    }
+
+    /**
+     * @param type An entity type.
+     * @return The foreign key fields declared in <code>type</code> (or in its contained types), one entry per edge.
+     */
+    public List<ReferenceFieldMetadata> getReferenceFields(ComplexTypeMetadata type) {
+        int id = checkId(type);
+        return Arrays.asList(outboundFields).subList(outboundOffsets[id], outboundOffsets[id + 1]);
+    }
+
+    int[] getOutboundOffsets() {
+        return outboundOffsets;
+    }
+
+    int[] getOutboundTargets() {
+        return outboundTargets;
+    }
+
+    byte[] getOutboundFlags() {
+        return outboundFlags;
+    }
+
+    ReferenceFieldMetadata getOutboundField(int edge) {
+        return outboundFields[edge];
+    }
+
+    int[] getInboundOffsets() {
+        return inboundOffsets;
+    }
+
+    int[] getInboundSources() {
+        return inboundSources;
+    }
+
+    byte[] getInboundFlags() {
+        return inboundFlags;
+    }
+
+    private int checkId(ComplexTypeMetadata type) {
+        int id = getId(type);
+        if (id < 0) {
+            throw new IllegalArgumentException("Type '" + (type == null ? null : type.getName())
+                    + "' is not an entity type of the repository.");
+        }
+        return id;
+    }
+
+    private TypeSet getClosure(int root, Filter filter, boolean outbound) {
+        Integer key = (root * Filter.values().length + filter.ordinal()) * 2 + (outbound ? 1 : 0);
+        TypeSet closure = closures.get(key);
+        if (closure == null) {
+            if (outbound) {
+                closure = new TypeSet(traverse(root, filter, outboundOffsets, outboundTargets, outboundFlags));
+            } else {
+                closure = new TypeSet(traverse(root, filter, inboundOffsets, inboundSources, inboundFlags));
+            }
+            TypeSet previous = closures.putIfAbsent(key, closure);
+            if (previous != null) {
+                closure = previous;
+            }
+        }
+        return closure;
+    }
+
+    // Depth first traversal of the CSR arrays (root is only marked as visited if a cycle leads back to it).
+    private BitSet traverse(int root, Filter filter, int[] offsets, int[] ends, byte[] flags) {
+        BitSet visited = new BitSet(types.length);
+        int[] stack = new int[types.length]; // Each type is pushed at most once.
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = ends[edge];
+                if (filter.accept(flags[edge]) && !visited.get(next)) {
+                    visited.set(next);
+                    if (next != root) {
+                        stack[top++] = next;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * A read only {@link Set} of types backed by a {@link BitSet} of type ids.
+     */
+    private class TypeSet extends AbstractSet<ComplexTypeMetadata> {
+
+        private final BitSet bits;
+
+        private final int size;
+
+        private TypeSet(BitSet bits) {
+            this.bits = bits;
+            this.size = bits.cardinality();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof ComplexTypeMetadata)) {
+                return false;
+            }
+            int id = getId((ComplexTypeMetadata) o);
+            return id >= 0 && bits.get(id);
+        }
+
+        @Override
+        public Iterator<ComplexTypeMetadata> iterator() {
+            return new Iterator<ComplexTypeMetadata>() {
+
+                private int next = bits.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public ComplexTypeMetadata next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    ComplexTypeMetadata type = types[next];
+                    next = bits.nextSetBit(next + 1);
+                    return type;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Set is read only.");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static class EdgeList {
+
+        private int[] sources = new int[16];
+
+        private int[] targets = new int[16];
+
+        private byte[] flags = new byte[16];
+
+        private final List<ReferenceFieldMetadata> fields = new ArrayList<ReferenceFieldMetadata>();
+
+        private int size;
+
+        void add(int source, int target, byte flag, ReferenceFieldMetadata field) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                flags = Arrays.copyOf(flags, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            flags[size] = flag;
+            fields.add(field);
+            size++;
+        }
+    }
+
+    // Collects all FK fields in an entity type (including FKs in contained types).
+    private class EdgeCollector extends DefaultMetadataVisitor<Void> {
+
+        private final Set<TypeMetadata> processedTypes = new HashSet<TypeMetadata>();
+
+        private final int source;
+
+        private final EdgeList edges;
+
+        private EdgeCollector(int source, EdgeList edges) {
+            this.source = source;
+            this.edges = edges;
+        }
+
+        @Override
+        public Void visit(ContainedTypeFieldMetadata containedField) {
+            ComplexTypeMetadata containedType = containedField.getContainedType();
+            if (processedTypes.add(containedType)) {
+                containedType.accept(this);
+                for (ComplexTypeMetadata subType : containedType.getSubTypes()) {
+                    if (processedTypes.add(subType)) {
+                        subType.accept(this);
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ReferenceFieldMetadata referenceField) {
+            ComplexTypeMetadata referencedType = referenceField.getReferencedType();
+            byte flags = 0;
+            if (referenceField.isFKIntegrity()) {
+                flags |= FK_INTEGRITY;
+            }
+            if (isMandatory(referenceField)) {
+                flags |= MANDATORY;
+            }
+            addEdge(referencedType, flags, referenceField);
+            Collection<ComplexTypeMetadata> subTypes = referencedType.getSubTypes();
+            for (ComplexTypeMetadata subType : subTypes) {
+                addEdge(subType, flags, referenceField);
+            }
+            return null;
+        }
+
+        private void addEdge(ComplexTypeMetadata target, byte flags, ReferenceFieldMetadata field) {
+            Integer targetId = typeIds.get(target);
+            if (targetId != null) {
+                edges.add(source, targetId, flags, field);
+            }
+        }
+
+        // A FK is mandatory if field is mandatory and all its containers are mandatory.
+        private boolean isMandatory(FieldMetadata field) {
+            while (field != null) {
+                if (!field.isMandatory()) {
+                    return false;
+                }
+                field = field.getContainingType().getContainer();
+            }
+            return true;
+        }
+    }
+}
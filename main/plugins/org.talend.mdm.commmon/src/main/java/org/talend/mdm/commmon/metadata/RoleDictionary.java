@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Dictionary of all role names used in access rights of a {@link MetadataRepository} (hide, write, deny create, deny
+ * delete and workflow access rights of types and fields). Each role gets an index, so a list of roles can be stored as
+ * a bitmask (a <code>long[]</code> where bit <i>i</i> is set if role at index <i>i</i> is in the list).
+ * </p>
+ * <p>
+ * Bitmasks may have different lengths: missing words are considered as 0.
+ * </p>
+ *
+ * @see SecurityView
+ */
+public class RoleDictionary {
+
+    /**
+     * Empty role mask.
+     */
+    public static final long[] EMPTY_MASK = new long[0];
+
+    private final Map<String, Integer> roleIndexes = new HashMap<String, Integer>();
+
+    private final List<String> roles = new ArrayList<String>();
+
+    RoleDictionary() {
+    }
+
+    void add(Collection<String> roleNames) {
+        for (String roleName : roleNames) {
+            if (!roleIndexes.containsKey(roleName)) {
+                roleIndexes.put(roleName, roles.size());
+                roles.add(roleName);
+            }
+        }
+    }
+
+    /**
+     * @param role A role name.
+     * @return Index of <code>role</code> or <code>-1</code> if role is not used in data model.
+     */
+    public int indexOf(String role) {
+        Integer index = roleIndexes.get(role);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index A role index.
+     * @return The role name at <code>index</code>.
+     */
+    public String getRole(int index) {
+        return roles.get(index);
+    }
+
+    /**
+     * @return A read only list of all roles (ordered by index).
+     */
+    public List<String> getRoles() {
+        return Collections.unmodifiableList(roles);
+    }
+
+    public int size() {
+        return roles.size();
+    }
+
+    /**
+     * @param roleNames Role names.
+     * @return A bitmask of <code>roleNames</code> (roles not used in data model are ignored).
+     */
+    public long[] toMask(Collection<String> roleNames) {
+        if (roleNames == null || roleNames.isEmpty()) {
+            return EMPTY_MASK;
+        }
+        long[] mask = null;
+        for (String roleName : roleNames) {
+            int index = indexOf(roleName);
+            if (index >= 0) {
+                if (mask == null) {
+                    mask = new long[(roles.size() + 63) >>> 6];
+                }
+                mask[index >>> 6] |= 1L << index;
+            }
+        }
+        return mask == null ? EMPTY_MASK : mask;
+    }
+
+    /**
+     * @param roleMask A bitmask built by this dictionary.
+     * @return The role names in <code>roleMask</code> (ordered by index).
+     */
+    public List<String> toRoles(long[] roleMask) {
+        List<String> roleNames = new ArrayList<String>();
+        for (int i = 0; i < roleMask.length; i++) {
+            long word = roleMask[i];
+            while (word != 0) {
+                roleNames.add(roles.get((i << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+        return roleNames;
+    }
+
+    /**
+     * @return <code>true</code> if <code>mask1</code> and <code>mask2</code> have at least one role in common.
+     */
+    public static boolean intersects(long[] mask1, long[] mask2) {
+        int length = Math.min(mask1.length, mask2.length);
+        for (int i = 0; i < length; i++) {
+            if ((mask1[i] & mask2[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if role at <code>index</code> is in <code>mask</code>.
+     */
+    public static boolean contains(long[] mask, int index) {
+        return index >= 0 && (index >>> 6) < mask.length && (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param workflowAccessRights Workflow access rights (format: role name#processId+processVersion#access rights).
+     * @return The role names in <code>workflowAccessRights</code>.
+     */
+    static List<String> getWorkflowRoles(List<String> workflowAccessRights) {
+        if (workflowAccessRights.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> workflowRoles = new ArrayList<String>(workflowAccessRights.size());
+        for (String workflowAccessRight : workflowAccessRights) {
+            int separator = workflowAccessRight.indexOf('#');
+            workflowRoles.add(separator < 0 ? workflowAccessRight : workflowAccessRight.substring(0, separator));
+        }
+        return workflowRoles;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Access rights of all entity types of a {@link MetadataRepository} for a set of user roles. Access rights lists of
+ * types and fields (hide, write, deny create, deny delete and workflow access rights) are converted once per repository
+ * to role bitmasks (see {@link RoleDictionary}), and a view computes once the visible and writable fields of each
+ * entity type for its roles: checking access to a field is then a bit test instead of scanning role lists.
+ * </p>
+ * <p>
+ * Fields of an entity type are indexed in depth-first order (fields of contained types follow their contained type
+ * field). Views are cached per distinct role combination (roles not used in the data model are ignored) until
+ * repository is modified.
+ * </p>
+ * <p>
+ * Rules are:
+ * <ul>
+ * <li>A type (resp. a field) is visible if no user role is in its hide list. A field of a hidden contained type field
+ * is hidden.</li>
+ * <li>A type is writable if visible and one of the user roles is in its write list. A field is writable if its
+ * entity type is writable, field is visible and one of the user roles is in field's write list.</li>
+ * <li>A type can be created (resp. deleted) if writable and no user role is in its deny create (resp. deny delete)
+ * list.</li>
+ * </ul>
+ * </p>
+ */
+public class SecurityView {
+
+    private static final String SECURITY_MODEL = SecurityView.class.getName() + ".model"; //$NON-NLS-1$
+
+    // Role combinations are usually few, this only prevents unbounded growth with unusual callers.
+    private static final int MAX_CACHED_VIEWS = 1024;
+
+    private final SecurityModel model;
+
+    private final long[] roleMask;
+
+    private final Map<String, EntityAccess> entityAccesses;
+
+    private SecurityView(SecurityModel model, long[] roleMask) {
+        this.model = model;
+        this.roleMask = roleMask;
+        entityAccesses = new HashMap<String, EntityAccess>();
+        for (EntitySecurity entitySecurity : model.entities.values()) {
+            entityAccesses.put(entitySecurity.type.getName(), new EntityAccess(entitySecurity, roleMask));
+        }
+    }
+
+    /**
+     * @param repository A loaded {@link MetadataRepository}.
+     * @param roles The roles of a user.
+     * @return The {@link SecurityView} of all entity types of <code>repository</code> for <code>roles</code>.
+     */
+    public static SecurityView get(MetadataRepository repository, Collection<String> roles) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null."); //$NON-NLS-1$
+        }
+        SecurityModel model = getModel(repository);
+        long[] roleMask = model.dictionary.toMask(roles);
+        RoleMaskKey key = new RoleMaskKey(roleMask);
+        SecurityView view = model.views.get(key);
+        if (view == null) {
+            view = new SecurityView(model, roleMask);
+            if (model.views.size() < MAX_CACHED_VIEWS) {
+                SecurityView previous = model.views.putIfAbsent(key, view);
+                if (previous != null) {
+                    view = previous;
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * @param repository A loaded {@link MetadataRepository}.
+     * @return The {@link RoleDictionary} of all roles used in access rights of <code>repository</code>.
+     */
+    public static RoleDictionary getRoleDictionary(MetadataRepository repository) {
+        return getModel(repository).dictionary;
+    }
+
+    private static SecurityModel getModel(MetadataRepository repository) {
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        SecurityModel model = (SecurityModel) computedValues.get(SECURITY_MODEL);
+        if (model == null) {
+            model = new SecurityModel(repository);
+            computedValues.put(SECURITY_MODEL, model);
+        }
+        return model;
+    }
+
+    /**
+     * @return The role mask of this view (do not modify).
+     */
+    public long[] getRoleMask() {
+        return roleMask;
+    }
+
+    /**
+     * @return The roles of this view (only roles used in data model).
+     */
+    public List<String> getRoles() {
+        return model.dictionary.toRoles(roleMask);
+    }
+
+    public boolean isVisible(ComplexTypeMetadata type) {
+        return getAccess(type).visible;
+    }
+
+    public boolean isWritable(ComplexTypeMetadata type) {
+        return getAccess(type).writable;
+    }
+
+    public boolean canCreate(ComplexTypeMetadata type) {
+        return getAccess(type).canCreate;
+    }
+
+    public boolean canDelete(ComplexTypeMetadata type, ComplexTypeMetadata.DeleteType deleteType) {
+        EntityAccess access = getAccess(type);
+        switch (deleteType) {
+        case LOGICAL:
+            return access.canLogicalDelete;
+        case PHYSICAL:
+            return access.canPhysicalDelete;
+        default:
+            throw new IllegalArgumentException("Delete type '" + deleteType + "' is not supported."); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * @return <code>true</code> if one of the roles of this view is in workflow access rights of <code>type</code>.
+     */
+    public boolean hasWorkflowAccess(ComplexTypeMetadata type) {
+        return getAccess(type).workflowAccess;
+    }
+
+    /**
+     * @param type An entity type.
+     * @return The fields of <code>type</code> (including fields of contained types) in the order used to index fields
+     * in {@link #getVisibleFields(ComplexTypeMetadata)} and {@link #getWritableFields(ComplexTypeMetadata)}.
+     */
+    public List<FieldMetadata> getFields(ComplexTypeMetadata type) {
+        return Collections.unmodifiableList(getAccess(type).security.fields);
+    }
+
+    /**
+     * @param type An entity type.
+     * @return A bit set of visible fields (bit <i>i</i> is the field at index <i>i</i> in
+     * {@link #getFields(ComplexTypeMetadata)}).
+     */
+    public BitSet getVisibleFields(ComplexTypeMetadata type) {
+        return (BitSet) getAccess(type).visibleFields.clone();
+    }
+
+    /**
+     * @param type An entity type.
+     * @return A bit set of writable fields (bit <i>i</i> is the field at index <i>i</i> in
+     * {@link #getFields(ComplexTypeMetadata)}).
+     */
+    public BitSet getWritableFields(ComplexTypeMetadata type) {
+        return (BitSet) getAccess(type).writableFields.clone();
+    }
+
+    public boolean isVisible(FieldMetadata field) {
+        EntityAccess access = getAccess(field);
+        return access.visibleFields.get(access.security.getFieldIndex(field));
+    }
+
+    public boolean isWritable(FieldMetadata field) {
+        EntityAccess access = getAccess(field);
+        return access.writableFields.get(access.security.getFieldIndex(field));
+    }
+
+    /**
+     * @return <code>true</code> if one of the roles of this view is in workflow access rights of <code>field</code>.
+     */
+    public boolean hasWorkflowAccess(FieldMetadata field) {
+        EntityAccess access = getAccess(field);
+        return RoleDictionary.intersects(access.security.fieldWorkflow[access.security.getFieldIndex(field)], roleMask);
+    }
+
+    private EntityAccess getAccess(ComplexTypeMetadata type) {
+        return getAccess(type.getEntity().getName());
+    }
+
+    private EntityAccess getAccess(FieldMetadata field) {
+        return getAccess(field.getEntityTypeName());
+    }
+
+    private EntityAccess getAccess(String entityTypeName) {
+        EntityAccess access = entityAccesses.get(entityTypeName);
+        if (access == null) {
+            throw new IllegalArgumentException("Type '" + entityTypeName + "' is not an entity type of the repository."); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return access;
+    }
+
+    /**
+     * Role dictionary and role masks of all entity types of a repository.
+     */
+    private static class SecurityModel {
+
+        private final RoleDictionary dictionary = new RoleDictionary();
+
+        private final Map<String, EntitySecurity> entities = new LinkedHashMap<String, EntitySecurity>();
+
+        private final ConcurrentMap<RoleMaskKey, SecurityView> views = new ConcurrentHashMap<RoleMaskKey, SecurityView>();
+
+        private SecurityModel(MetadataRepository repository) {
+            List<ComplexTypeMetadata> entityTypes = new ArrayList<ComplexTypeMetadata>();
+            for (ComplexTypeMetadata type : repository.getUserComplexTypes()) {
+                if (type.isInstantiable()) {
+                    entityTypes.add(type);
+                }
+            }
+            // Roles must all be known before creating masks (so all masks of the repository have same length).
+            List<List<FieldMetadata>> entityFields = new ArrayList<List<FieldMetadata>>(entityTypes.size());
+            List<List<Integer>> entityParents = new ArrayList<List<Integer>>(entityTypes.size());
+            for (ComplexTypeMetadata type : entityTypes) {
+                dictionary.add(type.getHideUsers());
+                dictionary.add(type.getWriteUsers());
+                dictionary.add(type.getDenyCreate());
+                dictionary.add(type.getDenyDelete(ComplexTypeMetadata.DeleteType.LOGICAL));
+                dictionary.add(type.getDenyDelete(ComplexTypeMetadata.DeleteType.PHYSICAL));
+                dictionary.add(RoleDictionary.getWorkflowRoles(type.getWorkflowAccessRights()));
+                List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+                List<Integer> parents = new ArrayList<Integer>();
+                addFields(type, -1, fields, parents, new HashSet<String>());
+                for (FieldMetadata field : fields) {
+                    dictionary.add(field.getHideUsers());
+                    dictionary.add(field.getWriteUsers());
+                    dictionary.add(RoleDictionary.getWorkflowRoles(field.getWorkflowAccessRights()));
+                }
+                entityFields.add(fields);
+                entityParents.add(parents);
+            }
+            for (int i = 0; i < entityTypes.size(); i++) {
+                ComplexTypeMetadata type = entityTypes.get(i);
+                entities.put(type.getName(), new EntitySecurity(dictionary, type, entityFields.get(i), entityParents.get(i)));
+            }
+        }
+
+        // Path contains names of contained types being visited (prevents infinite loops on recursive types).
+        private static void addFields(ComplexTypeMetadata type, int parentIndex, List<FieldMetadata> fields,
+                List<Integer> parents, Set<String> path) {
+            for (FieldMetadata field : type.getFields()) {
+                addField(field, parentIndex, fields, parents, path);
+            }
+        }
+
+        private static void addField(FieldMetadata field, int parentIndex, List<FieldMetadata> fields,
+                List<Integer> parents, Set<String> path) {
+            int index = fields.size();
+            fields.add(field);
+            parents.add(parentIndex);
+            if (field instanceof ContainedTypeFieldMetadata) {
+                ComplexTypeMetadata containedType = ((ContainedTypeFieldMetadata) field).getContainedType();
+                if (path.add(containedType.getName())) {
+                    addFields(containedType, index, fields, parents, path);
+                    addSubTypeFields(containedType, index, fields, parents, path);
+                    path.remove(containedType.getName());
+                }
+            }
+        }
+
+        // Values of a contained type may use one of its sub types (xsi:type): adds fields declared in sub types (all
+        // sub types, not only direct ones). Fields inherited from contained type are already added.
+        private static void addSubTypeFields(ComplexTypeMetadata containedType, int parentIndex, List<FieldMetadata> fields,
+                List<Integer> parents, Set<String> path) {
+            Set<String> names = new HashSet<String>();
+            for (FieldMetadata field : containedType.getFields()) {
+                names.add(field.getName());
+            }
+            for (ComplexTypeMetadata subType : containedType.getSubTypes()) {
+                for (FieldMetadata field : subType.getFields()) {
+                    if (names.add(field.getName())) {
+                        addField(field, parentIndex, fields, parents, path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Role masks of an entity type and its fields.
+     */
+    private static class EntitySecurity {
+
+        private final ComplexTypeMetadata type;
+
+        private final long[] hide;
+
+        private final long[] write;
+
+        private final long[] denyCreate;
+
+        private final long[] denyLogicalDelete;
+
+        private final long[] denyPhysicalDelete;
+
+        private final long[] workflow;
+
+        private final List<FieldMetadata> fields;
+
+        private final Map<String, Integer> fieldIndexes;
+
+        private final int[] fieldParents;
+
+        private final long[][] fieldHide;
+
+        private final long[][] fieldWrite;
+
+        private final long[][] fieldWorkflow;
+
+        private EntitySecurity(RoleDictionary dictionary, ComplexTypeMetadata type, List<FieldMetadata> fields,
+                List<Integer> parents) {
+            this.type = type;
+            this.fields = fields;
+            hide = dictionary.toMask(type.getHideUsers());
+            write = dictionary.toMask(type.getWriteUsers());
+            denyCreate = dictionary.toMask(type.getDenyCreate());
+            denyLogicalDelete = dictionary.toMask(type.getDenyDelete(ComplexTypeMetadata.DeleteType.LOGICAL));
+            denyPhysicalDelete = dictionary.toMask(type.getDenyDelete(ComplexTypeMetadata.DeleteType.PHYSICAL));
+            workflow = dictionary.toMask(RoleDictionary.getWorkflowRoles(type.getWorkflowAccessRights()));
+            int size = fields.size();
+            fieldIndexes = new HashMap<String, Integer>(size * 2);
+            fieldParents = new int[size];
+            fieldHide = new long[size][];
+            fieldWrite = new long[size][];
+            fieldWorkflow = new long[size][];
+            for (int i = 0; i < size; i++) {
+                FieldMetadata field = fields.get(i);
+                if (!fieldIndexes.containsKey(field.getPath())) {
+                    fieldIndexes.put(field.getPath(), i);
+                }
+                fieldParents[i] = parents.get(i);
+                fieldHide[i] = dictionary.toMask(field.getHideUsers());
+                fieldWrite[i] = dictionary.toMask(field.getWriteUsers());
+                fieldWorkflow[i] = dictionary.toMask(RoleDictionary.getWorkflowRoles(field.getWorkflowAccessRights()));
+            }
+        }
+
+        private int getFieldIndex(FieldMetadata field) {
+            Integer index = fieldIndexes.get(field.getPath());
+            if (index == null) {
+                throw new IllegalArgumentException("Field '" + field.getPath() + "' is not a field of type '" //$NON-NLS-1$ //$NON-NLS-2$
+                        + type.getName() + "'."); //$NON-NLS-1$
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Access rights of an entity type for the roles of a view.
+     */
+    private static class EntityAccess {
+
+        private final EntitySecurity security;
+
+        private final boolean visible;
+
+        private final boolean writable;
+
+        private final boolean canCreate;
+
+        private final boolean canLogicalDelete;
+
+        private final boolean canPhysicalDelete;
+
+        private final boolean workflowAccess;
+
+        private final BitSet visibleFields;
+
+        private final BitSet writableFields;
+
+        private EntityAccess(EntitySecurity security, long[] roleMask) {
+            this.security = security;
+            visible = !RoleDictionary.intersects(security.hide, roleMask);
+            writable = visible && RoleDictionary.intersects(security.write, roleMask);
+            canCreate = writable && !RoleDictionary.intersects(security.denyCreate, roleMask);
+            canLogicalDelete = writable && !RoleDictionary.intersects(security.denyLogicalDelete, roleMask);
+            canPhysicalDelete = writable && !RoleDictionary.intersects(security.denyPhysicalDelete, roleMask);
+            workflowAccess = RoleDictionary.intersects(security.workflow, roleMask);
+            int size = security.fields.size();
+            visibleFields = new BitSet(size);
+            writableFields = new BitSet(size);
+            for (int i = 0; i < size; i++) { // Parent index is always lower than field index
+                int parent = security.fieldParents[i];
+                if ((parent < 0 || visibleFields.get(parent)) && !RoleDictionary.intersects(security.fieldHide[i], roleMask)) {
+                    visibleFields.set(i);
+                    if (writable && RoleDictionary.intersects(security.fieldWrite[i], roleMask)) {
+                        writableFields.set(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Key for views cache (role masks compared by content).
+     */
+    private static class RoleMaskKey {
+
+        private final long[] roleMask;
+
+        private final int hashCode;
+
+        private RoleMaskKey(long[] roleMask) {
+            this.roleMask = roleMask;
+            hashCode = Arrays.hashCode(roleMask);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof RoleMaskKey && Arrays.equals(roleMask, ((RoleMaskKey) o).roleMask));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
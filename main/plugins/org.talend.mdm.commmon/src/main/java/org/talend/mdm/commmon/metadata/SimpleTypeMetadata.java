@@ -31,6 +31,10 @@ public class SimpleTypeMetadata extends MetadataExtensions implements TypeMetada
 
     private String name;
 
+    private volatile ValueConverter valueConverter;
+
+    private volatile Facets facets;
+
     public SimpleTypeMetadata(String nameSpace, String name) {
         if (name == null) {
             throw new IllegalArgumentException("Name cannot be null.");
@@ -85,6 +89,7 @@ public class SimpleTypeMetadata extends MetadataExtensions implements TypeMetada
     }
 
     public TypeMetadata freeze() {
+        valueConverter = null; // Super types may change
         if (!superTypes.isEmpty()) {
             List<TypeMetadata> thisSuperTypes = new ArrayList<TypeMetadata>(superTypes);
             superTypes.clear();
@@ -95,6 +100,7 @@ public class SimpleTypeMetadata extends MetadataExtensions implements TypeMetada
                 }
             }
         }
+        facets = Facets.resolve(this);
         return this;
     }
 
@@ -140,6 +146,34 @@ public class SimpleTypeMetadata extends MetadataExtensions implements TypeMetada
 
     public void addSuperType(TypeMetadata superType) {
         superTypes.add(superType);
+        valueConverter = null;
+        facets = null;
+    }
+
+    /**
+     * @return The {@link Facets} of this type (resolved when type is frozen, including facets inherited from super
+     * types).
+     */
+    public Facets getFacets() {
+        Facets typeFacets = facets;
+        if (typeFacets == null) {
+            typeFacets = Facets.resolve(this);
+            facets = typeFacets;
+        }
+        return typeFacets;
+    }
+
+    /**
+     * @return The {@link ValueConverter} for values of this type (resolved once from the concrete XML schema type).
+     * @see MetadataUtils#getSuperConcreteType(TypeMetadata)
+     */
+    public ValueConverter getValueConverter() {
+        ValueConverter converter = valueConverter;
+        if (converter == null) {
+            converter = ValueConverter.get(MetadataUtils.getSuperConcreteType(this).getName());
+            valueConverter = converter;
+        }
+        return converter;
     }
 
     public <T> T accept(MetadataVisitor<T> visitor) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import org.w3c.dom.Element;
+
+/**
+ * <p>
+ * A {@link ValidationHandler} that streams {@link ValidationIssue issues} to a {@link ValidationIssueSink} instead of
+ * keeping messages in memory: all issues are kept (even issues with same location) and memory usage only depends on
+ * the sink.
+ * </p>
+ * <p>
+ * Handler has an error budget: once the number of errors reaches the budget, validation fails immediately with a
+ * {@link ErrorBudgetExceededException} (a budget of 1 fails on first error). Fatal errors always fail immediately.
+ * </p>
+ */
+public class StructuredValidationHandler implements ValidationHandler {
+
+    /**
+     * Budget for handlers with no error limit.
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final ValidationIssueSink sink;
+
+    private final int errorBudget;
+
+    private final boolean failOnErrors;
+
+    private int errorCount;
+
+    private int warningCount;
+
+    private ValidationIssue firstError;
+
+    /**
+     * Creates a handler with no error budget that fails on {@link #end()} if errors were reported.
+     * 
+     * @param sink The sink that receives issues.
+     */
+    public StructuredValidationHandler(ValidationIssueSink sink) {
+        this(sink, UNLIMITED, true);
+    }
+
+    /**
+     * @param sink The sink that receives issues.
+     * @param errorBudget Maximum number of errors before validation fails (must be greater than 0).
+     * @param failOnErrors <code>true</code> if {@link #end()} should throw an exception if errors were reported,
+     * <code>false</code> to let caller check {@link #getErrorCount()}.
+     */
+    public StructuredValidationHandler(ValidationIssueSink sink, int errorBudget, boolean failOnErrors) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null.");
+        }
+        if (errorBudget <= 0) {
+            throw new IllegalArgumentException("Error budget must be greater than 0 (was " + errorBudget + ").");
+        }
+        this.sink = sink;
+        this.errorBudget = errorBudget;
+        this.failOnErrors = failOnErrors;
+    }
+
+    @Override
+    public void fatal(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        fatal(new ValidationIssue(ValidationIssue.Severity.FATAL, error, getContainingType(field), field, message,
+                lineNumber, columnNumber));
+    }
+
+    @Override
+    public void error(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        error(new ValidationIssue(ValidationIssue.Severity.ERROR, error, getContainingType(field), field, message,
+                lineNumber, columnNumber));
+    }
+
+    @Override
+    public void warning(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        warningCount++;
+        sink.accept(new ValidationIssue(ValidationIssue.Severity.WARNING, error, getContainingType(field), field, message,
+                lineNumber, columnNumber));
+    }
+
+    @Override
+    public void fatal(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        fatal(new ValidationIssue(ValidationIssue.Severity.FATAL, error, type, null, message, lineNumber, columnNumber));
+    }
+
+    @Override
+    public void error(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        error(new ValidationIssue(ValidationIssue.Severity.ERROR, error, type, null, message, lineNumber, columnNumber));
+    }
+
+    @Override
+    public void warning(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+            ValidationError error) {
+        warningCount++;
+        sink.accept(new ValidationIssue(ValidationIssue.Severity.WARNING, error, type, null, message, lineNumber,
+                columnNumber));
+    }
+
+    private void fatal(ValidationIssue issue) {
+        sink.accept(issue);
+        throw new RuntimeException(issue.getFormattedMessage());
+    }
+
+    private void error(ValidationIssue issue) {
+        if (firstError == null) {
+            firstError = issue;
+        }
+        errorCount++;
+        sink.accept(issue);
+        if (errorCount >= errorBudget) {
+            throw new ErrorBudgetExceededException(errorCount, firstError);
+        }
+    }
+
+    private static TypeMetadata getContainingType(FieldMetadata field) {
+        return field == null ? null : field.getContainingType();
+    }
+
+    @Override
+    public void end() {
+        if (failOnErrors && errorCount > 0) {
+            throw new RuntimeException("Data model is invalid: " + errorCount + " error(s) found (first error: " //$NON-NLS-1$
+                    + firstError.getFormattedMessage() + ").");
+        }
+    }
+
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    /**
+     * Thrown when number of errors reaches the error budget of the handler.
+     */
+    public static class ErrorBudgetExceededException extends RuntimeException {
+
+        private final int errorCount;
+
+        private ErrorBudgetExceededException(int errorCount, ValidationIssue firstError) {
+            super("Validation stopped after " + errorCount + " error(s) (first error: " //$NON-NLS-1$
+                    + firstError.getFormattedMessage() + ").");
+            this.errorCount = errorCount;
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+    }
+}
@@ -0,0 +1,664 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.XMLConstants;
+
+import org.eclipse.xsd.util.XSDParser;
+import org.talend.mdm.commmon.metadata.validation.ValidationFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * <p>
+ * Keeps validation results (errors and warnings with their locations) of types so a later
+ * {@link MetadataRepository#load(InputStream, ValidationHandler, ValidationCache) load} of an unchanged type replays
+ * recorded results instead of executing validation rules again.
+ * </p>
+ * <p>
+ * Results are keyed by the {@link MetadataFingerprint fingerprint} of the type, fingerprints of its super types and of
+ * the entity types it references, and by type information validation rules check but the fingerprint does not cover
+ * (lookup fields, primary key info, foreign key info and filters, visibility rules, usages for reusable types, content
+ * of the XSD declaration and XSD attributes of the data model). A change in any of them validates the type again.
+ * </p>
+ * <p>
+ * Replayed issues are not attached to a DOM element (<code>null</code> element), line numbers are kept relative to
+ * the type declaration. Data model scoped validation (XML schema validation, circular dependencies) is never cached.
+ * </p>
+ * <p>
+ * Cache can be {@link #write(OutputStream) written} and {@link #read(InputStream) read} so results can be kept between
+ * restarts. This class is thread safe.
+ * </p>
+ */
+public class ValidationCache {
+
+    private static final int FORMAT_MAGIC = 0x4D564331; // "MVC1"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String XSD_ATTRIBUTES = ValidationCache.class.getName() + ".xsdAttributes"; //$NON-NLS-1$
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Validates <code>type</code> or replays recorded results if <code>type</code> did not change since results were
+     * recorded.
+     */
+    void validate(MetadataRepository repository, TypeMetadata type, ValidationHandler handler) {
+        if (!(type instanceof ComplexTypeMetadata)) {
+            type.validate(handler);
+            return;
+        }
+        ComplexTypeMetadata complexType = (ComplexTypeMetadata) type;
+        String name = getEntryName(complexType);
+        long key = getKey(repository, complexType);
+        Map<String, List<Issue>> pendingIssues = getPendingIssues(repository);
+        if (ValidationFactory.isValidated(complexType)) {
+            // Type was validated by a rule of another type (e.g. a foreign key check): issues are already reported.
+            missCount.incrementAndGet();
+            entries.put(name, new Entry(key, removePendingIssues(pendingIssues, name)));
+            return;
+        }
+        Entry entry = entries.get(name);
+        if (entry != null && entry.key == key) {
+            hitCount.incrementAndGet();
+            for (Issue issue : entry.issues) {
+                issue.replay(repository, complexType, handler);
+            }
+            // Prevents rules of other types from validating (and reporting issues of) this type again.
+            ValidationFactory.markValidated(complexType);
+        } else {
+            missCount.incrementAndGet();
+            RecordingValidationHandler recorder = new RecordingValidationHandler(complexType, handler, pendingIssues);
+            complexType.validate(recorder);
+            entries.put(name, new Entry(key, removePendingIssues(pendingIssues, name)));
+        }
+    }
+
+    // Issues recorded during a repository load, by owner type entry name (an issue may be reported while validating
+    // another type). Map is kept in repository computed values until the end of the load (see clearPendingIssues).
+    @SuppressWarnings("unchecked")
+    private Map<String, List<Issue>> getPendingIssues(MetadataRepository repository) {
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        Map<String, List<Issue>> pendingIssues = (Map<String, List<Issue>>) computedValues.get(this);
+        if (pendingIssues == null) {
+            pendingIssues = new HashMap<String, List<Issue>>();
+            Map<String, List<Issue>> previous = (Map<String, List<Issue>>) computedValues.putIfAbsent(this, pendingIssues);
+            if (previous != null) {
+                pendingIssues = previous;
+            }
+        }
+        return pendingIssues;
+    }
+
+    /**
+     * Discards issues recorded during a load of <code>repository</code> (called once all types are validated).
+     */
+    void clearPendingIssues(MetadataRepository repository) {
+        repository.getComputedValues().remove(this);
+    }
+
+    private static List<Issue> removePendingIssues(Map<String, List<Issue>> pendingIssues, String name) {
+        List<Issue> issues = pendingIssues.remove(name);
+        return issues == null ? Collections.<Issue> emptyList() : Collections.unmodifiableList(issues);
+    }
+
+    /**
+     * @return Number of types whose validation results were replayed.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Number of types that were validated.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return Number of types in cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached validation results.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Writes cache content to <code>output</code> (stream is not closed).
+     *
+     * @param output An output stream.
+     * @throws IOException In case of write error.
+     * @see #read(InputStream)
+     */
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(FORMAT_MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        List<Map.Entry<String, Entry>> content = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+        data.writeInt(content.size());
+        for (Map.Entry<String, Entry> cacheEntry : content) {
+            data.writeUTF(cacheEntry.getKey());
+            Entry entry = cacheEntry.getValue();
+            data.writeLong(entry.key);
+            data.writeInt(entry.issues.size());
+            for (Issue issue : entry.issues) {
+                issue.write(data);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a cache written by {@link #write(OutputStream)} (stream is not closed).
+     *
+     * @param input An input stream.
+     * @return A new {@link ValidationCache} with content read from <code>input</code>.
+     * @throws IOException In case of read error or if <code>input</code> does not contain a cache.
+     */
+    public static ValidationCache read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        if (data.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Input does not contain a validation cache.");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Validation cache version " + version + " is not supported (expected version "
+                    + FORMAT_VERSION + ").");
+        }
+        ValidationCache cache = new ValidationCache();
+        int size = data.readInt();
+        for (int i = 0; i < size; i++) {
+            String name = data.readUTF();
+            long key = data.readLong();
+            int issueCount = data.readInt();
+            List<Issue> issues = new ArrayList<Issue>(issueCount);
+            for (int j = 0; j < issueCount; j++) {
+                issues.add(Issue.read(data));
+            }
+            cache.entries.put(name, new Entry(key, Collections.unmodifiableList(issues)));
+        }
+        return cache;
+    }
+
+    // Entity types and reusable types may share the same name.
+    private static String getEntryName(ComplexTypeMetadata type) {
+        return (type.isInstantiable() ? "entity:" : "type:") + type.getName(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static long getKey(MetadataRepository repository, ComplexTypeMetadata type) {
+        long key = MetadataFingerprint.getFingerprint(type);
+        for (TypeMetadata superType : type.getSuperTypes()) {
+            key = MetadataFingerprint.combine(key, MetadataFingerprint.getFingerprint(superType));
+        }
+        for (FieldMetadata lookupField : type.getLookupFields()) {
+            key = MetadataFingerprint.combine(key, lookupField.getPath());
+        }
+        for (FieldMetadata primaryKeyInfo : type.getPrimaryKeyInfo()) {
+            key = MetadataFingerprint.combine(key, primaryKeyInfo.getPath());
+        }
+        if (!type.isInstantiable()) {
+            // Unused reusable types are reported (see UnusedReusableTypeValidationRule).
+            for (ComplexTypeMetadata usage : type.getUsages()) {
+                key = MetadataFingerprint.combine(key, usage.getName());
+            }
+            for (ComplexTypeMetadata subType : type.getSubTypes()) {
+                key = MetadataFingerprint.combine(key, subType.getName());
+            }
+            TypeMetadata topLevelType = MetadataUtils.getSuperConcreteType(type);
+            if (topLevelType instanceof ComplexTypeMetadata) {
+                key = MetadataFingerprint.combine(key, MetadataUtils.countEntityUsageCount((ComplexTypeMetadata) topLevelType));
+            }
+        }
+        Element element = type.<Element> getData(MetadataRepository.XSD_DOM_ELEMENT);
+        if (element != null) {
+            // Some rules only check DOM content (e.g. XSDAttributeValidationRule).
+            key = combineDomContent(key, element);
+            Integer typeLineNumber = type.<Integer> getData(MetadataRepository.XSD_LINE_NUMBER);
+            for (Element attribute : getXsdAttributes(repository, element.getOwnerDocument())) {
+                // XSD attributes are reported for every type (wherever they are declared), with their location.
+                int lineNumber = XSDParser.getStartLine(attribute);
+                key = MetadataFingerprint.combine(key, typeLineNumber == null ? lineNumber : lineNumber - typeLineNumber);
+                key = MetadataFingerprint.combine(key, XSDParser.getStartColumn(attribute));
+            }
+        }
+        return type.accept(new FieldKeyVisitor(MetadataFingerprint.getEntityFingerprints(repository), key));
+    }
+
+    // Adds names, attributes and text of node and its descendants (comments and white spaces are ignored).
+    private static long combineDomContent(long key, Node node) {
+        short nodeType = node.getNodeType();
+        if (nodeType == Node.TEXT_NODE || nodeType == Node.CDATA_SECTION_NODE) {
+            String text = node.getNodeValue().trim();
+            return text.isEmpty() ? key : MetadataFingerprint.combine(key, text);
+        } else if (nodeType != Node.ELEMENT_NODE) {
+            return key;
+        }
+        key = MetadataFingerprint.combine(key, node.getNamespaceURI());
+        key = MetadataFingerprint.combine(key, node.getLocalName() == null ? node.getNodeName() : node.getLocalName());
+        NamedNodeMap attributes = node.getAttributes();
+        Map<String, String> sortedAttributes = new TreeMap<String, String>();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            sortedAttributes.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
+        for (Map.Entry<String, String> attribute : sortedAttributes.entrySet()) {
+            key = MetadataFingerprint.combine(key, attribute.getKey());
+            key = MetadataFingerprint.combine(key, attribute.getValue());
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            key = combineDomContent(key, child);
+        }
+        return key;
+    }
+
+    // <xsd:attribute> elements of document, computed once per repository (see XSDAttributeValidationRule).
+    private static List<Element> getXsdAttributes(MetadataRepository repository, Document document) {
+        if (document == null) {
+            return Collections.emptyList();
+        }
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        XsdAttributes xsdAttributes = (XsdAttributes) computedValues.get(XSD_ATTRIBUTES);
+        if (xsdAttributes == null || xsdAttributes.document != document) {
+            NodeList nodes = document.getElementsByTagNameNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "attribute"); //$NON-NLS-1$
+            List<Element> attributes = new ArrayList<Element>(nodes.getLength());
+            for (int i = 0; i < nodes.getLength(); i++) {
+                attributes.add((Element) nodes.item(i));
+            }
+            xsdAttributes = new XsdAttributes(document, attributes);
+            computedValues.put(XSD_ATTRIBUTES, xsdAttributes);
+        }
+        return xsdAttributes.attributes;
+    }
+
+    private static class XsdAttributes {
+
+        private final Document document;
+
+        private final List<Element> attributes;
+
+        private XsdAttributes(Document document, List<Element> attributes) {
+            this.document = document;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * Adds to key field information checked by validation rules but not part of fingerprint.
+     */
+    private static class FieldKeyVisitor extends DefaultMetadataVisitor<Long> {
+
+        private final Map<String, Long> entityFingerprints;
+
+        // Prevents infinite loops on recursive contained types.
+        private final Set<ComplexTypeMetadata> processedTypes = new HashSet<ComplexTypeMetadata>();
+
+        private long key;
+
+        private FieldKeyVisitor(Map<String, Long> entityFingerprints, long key) {
+            this.entityFingerprints = entityFingerprints;
+            this.key = key;
+        }
+
+        @Override
+        public Long visit(ComplexTypeMetadata complexType) {
+            super.visit(complexType);
+            return key;
+        }
+
+        @Override
+        public Long visit(ContainedComplexTypeMetadata containedType) {
+            super.visit(containedType);
+            return key;
+        }
+
+        @Override
+        public Long visit(ReferenceFieldMetadata referenceField) {
+            key = MetadataFingerprint.combine(key, referenceField.getVisibilityRule());
+            key = MetadataFingerprint.combine(key, referenceField.getForeignKeyFilter());
+            for (FieldMetadata foreignKeyInfo : referenceField.getForeignKeyInfoFields()) {
+                key = MetadataFingerprint.combine(key, foreignKeyInfo.getPath());
+            }
+            String referencedTypeName = referenceField.getReferencedType().getName();
+            Long referencedFingerprint = entityFingerprints.get(referencedTypeName);
+            if (referencedFingerprint == null) {
+                referencedFingerprint = MetadataFingerprint.getFingerprint(referenceField.getReferencedType());
+            }
+            key = MetadataFingerprint.combine(key, referencedFingerprint);
+            return key;
+        }
+
+        @Override
+        public Long visit(ContainedTypeFieldMetadata containedField) {
+            key = MetadataFingerprint.combine(key, containedField.getVisibilityRule());
+            if (processedTypes.add(containedField.getContainedType())) {
+                super.visit(containedField);
+            }
+            return key;
+        }
+
+        @Override
+        public Long visit(SimpleTypeFieldMetadata simpleField) {
+            key = MetadataFingerprint.combine(key, simpleField.getVisibilityRule());
+            return key;
+        }
+
+        @Override
+        public Long visit(EnumerationFieldMetadata enumField) {
+            key = MetadataFingerprint.combine(key, enumField.getVisibilityRule());
+            return key;
+        }
+    }
+
+    private static class Entry {
+
+        private final long key;
+
+        private final List<Issue> issues;
+
+        private Entry(long key, List<Issue> issues) {
+            this.key = key;
+            this.issues = issues;
+        }
+    }
+
+    private static enum Severity {
+        FATAL,
+        ERROR,
+        WARNING
+    }
+
+    /**
+     * A recorded validation issue. Issue target is identified by name (owner type name and field path) so it can be
+     * replayed on another repository.
+     */
+    private static class Issue {
+
+        private final Severity severity;
+
+        // Name of the type the issue is reported on (or the type that owns the field), null if issue has no target.
+        private final String ownerName;
+
+        private final boolean ownerInstantiable;
+
+        // Path of the field in owner type, null for issues reported on a type.
+        private final String fieldPath;
+
+        private final String message;
+
+        // Line number relative to the validated type declaration.
+        private final Integer lineOffset;
+
+        private final Integer columnNumber;
+
+        private final ValidationError error;
+
+        private Issue(Severity severity, String ownerName, boolean ownerInstantiable, String fieldPath, String message,
+                Integer lineOffset, Integer columnNumber, ValidationError error) {
+            this.severity = severity;
+            this.ownerName = ownerName;
+            this.ownerInstantiable = ownerInstantiable;
+            this.fieldPath = fieldPath;
+            this.message = message;
+            this.lineOffset = lineOffset;
+            this.columnNumber = columnNumber;
+            this.error = error;
+        }
+
+        private void replay(MetadataRepository repository, ComplexTypeMetadata validatedType, ValidationHandler handler) {
+            Integer lineNumber = lineOffset;
+            Integer typeLineNumber = validatedType.<Integer> getData(MetadataRepository.XSD_LINE_NUMBER);
+            if (lineOffset != null && typeLineNumber != null) {
+                lineNumber = typeLineNumber + lineOffset;
+            }
+            ComplexTypeMetadata owner = getOwner(repository, validatedType);
+            if (fieldPath != null && owner != null && owner.hasField(fieldPath)) {
+                FieldMetadata field = owner.getField(fieldPath);
+                switch (severity) {
+                case FATAL:
+                    handler.fatal(field, message, null, lineNumber, columnNumber, error);
+                    break;
+                case ERROR:
+                    handler.error(field, message, null, lineNumber, columnNumber, error);
+                    break;
+                default:
+                    handler.warning(field, message, null, lineNumber, columnNumber, error);
+                    break;
+                }
+            } else {
+                TypeMetadata type = ownerName == null ? null : (owner == null ? validatedType : owner);
+                switch (severity) {
+                case FATAL:
+                    handler.fatal(type, message, null, lineNumber, columnNumber, error);
+                    break;
+                case ERROR:
+                    handler.error(type, message, null, lineNumber, columnNumber, error);
+                    break;
+                default:
+                    handler.warning(type, message, null, lineNumber, columnNumber, error);
+                    break;
+                }
+            }
+        }
+
+        private ComplexTypeMetadata getOwner(MetadataRepository repository, ComplexTypeMetadata validatedType) {
+            if (ownerName == null) {
+                return null;
+            }
+            if (ownerName.equals(validatedType.getName()) && ownerInstantiable == validatedType.isInstantiable()) {
+                return validatedType;
+            }
+            if (ownerInstantiable) {
+                return repository.getComplexType(ownerName);
+            }
+            return (ComplexTypeMetadata) repository.getNonInstantiableType(repository.getUserNamespace(), ownerName);
+        }
+
+        private void write(DataOutputStream data) throws IOException {
+            data.writeByte(severity.ordinal());
+            writeString(data, ownerName);
+            data.writeBoolean(ownerInstantiable);
+            writeString(data, fieldPath);
+            writeString(data, message);
+            writeInteger(data, lineOffset);
+            writeInteger(data, columnNumber);
+            writeString(data, error == null ? null : error.name());
+        }
+
+        private static Issue read(DataInputStream data) throws IOException {
+            int severity = data.readByte();
+            if (severity < 0 || severity >= Severity.values().length) {
+                throw new IOException("Invalid issue severity: " + severity);
+            }
+            String ownerName = readString(data);
+            boolean ownerInstantiable = data.readBoolean();
+            String fieldPath = readString(data);
+            String message = readString(data);
+            Integer lineOffset = readInteger(data);
+            Integer columnNumber = readInteger(data);
+            String error = readString(data);
+            try {
+                return new Issue(Severity.values()[severity], ownerName, ownerInstantiable, fieldPath, message, lineOffset,
+                        columnNumber, error == null ? null : ValidationError.valueOf(error));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown validation error '" + error + "'.", e);
+            }
+        }
+
+        private static void writeString(DataOutputStream data, String value) throws IOException {
+            data.writeBoolean(value != null);
+            if (value != null) {
+                data.writeUTF(value);
+            }
+        }
+
+        private static String readString(DataInputStream data) throws IOException {
+            return data.readBoolean() ? data.readUTF() : null;
+        }
+
+        private static void writeInteger(DataOutputStream data, Integer value) throws IOException {
+            data.writeBoolean(value != null);
+            if (value != null) {
+                data.writeInt(value);
+            }
+        }
+
+        private static Integer readInteger(DataInputStream data) throws IOException {
+            return data.readBoolean() ? data.readInt() : null;
+        }
+    }
+
+    /**
+     * Forwards issues to a {@link ValidationHandler} and records them under the type that owns the issue (which may be
+     * another type than the validated type).
+     */
+    private static class RecordingValidationHandler implements ValidationHandler {
+
+        private final ComplexTypeMetadata validatedType;
+
+        private final ValidationHandler delegate;
+
+        private final Map<String, List<Issue>> issues;
+
+        private RecordingValidationHandler(ComplexTypeMetadata validatedType, ValidationHandler delegate,
+                Map<String, List<Issue>> issues) {
+            this.validatedType = validatedType;
+            this.delegate = delegate;
+            this.issues = issues;
+        }
+
+        private void record(Severity severity, FieldMetadata field, String message, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            ComplexTypeMetadata owner = field.getContainingType() == null ? null : field.getContainingType().getEntity();
+            if (owner == null) {
+                add(validatedType, new Issue(severity, validatedType.getName(), validatedType.isInstantiable(), null,
+                        message, getLineOffset(validatedType, lineNumber), columnNumber, error));
+            } else {
+                add(owner, new Issue(severity, owner.getName(), owner.isInstantiable(), field.getPath(), message,
+                        getLineOffset(owner, lineNumber), columnNumber, error));
+            }
+        }
+
+        private void record(Severity severity, TypeMetadata type, String message, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            String ownerName = type == null ? null : type.getName();
+            boolean ownerInstantiable = !(type instanceof ComplexTypeMetadata) || ((ComplexTypeMetadata) type).isInstantiable();
+            ComplexTypeMetadata owner = type instanceof ComplexTypeMetadata ? ((ComplexTypeMetadata) type).getEntity() : null;
+            if (owner == null) {
+                owner = validatedType;
+            }
+            add(owner, new Issue(severity, ownerName, ownerInstantiable, null, message, getLineOffset(owner, lineNumber),
+                    columnNumber, error));
+        }
+
+        private void add(ComplexTypeMetadata owner, Issue issue) {
+            String ownerEntryName = getEntryName(owner);
+            List<Issue> ownerIssues = issues.get(ownerEntryName);
+            if (ownerIssues == null) {
+                ownerIssues = new ArrayList<Issue>();
+                issues.put(ownerEntryName, ownerIssues);
+            }
+            ownerIssues.add(issue);
+        }
+
+        private static Integer getLineOffset(ComplexTypeMetadata owner, Integer lineNumber) {
+            Integer typeLineNumber = owner.<Integer> getData(MetadataRepository.XSD_LINE_NUMBER);
+            if (lineNumber == null || typeLineNumber == null) {
+                return lineNumber;
+            }
+            return lineNumber - typeLineNumber;
+        }
+
+        @Override
+        public void fatal(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.fatal(field, message, element, lineNumber, columnNumber, error);
+            record(Severity.FATAL, field, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void error(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.error(field, message, element, lineNumber, columnNumber, error);
+            record(Severity.ERROR, field, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void warning(FieldMetadata field, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.warning(field, message, element, lineNumber, columnNumber, error);
+            record(Severity.WARNING, field, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void fatal(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.fatal(type, message, element, lineNumber, columnNumber, error);
+            record(Severity.FATAL, type, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void error(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.error(type, message, element, lineNumber, columnNumber, error);
+            record(Severity.ERROR, type, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void warning(TypeMetadata type, String message, Element element, Integer lineNumber, Integer columnNumber,
+                ValidationError error) {
+            delegate.warning(type, message, element, lineNumber, columnNumber, error);
+            record(Severity.WARNING, type, message, lineNumber, columnNumber, error);
+        }
+
+        @Override
+        public void end() {
+            // End of validation is handled by repository.
+        }
+
+        @Override
+        public int getErrorCount() {
+            return delegate.getErrorCount();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+/**
+ * An issue (fatal error, error or warning) reported during data model validation. Issues do not keep reference to DOM
+ * elements and formatted message (with location) is only built when {@link #getFormattedMessage()} is called.
+ * 
+ * @see StructuredValidationHandler
+ */
+public class ValidationIssue {
+
+    public static enum Severity {
+        FATAL,
+        ERROR,
+        WARNING
+    }
+
+    private final Severity severity;
+
+    private final ValidationError error;
+
+    private final TypeMetadata type;
+
+    private final FieldMetadata field;
+
+    private final String message;
+
+    private final Integer lineNumber;
+
+    private final Integer columnNumber;
+
+    public ValidationIssue(Severity severity, ValidationError error, TypeMetadata type, FieldMetadata field, String message,
+            Integer lineNumber, Integer columnNumber) {
+        if (severity == null) {
+            throw new IllegalArgumentException("Severity cannot be null.");
+        }
+        this.severity = severity;
+        this.error = error;
+        this.type = type;
+        this.field = field;
+        this.message = message;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public ValidationError getError() {
+        return error;
+    }
+
+    /**
+     * @return The type the issue was reported on (or the containing type of {@link #getField() field}), might be
+     * <code>null</code> for data model scoped issues.
+     */
+    public TypeMetadata getType() {
+        return type;
+    }
+
+    /**
+     * @return The field the issue was reported on or <code>null</code> if issue was reported on a type.
+     */
+    public FieldMetadata getField() {
+        return field;
+    }
+
+    /**
+     * @return The message as reported by validation rule (without location).
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public Integer getLineNumber() {
+        return lineNumber;
+    }
+
+    public Integer getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * @return The message with its location (same format as {@link DefaultValidationHandler}).
+     */
+    public String getFormattedMessage() {
+        return message + " (line: " + lineNumber + " / column: " + columnNumber + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    @Override
+    public String toString() {
+        return severity + " [" + error + "] " + getFormattedMessage(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
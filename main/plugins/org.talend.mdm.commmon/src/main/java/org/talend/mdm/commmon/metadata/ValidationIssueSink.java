@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+/**
+ * Receives {@link ValidationIssue issues} as soon as they are reported by validation.
+ * 
+ * @see StructuredValidationHandler
+ */
+public interface ValidationIssueSink {
+
+    /**
+     * @param issue An issue reported during validation.
+     */
+    void accept(ValidationIssue issue);
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+
+/**
+ * <p>
+ * Converts XML lexical values of a simple type to Java values and back. Converters are resolved once per type from the
+ * concrete XML schema type (see {@link SimpleTypeMetadata#getValueConverter()}), so callers no longer need to compare
+ * type names for each value.
+ * </p>
+ * <p>
+ * Java types follow {@link MetadataUtils#getType(String)}: integer types are {@link Integer}, long types {@link Long},
+ * short types {@link Short}, decimal is {@link BigDecimal} and date types are {@link Timestamp}. Types with no specific
+ * conversion (string, UUID, anyURI...) are converted to {@link String}.
+ * </p>
+ * <p>
+ * Converters are stateless and thread safe. Integer parsing works directly on the {@link CharSequence} (no
+ * intermediate String) and formatting appends to a {@link StringBuilder}.
+ * </p>
+ */
+public abstract class ValueConverter {
+
+    public static final ValueConverter STRING = new StringConverter();
+
+    public static final ValueConverter INT = new IntConverter();
+
+    public static final ValueConverter LONG = new LongConverter();
+
+    public static final ValueConverter SHORT = new ShortConverter();
+
+    public static final ValueConverter BYTE = new ByteConverter();
+
+    public static final ValueConverter DECIMAL = new DecimalConverter();
+
+    public static final ValueConverter DOUBLE = new DoubleConverter();
+
+    public static final ValueConverter FLOAT = new FloatConverter();
+
+    public static final ValueConverter BOOLEAN = new BooleanConverter();
+
+    public static final ValueConverter DATE = new DateConverter(Types.DATE);
+
+    public static final ValueConverter DATETIME = new DateConverter(Types.DATETIME);
+
+    public static final ValueConverter TIME = new DateConverter(Types.TIME);
+
+    private static DatatypeFactory datatypeFactory;
+
+    /**
+     * @param typeName Name of a XML schema type (see {@link Types}).
+     * @return The converter for values of <code>typeName</code>.
+     */
+    public static ValueConverter get(String typeName) {
+        if (Types.INTEGERS.contains(typeName)) {
+            return INT;
+        } else if (Types.LONGS.contains(typeName)) {
+            return LONG;
+        } else if (Types.SHORTS.contains(typeName)) {
+            return SHORT;
+        } else if (Types.BYTE.equals(typeName) || Types.UNSIGNED_BYTE.equals(typeName)) {
+            return BYTE;
+        } else if (Types.DECIMAL.equals(typeName)) {
+            return DECIMAL;
+        } else if (Types.DOUBLE.equals(typeName) || Types.UNSIGNED_DOUBLE.equals(typeName)) {
+            return DOUBLE;
+        } else if (Types.FLOAT.equals(typeName)) {
+            return FLOAT;
+        } else if (Types.BOOLEAN.equals(typeName)) {
+            return BOOLEAN;
+        } else if (Types.DATE.equals(typeName)) {
+            return DATE;
+        } else if (Types.DATETIME.equals(typeName)) {
+            return DATETIME;
+        } else if (Types.TIME.equals(typeName)) {
+            return TIME;
+        }
+        return STRING;
+    }
+
+    /**
+     * @return The Java class of values returned by {@link #parse(CharSequence)}.
+     */
+    public abstract Class<?> getJavaType();
+
+    /**
+     * @param value A XML lexical value (leading and trailing white spaces are ignored for non string types).
+     * @return The Java value.
+     * @throws IllegalArgumentException If <code>value</code> is not a valid lexical value.
+     */
+    public abstract Object parse(CharSequence value);
+
+    /**
+     * @param value A Java value (as returned by {@link #parse(CharSequence)}).
+     * @param output Where lexical value is appended.
+     */
+    public abstract void format(Object value, StringBuilder output);
+
+    /**
+     * @param value A Java value (as returned by {@link #parse(CharSequence)}).
+     * @return The XML lexical value.
+     */
+    public String format(Object value) {
+        StringBuilder output = new StringBuilder();
+        format(value, output);
+        return output.toString();
+    }
+
+    /**
+     * Parses an int from <code>value</code> without creating intermediate objects.
+     *
+     * @param value A character sequence.
+     * @param start Start index (inclusive).
+     * @param end End index (exclusive).
+     * @return The parsed value.
+     * @throws IllegalArgumentException If characters are not a valid int (white spaces are not allowed).
+     */
+    public static int parseInt(CharSequence value, int start, int end) {
+        long result = parseLong(value, start, end, Types.INT);
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            throw invalidValue(value, Types.INT);
+        }
+        return (int) result;
+    }
+
+    /**
+     * Parses a long from <code>value</code> without creating intermediate objects.
+     *
+     * @param value A character sequence.
+     * @param start Start index (inclusive).
+     * @param end End index (exclusive).
+     * @return The parsed value.
+     * @throws IllegalArgumentException If characters are not a valid long (white spaces are not allowed).
+     */
+    public static long parseLong(CharSequence value, int start, int end) {
+        return parseLong(value, start, end, Types.LONG);
+    }
+
+    private static long parseLong(CharSequence value, int start, int end, String typeName) {
+        if (start >= end) {
+            throw invalidValue(value, typeName);
+        }
+        int i = start;
+        boolean negative = false;
+        char first = value.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw invalidValue(value, typeName);
+            }
+        }
+        // Accumulates negatively (Long.MIN_VALUE has no positive counterpart).
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long minBeforeMultiply = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < minBeforeMultiply) {
+                throw invalidValue(value, typeName);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw invalidValue(value, typeName);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    // Returns [start, end[ of value without leading and trailing white spaces.
+    private static int trimStart(CharSequence value) {
+        int start = 0;
+        while (start < value.length() && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence value, int start) {
+        int end = value.length();
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String trim(CharSequence value) {
+        int start = trimStart(value);
+        return value.subSequence(start, trimEnd(value, start)).toString();
+    }
+
+    private static IllegalArgumentException invalidValue(CharSequence value, String typeName) {
+        return new IllegalArgumentException("Value '" + value + "' is not a valid '" + typeName + "'.");
+    }
+
+    private static synchronized DatatypeFactory getDatatypeFactory() {
+        if (datatypeFactory == null) {
+            try {
+                datatypeFactory = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw new RuntimeException("Could not create datatype factory.", e);
+            }
+        }
+        return datatypeFactory;
+    }
+
+    private static class StringConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return String.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            return value.toString();
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(value);
+        }
+    }
+
+    private static class IntConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Integer.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            int start = trimStart(value);
+            return parseInt(value, start, trimEnd(value, start));
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(((Number) value).intValue());
+        }
+    }
+
+    private static class LongConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Long.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            int start = trimStart(value);
+            return parseLong(value, start, trimEnd(value, start));
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(((Number) value).longValue());
+        }
+    }
+
+    private static class ShortConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Short.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            int start = trimStart(value);
+            int result = parseInt(value, start, trimEnd(value, start));
+            if (result < Short.MIN_VALUE || result > Short.MAX_VALUE) {
+                throw invalidValue(value, Types.SHORT);
+            }
+            return (short) result;
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(((Number) value).shortValue());
+        }
+    }
+
+    private static class ByteConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Byte.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            int start = trimStart(value);
+            int result = parseInt(value, start, trimEnd(value, start));
+            if (result < Byte.MIN_VALUE || result > Byte.MAX_VALUE) {
+                throw invalidValue(value, Types.BYTE);
+            }
+            return (byte) result;
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(((Number) value).byteValue());
+        }
+    }
+
+    private static class DecimalConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return BigDecimal.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            try {
+                return new BigDecimal(trim(value));
+            } catch (NumberFormatException e) {
+                throw invalidValue(value, Types.DECIMAL);
+            }
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            if (value instanceof BigDecimal) {
+                output.append(((BigDecimal) value).toPlainString());
+            } else {
+                output.append(value);
+            }
+        }
+    }
+
+    private static class DoubleConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Double.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            String trimmed = trim(value);
+            if ("INF".equals(trimmed)) { //$NON-NLS-1$
+                return Double.POSITIVE_INFINITY;
+            } else if ("-INF".equals(trimmed)) { //$NON-NLS-1$
+                return Double.NEGATIVE_INFINITY;
+            }
+            try {
+                return Double.parseDouble(trimmed);
+            } catch (NumberFormatException e) {
+                throw invalidValue(value, Types.DOUBLE);
+            }
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            double doubleValue = ((Number) value).doubleValue();
+            if (Double.isInfinite(doubleValue)) {
+                output.append(doubleValue > 0 ? "INF" : "-INF"); //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                output.append(doubleValue);
+            }
+        }
+    }
+
+    private static class FloatConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Float.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            String trimmed = trim(value);
+            if ("INF".equals(trimmed)) { //$NON-NLS-1$
+                return Float.POSITIVE_INFINITY;
+            } else if ("-INF".equals(trimmed)) { //$NON-NLS-1$
+                return Float.NEGATIVE_INFINITY;
+            }
+            try {
+                return Float.parseFloat(trimmed);
+            } catch (NumberFormatException e) {
+                throw invalidValue(value, Types.FLOAT);
+            }
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            float floatValue = ((Number) value).floatValue();
+            if (Float.isInfinite(floatValue)) {
+                output.append(floatValue > 0 ? "INF" : "-INF"); //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                output.append(floatValue);
+            }
+        }
+    }
+
+    private static class BooleanConverter extends ValueConverter {
+
+        @Override
+        public Class<?> getJavaType() {
+            return Boolean.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            int start = trimStart(value);
+            int end = trimEnd(value, start);
+            if (matches(value, start, end, "true") || matches(value, start, end, "1")) { //$NON-NLS-1$ //$NON-NLS-2$
+                return Boolean.TRUE;
+            } else if (matches(value, start, end, "false") || matches(value, start, end, "0")) { //$NON-NLS-1$ //$NON-NLS-2$
+                return Boolean.FALSE;
+            }
+            throw invalidValue(value, Types.BOOLEAN);
+        }
+
+        private static boolean matches(CharSequence value, int start, int end, String expected) {
+            if (end - start != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (value.charAt(start + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            output.append(((Boolean) value).booleanValue());
+        }
+    }
+
+    // Parsed values are instants (time zone of lexical value is applied, default time zone if value has none): values are
+    // formatted in default time zone (without time zone) so a formatted value denotes the parsed instant.
+    private static class DateConverter extends ValueConverter {
+
+        private final String typeName;
+
+        private DateConverter(String typeName) {
+            this.typeName = typeName;
+        }
+
+        @Override
+        public Class<?> getJavaType() {
+            return Timestamp.class;
+        }
+
+        @Override
+        public Object parse(CharSequence value) {
+            try {
+                GregorianCalendar calendar = getDatatypeFactory().newXMLGregorianCalendar(trim(value)).toGregorianCalendar();
+                return new Timestamp(calendar.getTimeInMillis());
+            } catch (IllegalArgumentException e) {
+                throw invalidValue(value, typeName);
+            }
+        }
+
+        @Override
+        public void format(Object value, StringBuilder output) {
+            GregorianCalendar calendar = new GregorianCalendar();
+            calendar.setGregorianChange(new Date(Long.MIN_VALUE)); // Same (proleptic) calendar as parse
+            calendar.setTime((Date) value);
+            if (!Types.TIME.equals(typeName)) {
+                appendPadded(output, calendar.get(Calendar.YEAR), 4).append('-');
+                appendPadded(output, calendar.get(Calendar.MONTH) + 1, 2).append('-');
+                appendPadded(output, calendar.get(Calendar.DAY_OF_MONTH), 2);
+            }
+            if (Types.DATETIME.equals(typeName)) {
+                output.append('T');
+            }
+            if (!Types.DATE.equals(typeName)) {
+                appendPadded(output, calendar.get(Calendar.HOUR_OF_DAY), 2).append(':');
+                appendPadded(output, calendar.get(Calendar.MINUTE), 2).append(':');
+                appendPadded(output, calendar.get(Calendar.SECOND), 2);
+                int nanos = value instanceof Timestamp ? ((Timestamp) value).getNanos()
+                        : calendar.get(Calendar.MILLISECOND) * 1000000;
+                if (nanos != 0) { // Fractional seconds without trailing zeros
+                    int digits = 9;
+                    while (nanos % 10 == 0) {
+                        nanos /= 10;
+                        digits--;
+                    }
+                    appendPadded(output.append('.'), nanos, digits);
+                }
+            }
+        }
+
+        private static StringBuilder appendPadded(StringBuilder output, int value, int width) {
+            for (int limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+                if (value < limit) {
+                    output.append('0');
+                }
+            }
+            return output.append(value);
+        }
+    }
+}
@@ -11,11 +11,11 @@
 package org.talend.mdm.commmon.metadata.annotation;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.math.NumberUtils;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.xsd.XSDAnnotation;
 import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
 import org.talend.mdm.commmon.metadata.MetadataRepository;
+import org.talend.mdm.commmon.metadata.record.DefaultValueRule;
 import org.w3c.dom.Element;
 
 public class DefaultValueRuleProcessor implements XmlSchemaAnnotationProcessor {
@@ -43,7 +43,7 @@ public class DefaultValueRuleProcessor implements XmlSchemaAnnotationProcessor {
         if (StringUtils.isNotBlank(text)) {
             if (StringUtils.startsWith(text, "\"") && StringUtils.endsWith(text, "\"")) { //$NON-NLS-1$ //$NON-NLS-2$
                 isValue = true;
-            } else if (NumberUtils.isNumber(text)) {
+            } else if (DefaultValueRule.isNumber(text.trim())) {
                 isValue = true;
             } else if (StringUtils.equalsIgnoreCase(text, MetadataRepository.FN_FALSE)
                     || StringUtils.equalsIgnoreCase(text, MetadataRepository.FN_TRUE)) {
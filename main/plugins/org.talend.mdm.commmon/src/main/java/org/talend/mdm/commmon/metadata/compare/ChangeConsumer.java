@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+/**
+ * Receives {@link Change changes} as soon as they are found during a comparison.
+ *
+ * @see Compare#compare(org.talend.mdm.commmon.metadata.MetadataRepository,
+ * org.talend.mdm.commmon.metadata.MetadataRepository, ChangeConsumer)
+ */
+public interface ChangeConsumer {
+
+    /**
+     * @param change A change between the 2 compared data models ({@link AddChange}, {@link RemoveChange} or
+     * {@link ModifyChange}).
+     * @return <code>true</code> to continue comparison, <code>false</code> to stop it.
+     */
+    boolean accept(Change change);
+}
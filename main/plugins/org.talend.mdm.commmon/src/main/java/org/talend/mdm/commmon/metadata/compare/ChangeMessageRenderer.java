@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.DefaultMetadataVisitor;
+import org.talend.mdm.commmon.metadata.EnumerationFieldMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
+import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
+import org.talend.mdm.commmon.metadata.SimpleTypeFieldMetadata;
+
+/**
+ * <p>
+ * Renders localized messages for {@link Change changes}. Resource bundles and message templates are loaded once per
+ * locale and shared by all changes, so rendering a large number of changes does not look up bundles nor parse
+ * templates again.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public class ChangeMessageRenderer {
+
+    private static final ChangeMessageRenderer INSTANCE = new ChangeMessageRenderer(Change.MESSAGE_BUNDLE_NAME);
+
+    // Replaces message argument when template is pre-formatted (then split around this value).
+    private static final String ARGUMENT_PLACEHOLDER = "\u0000"; //$NON-NLS-1$
+
+    private static final MessageKeyVisitor MESSAGE_KEY_VISITOR = new MessageKeyVisitor();
+
+    private final String bundleName;
+
+    private final ConcurrentMap<Locale, LocaleTemplates> localeTemplates = new ConcurrentHashMap<Locale, LocaleTemplates>();
+
+    public ChangeMessageRenderer(String bundleName) {
+        this.bundleName = bundleName;
+    }
+
+    /**
+     * @return A renderer for the default change messages.
+     */
+    public static ChangeMessageRenderer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param change A change.
+     * @param locale The locale for the message.
+     * @return The message for <code>change</code> or <code>null</code> if change element has no message.
+     * @see Change#getMessage(Locale)
+     */
+    public String render(Change change, Locale locale) {
+        String key = getMessageKey(change);
+        if (key == null) {
+            return null;
+        }
+        return getTemplates(locale).getTemplate(key).format(getName(change.getElement()));
+    }
+
+    /**
+     * Appends messages for all <code>changes</code> to <code>output</code> (one message per line). Changes with no
+     * message are skipped.
+     *
+     * @param changes The changes to render.
+     * @param locale The locale for the messages.
+     * @param output Where messages are written.
+     * @throws IOException In case <code>output</code> fails to append messages.
+     */
+    public void renderAll(List<? extends Change> changes, Locale locale, Appendable output) throws IOException {
+        LocaleTemplates templates = getTemplates(locale);
+        for (Change change : changes) {
+            String key = getMessageKey(change);
+            if (key != null) {
+                templates.getTemplate(key).appendTo(output, getName(change.getElement()));
+                output.append('\n');
+            }
+        }
+    }
+
+    private LocaleTemplates getTemplates(Locale locale) {
+        LocaleTemplates templates = localeTemplates.get(locale);
+        if (templates == null) {
+            templates = new LocaleTemplates(ResourceBundle.getBundle(bundleName, locale), locale);
+            LocaleTemplates previous = localeTemplates.putIfAbsent(locale, templates);
+            if (previous != null) {
+                templates = previous;
+            }
+        }
+        return templates;
+    }
+
+    private static String getMessageKey(Change change) {
+        String elementKey = change.getElement().accept(MESSAGE_KEY_VISITOR);
+        if (elementKey == null) {
+            return null;
+        }
+        if (change instanceof AddChange) {
+            return "add_" + elementKey; //$NON-NLS-1$
+        } else if (MessageKeyVisitor.REUSABLE_TYPE.equals(elementKey)) {
+            return null; // Only addition of reusable types has a message.
+        } else if (change instanceof RemoveChange) {
+            return "remove_" + elementKey; //$NON-NLS-1$
+        } else if (change instanceof ModifyChange) {
+            return "modify_" + elementKey; //$NON-NLS-1$
+        }
+        return null;
+    }
+
+    private static String getName(MetadataVisitable element) {
+        if (element instanceof ComplexTypeMetadata) {
+            return ((ComplexTypeMetadata) element).getName();
+        }
+        return ((FieldMetadata) element).getName();
+    }
+
+    /**
+     * Returns the element part of message key (stateless, so a single instance is shared).
+     */
+    private static class MessageKeyVisitor extends DefaultMetadataVisitor<String> {
+
+        private static final String REUSABLE_TYPE = "reusable_type"; //$NON-NLS-1$
+
+        @Override
+        public String visit(ContainedComplexTypeMetadata containedType) {
+            return REUSABLE_TYPE;
+        }
+
+        @Override
+        public String visit(ComplexTypeMetadata complexType) {
+            return "entity_type"; //$NON-NLS-1$
+        }
+
+        @Override
+        public String visit(ReferenceFieldMetadata referenceField) {
+            return "reference_field"; //$NON-NLS-1$
+        }
+
+        @Override
+        public String visit(ContainedTypeFieldMetadata containedField) {
+            return "contained_field"; //$NON-NLS-1$
+        }
+
+        @Override
+        public String visit(SimpleTypeFieldMetadata simpleField) {
+            return "simple_field"; //$NON-NLS-1$
+        }
+
+        @Override
+        public String visit(EnumerationFieldMetadata enumField) {
+            return "enum_field"; //$NON-NLS-1$
+        }
+    }
+
+    private static class LocaleTemplates {
+
+        private final ResourceBundle bundle;
+
+        private final Locale locale;
+
+        private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+        private LocaleTemplates(ResourceBundle bundle, Locale locale) {
+            this.bundle = bundle;
+            this.locale = locale;
+        }
+
+        private Template getTemplate(String key) {
+            Template template = templates.get(key);
+            if (template == null) {
+                template = new Template(new MessageFormat(bundle.getString(key), locale));
+                templates.putIfAbsent(key, template);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * A pre-parsed message template with a single argument. Template is formatted once with a placeholder and split in
+     * literal parts, so formatting only concatenates parts and argument (no parsing and no synchronization).
+     */
+    private static class Template {
+
+        private final MessageFormat format;
+
+        private final String[] parts;
+
+        private Template(MessageFormat format) {
+            this.format = format;
+            String[] literalParts;
+            try {
+                String formatted = format.format(new Object[] { ARGUMENT_PLACEHOLDER });
+                literalParts = formatted.split(ARGUMENT_PLACEHOLDER, -1);
+            } catch (IllegalArgumentException e) {
+                literalParts = null; // Argument has a format type (number, date...): use message format.
+            }
+            this.parts = literalParts;
+        }
+
+        private String format(String argument) {
+            if (parts == null) {
+                synchronized (format) {
+                    return format.format(new Object[] { argument });
+                }
+            }
+            StringBuilder builder = new StringBuilder();
+            try {
+                appendTo(builder, argument);
+            } catch (IOException e) {
+                throw new RuntimeException("Unexpected I/O exception.", e);
+            }
+            return builder.toString();
+        }
+
+        private void appendTo(Appendable output, String argument) throws IOException {
+            if (parts == null) {
+                output.append(format(argument));
+                return;
+            }
+            output.append(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                output.append(argument).append(parts[i]);
+            }
+        }
+    }
+}
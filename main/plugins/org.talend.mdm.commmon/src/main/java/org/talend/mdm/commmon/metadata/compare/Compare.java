@@ -29,6 +29,7 @@ import org.talend.mdm.commmon.metadata.ContainedComplexTypeMetadata;
 import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
 import org.talend.mdm.commmon.metadata.DefaultMetadataVisitor;
 import org.talend.mdm.commmon.metadata.EnumerationFieldMetadata;
+import org.talend.mdm.commmon.metadata.Facets;
 import org.talend.mdm.commmon.metadata.FieldMetadata;
 import org.talend.mdm.commmon.metadata.MetadataRepository;
 import org.talend.mdm.commmon.metadata.MetadataUtils;
@@ -37,7 +38,6 @@ import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
 import org.talend.mdm.commmon.metadata.SimpleTypeFieldMetadata;
 import org.talend.mdm.commmon.metadata.SimpleTypeMetadata;
 import org.talend.mdm.commmon.metadata.TypeMetadata;
-import org.talend.mdm.commmon.util.core.CommonUtil;
 
 public class Compare {
 
@@ -54,102 +54,48 @@ public class Compare {
      * @see org.talend.mdm.commmon.metadata.compare.Compare.DiffResults
      */
     public static DiffResults compare(MetadataRepository left, MetadataRepository right) {
+        DiffResultsCollector collector = new DiffResultsCollector();
+        compare(left, right, collector);
+        return collector.getDiffResults();
+    }
+
+    /**
+     * <p>
+     * Compare two {@link org.talend.mdm.commmon.metadata.MetadataRepository repositories} and sends differences to
+     * <code>consumer</code> as soon as they are found. Changes are not kept once sent to consumer, so this method
+     * should be preferred over {@link #compare(MetadataRepository, MetadataRepository)} for large data models.
+     * </p>
+     * <p>
+     * Comparison stops as soon as consumer returns <code>false</code> (remaining changes of the entity type being
+     * compared are discarded).
+     * </p>
+     *
+     * @param left The original {@link org.talend.mdm.commmon.metadata.MetadataRepository repository}.
+     * @param right The new {@link org.talend.mdm.commmon.metadata.MetadataRepository repository}.
+     * @param consumer The {@link ChangeConsumer consumer} for the differences.
+     * @return <code>true</code> if comparison completed, <code>false</code> if it was stopped by consumer.
+     */
+    public static boolean compare(MetadataRepository left, MetadataRepository right, ChangeConsumer consumer) {
         Collection<ComplexTypeMetadata> leftEntityTypes = left.getUserComplexTypes();
-        DiffResults diffResults = new DiffResults();
-        compareEntitiesChange(left, right, diffResults);
+        ChangeEmitter emitter = new ChangeEmitter(consumer);
+        compareEntitiesChange(left, right, emitter);
         
         DumpContent dumpContent = new DumpContent();
         for (ComplexTypeMetadata leftType : leftEntityTypes) {
+            if (emitter.isStopped()) {
+                return false;
+            }
             ComplexTypeMetadata rightType = right.getComplexType(leftType.getName());
             if(rightType != null){
-                // Read left content
-                List<MetadataVisitable> leftContent = new ArrayList<MetadataVisitable>(leftType.accept(dumpContent));
-                dumpContent.reset();
-                // Read right content
-                List<MetadataVisitable> rightContent = new ArrayList<MetadataVisitable>(rightType.accept(dumpContent));
-                dumpContent.reset();
-                // Compare contents
-                Map<String, FieldMetadata> removedElementNames = new HashMap<String, FieldMetadata>();
-                for (MetadataVisitable leftVisitable : leftContent) {
-                    int index = rightContent.indexOf(leftVisitable);
-                    if (index < 0) {
-                        // Different (right does not exist, but might be removed or modified).
-                        if (leftVisitable instanceof FieldMetadata) {
-                            FieldMetadata field = (FieldMetadata) leftVisitable;
-                            removedElementNames.put(field.getName(), field);
-                        }
-                    } else {
-                        // Field exists on both sides, but checks max length
-                        MetadataVisitable rightElement = rightContent.get(index);
-                        if (leftVisitable instanceof FieldMetadata) {
-                            TypeMetadata leftVisitableType = ((FieldMetadata) leftVisitable).getType();
-                            TypeMetadata rightVisitableType = ((FieldMetadata) rightElement).getType();
-                            if(leftVisitable instanceof ReferenceFieldMetadata){
-                                compareReferenceFieldMetadata(diffResults.modifyChanges, (ReferenceFieldMetadata) leftVisitable, (ReferenceFieldMetadata) rightElement);
-                            }
-                            // TMDM-9909: Increase the length of a string element should be low impact
-                            Object leftLength = CommonUtil.getSuperTypeMaxLength(leftVisitableType, leftVisitableType) ;
-                            Object rightLength = CommonUtil.getSuperTypeMaxLength(rightVisitableType, rightVisitableType) ;
-                            if (!ObjectUtils.equals(leftLength, rightLength)) {
-                                diffResults.modifyChanges.add(new ModifyChange(leftVisitable, rightElement));
-                            }
-                            // TMDM-8022: issues about custom decimal type totalDigits/fractionDigits.
-                            Object leftTotalDigits = leftVisitableType.getData(MetadataRepository.DATA_TOTAL_DIGITS);
-                            Object rightTotalDigits = rightVisitableType.getData(MetadataRepository.DATA_TOTAL_DIGITS);
-                            if (!ObjectUtils.equals(leftTotalDigits, rightTotalDigits)) {
-                                diffResults.modifyChanges.add(new ModifyChange(leftVisitable, rightElement));
-                            }
-                            Object leftFractionDigits = leftVisitableType.getData(MetadataRepository.DATA_FRACTION_DIGITS);
-                            Object rightFractionDigits = rightVisitableType.getData(MetadataRepository.DATA_FRACTION_DIGITS);
-                            if (!ObjectUtils.equals(leftFractionDigits, rightFractionDigits)) {
-                                diffResults.modifyChanges.add(new ModifyChange(leftVisitable, rightElement));
-                            }
-                        }
-                        rightContent.remove(index); // Same or already marked as diff, so remove from things to compare
-                    }
-                }
-                if (!rightContent.isEmpty()) {
-                    Iterator<MetadataVisitable> addedElements = rightContent.iterator();
-                    while (addedElements.hasNext()) {
-                        MetadataVisitable current = addedElements.next();
-                        MetadataVisitable modifiedElement = null;
-                        if (current instanceof FieldMetadata) {
-                            modifiedElement = removedElementNames.get(((FieldMetadata) current).getName());
-                        }
-                        if (modifiedElement != null) {
-                            // Modified element (only exist in right, not in left).
-                            diffResults.modifyChanges.add(new ModifyChange(modifiedElement, current));
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("[MODIFIED] " + current + " was modified" + "\t was " + modifiedElement + "\t now "
-                                        + current);
-                            }
-                            removedElementNames.remove(((FieldMetadata) current).getName());
-                        } else {
-                            // Added element (only exist in right, not in left).
-                            diffResults.addChanges.add(new AddChange(current));
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("[ADDED] " + current + " was added.");
-                            }
-                        }
-                        addedElements.remove();
-                    }
-                }
-                // Process removed elements
-                for (FieldMetadata fieldMetadata : removedElementNames.values()) {
-                    // Different (right does not exist).
-                    diffResults.removeChanges.add(new RemoveChange(fieldMetadata));
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("[REMOVED] " + fieldMetadata + " no longer exist.");
-                    }
-                }
-                if (!rightContent.isEmpty()) { // Not expected at all -> likely a bug
-                    throw new IllegalStateException("Elements remain for comparison.");
-                }
+                compareEntity(leftType, rightType, dumpContent, emitter);
             }
         }
         
+        if (emitter.isStopped()) {
+            return false;
+        }
         List<ComplexTypeMetadata> instantiableTypes = left.getNonInstantiableTypes();
-        compareTypesChange(left, right, diffResults);
+        compareTypesChange(left, right, emitter);
         for (ComplexTypeMetadata leftType : instantiableTypes) {
             TypeMetadata rightType = right.getNonInstantiableType(leftType.getNamespace(), leftType.getName());
             if (rightType != null) {
@@ -158,12 +104,152 @@ public class Compare {
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug("[MODIFY] Type '" + leftType.getName() + "' changed (parsed object is different).");
                     }
-                    diffResults.removeChanges.add(new RemoveChange(leftType));
-                    diffResults.addChanges.add(new AddChange(rightType));
+                    emitter.emit(new RemoveChange(leftType));
+                    emitter.emit(new AddChange(rightType));
                 }
             }
         }
-        return diffResults;
+        return !emitter.isStopped();
+    }
+
+    // Compares content of an entity type that exists in both repositories.
+    private static void compareEntity(ComplexTypeMetadata leftType, ComplexTypeMetadata rightType, DumpContent dumpContent,
+            ChangeEmitter emitter) {
+        // Read left content
+        List<MetadataVisitable> leftContent = new ArrayList<MetadataVisitable>(leftType.accept(dumpContent));
+        dumpContent.reset();
+        // Read right content
+        List<MetadataVisitable> rightContent = new ArrayList<MetadataVisitable>(rightType.accept(dumpContent));
+        dumpContent.reset();
+        // Compare contents
+        Map<String, FieldMetadata> removedElementNames = new HashMap<String, FieldMetadata>();
+        for (MetadataVisitable leftVisitable : leftContent) {
+            int index = rightContent.indexOf(leftVisitable);
+            if (index < 0) {
+                // Different (right does not exist, but might be removed or modified).
+                if (leftVisitable instanceof FieldMetadata) {
+                    FieldMetadata field = (FieldMetadata) leftVisitable;
+                    removedElementNames.put(field.getName(), field);
+                }
+            } else {
+                // Field exists on both sides, but checks max length
+                MetadataVisitable rightElement = rightContent.get(index);
+                if (leftVisitable instanceof FieldMetadata) {
+                    TypeMetadata leftVisitableType = ((FieldMetadata) leftVisitable).getType();
+                    TypeMetadata rightVisitableType = ((FieldMetadata) rightElement).getType();
+                    if(leftVisitable instanceof ReferenceFieldMetadata){
+                        compareReferenceFieldMetadata(emitter, (ReferenceFieldMetadata) leftVisitable, (ReferenceFieldMetadata) rightElement);
+                    }
+                    // TMDM-9909: Increase the length of a string element should be low impact
+                    int leftLength = Facets.of(leftVisitableType).getMaxLength();
+                    int rightLength = Facets.of(rightVisitableType).getMaxLength();
+                    if (leftLength != rightLength) {
+                        emitter.emit(new ModifyChange(leftVisitable, rightElement));
+                    }
+                    // TMDM-8022: issues about custom decimal type totalDigits/fractionDigits.
+                    Object leftTotalDigits = leftVisitableType.getData(MetadataRepository.DATA_TOTAL_DIGITS);
+                    Object rightTotalDigits = rightVisitableType.getData(MetadataRepository.DATA_TOTAL_DIGITS);
+                    if (!ObjectUtils.equals(leftTotalDigits, rightTotalDigits)) {
+                        emitter.emit(new ModifyChange(leftVisitable, rightElement));
+                    }
+                    Object leftFractionDigits = leftVisitableType.getData(MetadataRepository.DATA_FRACTION_DIGITS);
+                    Object rightFractionDigits = rightVisitableType.getData(MetadataRepository.DATA_FRACTION_DIGITS);
+                    if (!ObjectUtils.equals(leftFractionDigits, rightFractionDigits)) {
+                        emitter.emit(new ModifyChange(leftVisitable, rightElement));
+                    }
+                }
+                rightContent.remove(index); // Same or already marked as diff, so remove from things to compare
+            }
+        }
+        if (!rightContent.isEmpty()) {
+            Iterator<MetadataVisitable> addedElements = rightContent.iterator();
+            while (addedElements.hasNext()) {
+                MetadataVisitable current = addedElements.next();
+                MetadataVisitable modifiedElement = null;
+                if (current instanceof FieldMetadata) {
+                    modifiedElement = removedElementNames.get(((FieldMetadata) current).getName());
+                }
+                if (modifiedElement != null) {
+                    // Modified element (only exist in right, not in left).
+                    emitter.emit(new ModifyChange(modifiedElement, current));
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("[MODIFIED] " + current + " was modified" + "\t was " + modifiedElement + "\t now "
+                                + current);
+                    }
+                    removedElementNames.remove(((FieldMetadata) current).getName());
+                } else {
+                    // Added element (only exist in right, not in left).
+                    emitter.emit(new AddChange(current));
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("[ADDED] " + current + " was added.");
+                    }
+                }
+                addedElements.remove();
+            }
+        }
+        // Process removed elements
+        for (FieldMetadata fieldMetadata : removedElementNames.values()) {
+            // Different (right does not exist).
+            emitter.emit(new RemoveChange(fieldMetadata));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[REMOVED] " + fieldMetadata + " no longer exist.");
+            }
+        }
+        if (!rightContent.isEmpty()) { // Not expected at all -> likely a bug
+            throw new IllegalStateException("Elements remain for comparison.");
+        }
+    }
+
+    /**
+     * Compares only the entity types named in <code>entityTypeNames</code> (an entity type may exist in only one of
+     * the repositories, in this case it is reported as added or removed). Changes on non instantiable types are not
+     * reported.
+     *
+     * @see #compare(MetadataRepository, MetadataRepository, ChangeConsumer)
+     */
+    static boolean compare(MetadataRepository left, MetadataRepository right, Collection<String> entityTypeNames,
+            ChangeConsumer consumer) {
+        ChangeEmitter emitter = new ChangeEmitter(consumer);
+        DumpContent dumpContent = new DumpContent();
+        for (String entityTypeName : entityTypeNames) {
+            if (emitter.isStopped()) {
+                return false;
+            }
+            ComplexTypeMetadata leftType = left.getComplexType(entityTypeName);
+            ComplexTypeMetadata rightType = right.getComplexType(entityTypeName);
+            if (leftType != null && rightType != null) {
+                compareEntity(leftType, rightType, dumpContent, emitter);
+            } else if (leftType != null) {
+                emitter.emit(new RemoveChange(leftType));
+            } else if (rightType != null) {
+                emitter.emit(new AddChange(rightType));
+            }
+        }
+        return !emitter.isStopped();
+    }
+
+    /**
+     * Sends changes to a {@link ChangeConsumer} until consumer asks to stop (changes are then ignored).
+     */
+    private static class ChangeEmitter {
+
+        private final ChangeConsumer consumer;
+
+        private boolean isStopped;
+
+        private ChangeEmitter(ChangeConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        private void emit(Change change) {
+            if (!isStopped) {
+                isStopped = !consumer.accept(change);
+            }
+        }
+
+        private boolean isStopped() {
+            return isStopped;
+        }
     }
 
     private static class DumpContent extends DefaultMetadataVisitor<List<MetadataVisitable>> {
@@ -277,9 +363,35 @@ public class Compare {
             return allChanges;
         }
     }
+
+    /**
+     * Groups changes in a {@link DiffResults} (results can't be modified by {@link DiffResults} users).
+     */
+    static class DiffResultsCollector implements ChangeConsumer {
+
+        private final DiffResults diffResults = new DiffResults();
+
+        @Override
+        public boolean accept(Change change) {
+            if (change instanceof AddChange) {
+                diffResults.addChanges.add((AddChange) change);
+            } else if (change instanceof RemoveChange) {
+                diffResults.removeChanges.add((RemoveChange) change);
+            } else if (change instanceof ModifyChange) {
+                diffResults.modifyChanges.add((ModifyChange) change);
+            } else {
+                throw new IllegalArgumentException("Change '" + change + "' is not supported.");
+            }
+            return true;
+        }
+
+        DiffResults getDiffResults() {
+            return diffResults;
+        }
+    }
     
     @SuppressWarnings("unused")
-    private static void compareEntitiesChange(MetadataRepository left, MetadataRepository right, DiffResults diffResults){
+    private static void compareEntitiesChange(MetadataRepository left, MetadataRepository right, ChangeEmitter emitter){
         List<ComplexTypeMetadata> unusedLeftEntityTypes = new ArrayList<ComplexTypeMetadata>(); 
         List<ComplexTypeMetadata> unusedRightEntityTypes = new ArrayList<ComplexTypeMetadata>(); 
         Set<ComplexTypeMetadata> complexTypeSet = new HashSet<ComplexTypeMetadata>();
@@ -297,7 +409,7 @@ public class Compare {
         if(unusedLeftEntityTypes != null && unusedLeftEntityTypes.size() > 0){
             for(ComplexTypeMetadata leftType : unusedLeftEntityTypes){
                 // Right type does not exist
-                diffResults.removeChanges.add(new RemoveChange(leftType));
+                emitter.emit(new RemoveChange(leftType));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("[REMOVED] Type " + leftType + " no longer exist.");  //$NON-NLS-1$//$NON-NLS-2$
                 }
@@ -307,7 +419,7 @@ public class Compare {
         if(unusedRightEntityTypes != null && unusedRightEntityTypes.size() > 0){
             for(ComplexTypeMetadata rightType : unusedRightEntityTypes){
                 // Added Right type element (only exist in right, not in left).
-                diffResults.addChanges.add(new AddChange(rightType));
+                emitter.emit(new AddChange(rightType));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("[ADDED] " + rightType + " was added.");  //$NON-NLS-1$//$NON-NLS-2$
                 }
@@ -316,7 +428,7 @@ public class Compare {
     }
     
     @SuppressWarnings("unused")
-    private static void compareTypesChange(MetadataRepository left, MetadataRepository right, DiffResults diffResults){
+    private static void compareTypesChange(MetadataRepository left, MetadataRepository right, ChangeEmitter emitter){
         List<TypeMetadata> unusedLeftTypes = new ArrayList<TypeMetadata>(); 
         List<TypeMetadata> unusedRightTypes = new ArrayList<TypeMetadata>();
         Set<TypeMetadata> complexTypeSet = new HashSet<TypeMetadata>();
@@ -338,7 +450,7 @@ public class Compare {
         if(unusedLeftTypes != null && unusedLeftTypes.size() > 0){
             for(TypeMetadata tm : unusedLeftTypes){
                 // Right type does not exist
-                diffResults.removeChanges.add(new RemoveChange(tm));
+                emitter.emit(new RemoveChange(tm));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("[REMOVED] Type " + tm + " no longer exist.");  //$NON-NLS-1$//$NON-NLS-2$
                 }
@@ -348,7 +460,7 @@ public class Compare {
         if(unusedRightTypes != null && unusedRightTypes.size() > 0){
             for(TypeMetadata tm : unusedRightTypes){
                 // Added Right type element (only exist in right, not in left).
-                diffResults.addChanges.add(new AddChange(tm));
+                emitter.emit(new AddChange(tm));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("[ADDED] " + tm + " was added.");  //$NON-NLS-1$//$NON-NLS-2$
                 }
@@ -356,9 +468,9 @@ public class Compare {
         }
     }
     
-    private static void compareReferenceFieldMetadata(List<ModifyChange> modifyChanges, ReferenceFieldMetadata leftField, ReferenceFieldMetadata rightField) {
+    private static void compareReferenceFieldMetadata(ChangeEmitter emitter, ReferenceFieldMetadata leftField, ReferenceFieldMetadata rightField) {
         if(!leftField.getReferencedType().getName().equals(rightField.getReferencedType().getName())) {
-            modifyChanges.add(new ModifyChange(leftField, rightField));
+            emitter.emit(new ModifyChange(leftField, rightField));
         }
     }
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.Facets;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.MetadataUtils;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
+import org.talend.mdm.commmon.metadata.SimpleTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.TypeMetadata;
+
+/**
+ * <p>
+ * A {@link HibernateStorageImpactAnalyzer} that also estimates the migration effort (rows and bytes rewritten) of each
+ * change using entity statistics from a {@link StatisticsProvider}. Estimation is based on the impact of the change:
+ * <ul>
+ * <li>Adding or removing an entity type does not rewrite any existing row.</li>
+ * <li>Modifying an entity type or a change with {@link Impact#HIGH} impact rewrites all records of the entity.</li>
+ * <li>Adding a mandatory or contained field, removing a field or a {@link Impact#MEDIUM} modification rewrites the
+ * field in all records of the entity.</li>
+ * <li>Other changes (e.g. adding an optional field) only change the schema.</li>
+ * </ul>
+ * </p>
+ */
+public class CostWeightedImpactAnalyzer extends HibernateStorageImpactAnalyzer {
+
+    private static final long DEFAULT_FIELD_SIZE = 8;
+
+    private final StatisticsProvider statisticsProvider;
+
+    public CostWeightedImpactAnalyzer(StatisticsProvider statisticsProvider) {
+        this(statisticsProvider, null);
+    }
+
+    public CostWeightedImpactAnalyzer(StatisticsProvider statisticsProvider, NullValueProbe nullValueProbe) {
+        super(nullValueProbe);
+        if (statisticsProvider == null) {
+            throw new IllegalArgumentException("Statistics provider cannot be null.");
+        }
+        this.statisticsProvider = statisticsProvider;
+    }
+
+    /**
+     * Estimates the migration effort for all changes in <code>diffResult</code>.
+     *
+     * @param diffResult A diff computed between 2 data models.
+     * @return The estimated {@link MigrationCost cost} of each change and of the whole migration.
+     */
+    public MigrationCost estimateCost(Compare.DiffResults diffResult) {
+        Map<Impact, List<Change>> impacts = analyzeImpacts(diffResult);
+        // A change may be ranked more than once: keep the highest impact (Impact values are sorted from HIGH to LOW).
+        Map<Change, Impact> changeImpacts = new IdentityHashMap<Change, Impact>();
+        for (Impact impact : Impact.values()) {
+            for (Change change : impacts.get(impact)) {
+                if (!changeImpacts.containsKey(change)) {
+                    changeImpacts.put(change, impact);
+                }
+            }
+        }
+        MigrationCost migrationCost = new MigrationCost();
+        for (Change change : diffResult.getActions()) {
+            Impact impact = changeImpacts.get(change);
+            if (impact == null) {
+                impact = Impact.LOW;
+            }
+            migrationCost.add(estimateCost(change, impact));
+        }
+        return migrationCost;
+    }
+
+    /**
+     * Estimates migration effort for a single change. Subclasses may override this method to adapt estimation to
+     * another storage.
+     *
+     * @param change A {@link Change} from a diff.
+     * @param impact The impact computed by {@link #analyzeImpacts(Compare.DiffResults)} for <code>change</code>.
+     * @return The estimated cost for <code>change</code>.
+     */
+    protected MigrationCost.ChangeCost estimateCost(Change change, Impact impact) {
+        MetadataVisitable element = change.getElement();
+        if (element instanceof ComplexTypeMetadata) {
+            if (change instanceof ModifyChange) {
+                String entityTypeName = ((ComplexTypeMetadata) element).getName();
+                long rows = statisticsProvider.getRowCount(entityTypeName);
+                return new MigrationCost.ChangeCost(change, impact, rows, rows * statisticsProvider.getAverageRecordSize(entityTypeName));
+            }
+            // Table creation or drop
+            return new MigrationCost.ChangeCost(change, impact, 0, 0);
+        } else if (element instanceof FieldMetadata) {
+            FieldMetadata field = (FieldMetadata) element;
+            if (change instanceof ModifyChange) {
+                field = (FieldMetadata) ((ModifyChange) change).getCurrent();
+            }
+            String entityTypeName = field.getEntityTypeName();
+            long rows = statisticsProvider.getRowCount(entityTypeName);
+            if (impact == Impact.HIGH) {
+                return new MigrationCost.ChangeCost(change, impact, rows, rows * statisticsProvider.getAverageRecordSize(entityTypeName));
+            }
+            boolean isRewrite;
+            if (change instanceof AddChange) {
+                isRewrite = field.isMandatory() || field instanceof ContainedTypeFieldMetadata;
+            } else if (change instanceof RemoveChange) {
+                isRewrite = true;
+            } else {
+                isRewrite = impact == Impact.MEDIUM;
+            }
+            if (isRewrite) {
+                return new MigrationCost.ChangeCost(change, impact, rows, rows * estimateFieldSize(field, entityTypeName));
+            }
+            return new MigrationCost.ChangeCost(change, impact, 0, 0);
+        } else {
+            return new MigrationCost.ChangeCost(change, impact, 0, 0);
+        }
+    }
+
+    /**
+     * @return The estimated size (in bytes) of <code>field</code> value in a record.
+     */
+    protected long estimateFieldSize(FieldMetadata field, String entityTypeName) {
+        if (field instanceof ContainedTypeFieldMetadata) {
+            return statisticsProvider.getAverageRecordSize(entityTypeName);
+        } else if (field instanceof SimpleTypeFieldMetadata) {
+            TypeMetadata type = field.getType();
+            if ("string".equals(MetadataUtils.getSuperConcreteType(type).getName())) { //$NON-NLS-1$
+                int maxLength = Facets.of(type).getMaxLength();
+                return maxLength == Facets.NONE ? Long.parseLong(STRING_DEFAULT_LENGTH) : maxLength;
+            }
+        }
+        return DEFAULT_FIELD_SIZE;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.talend.mdm.commmon.metadata.MetadataFingerprint;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+
+/**
+ * <p>
+ * A bounded cache for {@link Compare#compare(MetadataRepository, MetadataRepository) diffs} and
+ * {@link ImpactAnalyzer#analyzeImpacts(Compare.DiffResults) impacts}. Results are keyed by the
+ * {@link MetadataFingerprint#getFingerprint(MetadataRepository) fingerprints} of the compared repositories, so
+ * comparing again 2 data models with same content returns cached results, even if repositories were loaded again.
+ * </p>
+ * <p>
+ * Entries are evicted when cache exceeds its maximum size (least recently used first) or when they are older than the
+ * time to live. This class is thread safe.
+ * </p>
+ * <p>
+ * Please note cached {@link Change changes} reference the metadata objects of the repositories used when the entry
+ * was computed. Cached diffs are shared between callers: changes must not be modified.
+ * </p>
+ */
+public class DiffCache {
+
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxSize Maximum number of diffs in cache.
+     * @param timeToLive Maximum time (in milliseconds) a diff is kept in cache, 0 or less for no time limit.
+     */
+    public DiffCache(int maxSize, long timeToLive) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0.");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * @param left The original repository.
+     * @param right The new repository.
+     * @return The diff between <code>left</code> and <code>right</code> (computed only if not in cache).
+     */
+    public Compare.DiffResults getDiff(MetadataRepository left, MetadataRepository right) {
+        return getEntry(left, right).diffResults;
+    }
+
+    /**
+     * @param left The original repository.
+     * @param right The new repository.
+     * @param analyzer The analyzer for diff's impacts. Impacts are cached per analyzer class for
+     * {@link HibernateStorageImpactAnalyzer} analyzers that are not {@link HibernateStorageImpactAnalyzer#isDataDependent()
+     * data dependent} (their impacts only depend on the diff). Impacts of other analyzers are always computed again
+     * (data may have changed or analyzer may have a configuration that changes its results).
+     * @return A read only map of the impacts for the diff between <code>left</code> and <code>right</code>.
+     */
+    public Map<ImpactAnalyzer.Impact, List<Change>> getImpacts(MetadataRepository left, MetadataRepository right,
+            ImpactAnalyzer analyzer) {
+        if (analyzer == null) {
+            throw new IllegalArgumentException("Analyzer cannot be null.");
+        }
+        Entry entry = getEntry(left, right);
+        boolean isCacheable = analyzer instanceof HibernateStorageImpactAnalyzer
+                && !((HibernateStorageImpactAnalyzer) analyzer).isDataDependent();
+        Class<? extends ImpactAnalyzer> analyzerClass = analyzer.getClass();
+        Map<ImpactAnalyzer.Impact, List<Change>> impacts = null;
+        if (isCacheable) {
+            synchronized (entry.impacts) {
+                impacts = entry.impacts.get(analyzerClass);
+            }
+        }
+        if (impacts == null) {
+            Map<ImpactAnalyzer.Impact, List<Change>> analyzedImpacts = analyzer.analyzeImpacts(entry.diffResults);
+            impacts = new EnumMap<ImpactAnalyzer.Impact, List<Change>>(ImpactAnalyzer.Impact.class);
+            for (Map.Entry<ImpactAnalyzer.Impact, List<Change>> impact : analyzedImpacts.entrySet()) {
+                impacts.put(impact.getKey(), Collections.unmodifiableList(impact.getValue()));
+            }
+            impacts = Collections.unmodifiableMap(impacts);
+            if (isCacheable) {
+                synchronized (entry.impacts) {
+                    Map<ImpactAnalyzer.Impact, List<Change>> previous = entry.impacts.get(analyzerClass);
+                    if (previous != null) {
+                        return previous;
+                    }
+                    entry.impacts.put(analyzerClass, impacts);
+                }
+            }
+        }
+        return impacts;
+    }
+
+    private Entry getEntry(MetadataRepository left, MetadataRepository right) {
+        Key key = new Key(MetadataFingerprint.getFingerprint(left), MetadataFingerprint.getFingerprint(right));
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (timeToLive <= 0 || now - entry.creationTime <= timeToLive) {
+                    hitCount.incrementAndGet();
+                    return entry;
+                }
+                entries.remove(key);
+                evictionCount.incrementAndGet();
+            }
+        }
+        missCount.incrementAndGet();
+        // Compare outside of lock (a concurrent computation of same diff is possible but harmless).
+        Entry entry = new Entry(Compare.compare(left, right), now);
+        synchronized (entries) {
+            Entry previous = entries.get(key);
+            if (previous != null && previous.creationTime >= now) {
+                return previous;
+            }
+            entries.put(key, entry);
+            evict(now);
+        }
+        return entry;
+    }
+
+    // Called with lock on entries: removes expired entries and least recently used ones above max size.
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        int size = entries.size();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (size > maxSize || (timeToLive > 0 && now - entry.creationTime > timeToLive)) {
+                iterator.remove();
+                size--;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from cache (metrics are kept).
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return Ratio of diff requests answered from cache (between 0 and 1), 0 if cache was never used.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static class Key {
+
+        private final long leftFingerprint;
+
+        private final long rightFingerprint;
+
+        private Key(long leftFingerprint, long rightFingerprint) {
+            this.leftFingerprint = leftFingerprint;
+            this.rightFingerprint = rightFingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return leftFingerprint == that.leftFingerprint && rightFingerprint == that.rightFingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (leftFingerprint ^ (leftFingerprint >>> 32)) + (int) (rightFingerprint ^ (rightFingerprint >>> 32));
+        }
+    }
+
+    private static class Entry {
+
+        private static final int MAX_ANALYZERS = 8;
+
+        private final Compare.DiffResults diffResults;
+
+        private final long creationTime;
+
+        // Impacts per analyzer class (guarded by lock on map), least recently used class is removed above max size.
+        private final Map<Class<? extends ImpactAnalyzer>, Map<ImpactAnalyzer.Impact, List<Change>>> impacts = new LinkedHashMap<Class<? extends ImpactAnalyzer>, Map<ImpactAnalyzer.Impact, List<Change>>>(
+                4, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Class<? extends ImpactAnalyzer>, Map<ImpactAnalyzer.Impact, List<Change>>> eldest) {
+                return size() > MAX_ANALYZERS;
+            }
+        };
+
+        private Entry(Compare.DiffResults diffResults, long creationTime) {
+            this.diffResults = diffResults;
+            this.creationTime = creationTime;
+        }
+    }
+}
@@ -0,0 +1,783 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
+import org.talend.mdm.commmon.metadata.TypeMetadata;
+
+/**
+ * <p>
+ * Encodes {@link Compare.DiffResults} in a compact binary or JSON form. Changes are encoded with paths (entity type
+ * name and field path) instead of metadata objects, so a diff computed once can be sent to other nodes of a cluster and
+ * decoded against their own repositories (no need to compare the data models again).
+ * </p>
+ * <p>
+ * Binary format starts with a magic number and a version number. Strings (entity names, paths) are written once and
+ * then referenced by index.
+ * </p>
+ */
+public class DiffResultsCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4D444946; // "MDIF"
+
+    private static final byte ADD = 0;
+
+    private static final byte REMOVE = 1;
+
+    private static final byte MODIFY = 2;
+
+    private static final byte ENTITY = 0;
+
+    private static final byte CONTAINED_TYPE = 1;
+
+    private static final byte TYPE = 2;
+
+    private static final byte FIELD = 3;
+
+    private static final String[] OPERATION_NAMES = { "add", "remove", "modify" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    private static final String[] KIND_NAMES = { "entity", "contained", "type", "field" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    private DiffResultsCodec() {
+    }
+
+    /**
+     * @param diffResults A diff.
+     * @return The binary encoding of <code>diffResults</code>.
+     */
+    public static byte[] encode(Compare.DiffResults diffResults) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            encode(diffResults, output);
+        } catch (IOException e) {
+            throw new RuntimeException("Unexpected I/O exception.", e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes the binary encoding of <code>diffResults</code> to <code>outputStream</code>.
+     */
+    public static void encode(Compare.DiffResults diffResults, OutputStream outputStream) throws IOException {
+        BinaryWriter writer = new BinaryWriter(new DataOutputStream(outputStream));
+        writer.output.writeInt(MAGIC);
+        writer.output.writeShort(VERSION);
+        writer.writeInt(diffResults.getAddChanges().size() + diffResults.getRemoveChanges().size()
+                + diffResults.getModifyChanges().size());
+        for (AddChange change : diffResults.getAddChanges()) {
+            writer.output.writeByte(ADD);
+            writer.writeReference(toReference(change.getElement()));
+        }
+        for (RemoveChange change : diffResults.getRemoveChanges()) {
+            writer.output.writeByte(REMOVE);
+            writer.writeReference(toReference(change.getElement()));
+        }
+        for (ModifyChange change : diffResults.getModifyChanges()) {
+            writer.output.writeByte(MODIFY);
+            writer.writeReference(toReference(change.getPrevious()));
+            writer.writeReference(toReference(change.getCurrent()));
+            writer.output.writeBoolean(change.isHasNullValue());
+        }
+        writer.output.flush();
+    }
+
+    /**
+     * @param encoded A diff encoded with {@link #encode(Compare.DiffResults)}.
+     * @param previous The repository used as left side of the diff (removed and modified elements are looked up in it).
+     * @param current The repository used as right side of the diff (added and modified elements are looked up in it).
+     * @return The decoded diff.
+     * @throws IllegalArgumentException If encoded content has an unsupported version, is malformed (message gives the
+     * offset of the error) or if an element can't be found in the repositories.
+     */
+    public static Compare.DiffResults decode(byte[] encoded, MetadataRepository previous, MetadataRepository current) {
+        try {
+            return decode(new ByteArrayInputStream(encoded), previous, current);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Encoded diff is truncated.", e);
+        }
+    }
+
+    /**
+     * Reads a binary encoded diff from <code>inputStream</code>.
+     *
+     * @see #decode(byte[], MetadataRepository, MetadataRepository)
+     */
+    public static Compare.DiffResults decode(InputStream inputStream, MetadataRepository previous, MetadataRepository current)
+            throws IOException {
+        BinaryReader reader = new BinaryReader(inputStream);
+        if (reader.input.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Content is not an encoded diff.");
+        }
+        int version = reader.input.readShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoded diff version " + version + " (expected " + VERSION + ").");
+        }
+        Compare.DiffResultsCollector collector = new Compare.DiffResultsCollector();
+        int count = reader.readInt();
+        for (int i = 0; i < count; i++) {
+            long offset = reader.getOffset();
+            byte operation = reader.input.readByte();
+            switch (operation) {
+            case ADD:
+                collector.accept(new AddChange(reader.readReference().resolve(current)));
+                break;
+            case REMOVE:
+                collector.accept(new RemoveChange(reader.readReference().resolve(previous)));
+                break;
+            case MODIFY:
+                MetadataVisitable previousElement = reader.readReference().resolve(previous);
+                MetadataVisitable currentElement = reader.readReference().resolve(current);
+                ModifyChange change = new ModifyChange(previousElement, currentElement);
+                change.setHasNullValue(reader.input.readBoolean());
+                collector.accept(change);
+                break;
+            default:
+                throw reader.error("Unknown change operation (" + operation + ")", offset); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        return collector.getDiffResults();
+    }
+
+    /**
+     * @param diffResults A diff.
+     * @return The JSON encoding of <code>diffResults</code>.
+     */
+    public static String encodeJson(Compare.DiffResults diffResults) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            encodeJson(diffResults, builder);
+        } catch (IOException e) {
+            throw new RuntimeException("Unexpected I/O exception.", e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Appends the JSON encoding of <code>diffResults</code> to <code>output</code>. Format is:
+     * <code>{"version":1,"changes":[{"op":"modify","previous":{"kind":"field","entity":"Person","path":"name"},"current":{...},"hasNullValue":false},...]}</code>
+     */
+    public static void encodeJson(Compare.DiffResults diffResults, Appendable output) throws IOException {
+        output.append("{\"version\":").append(String.valueOf(VERSION)).append(",\"changes\":["); //$NON-NLS-1$ //$NON-NLS-2$
+        boolean isFirst = true;
+        for (AddChange change : diffResults.getAddChanges()) {
+            isFirst = appendJsonChange(output, isFirst, ADD, toReference(change.getElement()), null, false);
+        }
+        for (RemoveChange change : diffResults.getRemoveChanges()) {
+            isFirst = appendJsonChange(output, isFirst, REMOVE, toReference(change.getElement()), null, false);
+        }
+        for (ModifyChange change : diffResults.getModifyChanges()) {
+            isFirst = appendJsonChange(output, isFirst, MODIFY, toReference(change.getPrevious()),
+                    toReference(change.getCurrent()), change.isHasNullValue());
+        }
+        output.append("]}"); //$NON-NLS-1$
+    }
+
+    /**
+     * @param json A diff encoded with {@link #encodeJson(Compare.DiffResults)}.
+     * @see #decode(byte[], MetadataRepository, MetadataRepository)
+     */
+    public static Compare.DiffResults decodeJson(String json, MetadataRepository previous, MetadataRepository current) {
+        Object root = new JsonParser(json).parse();
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("Content is not an encoded diff.");
+        }
+        Map<?, ?> content = (Map<?, ?>) root;
+        Object version = content.get("version"); //$NON-NLS-1$
+        if (!(version instanceof Number) || ((Number) version).intValue() != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoded diff version " + version + " (expected " + VERSION + ").");
+        }
+        Compare.DiffResultsCollector collector = new Compare.DiffResultsCollector();
+        Object changes = content.get("changes"); //$NON-NLS-1$
+        if (!(changes instanceof List)) {
+            throw new IllegalArgumentException("Encoded diff has no change list.");
+        }
+        int index = 0;
+        for (Object changeObject : (List<?>) changes) {
+            String path = "changes[" + index++ + ']'; //$NON-NLS-1$
+            Map<?, ?> change = asObject(changeObject, path);
+            byte operation = indexOf(OPERATION_NAMES, getString(change, "op", path, false), path + ".op"); //$NON-NLS-1$ //$NON-NLS-2$
+            switch (operation) {
+            case ADD:
+                collector.accept(new AddChange(fromJson(change, "element", path).resolve(current))); //$NON-NLS-1$
+                break;
+            case REMOVE:
+                collector.accept(new RemoveChange(fromJson(change, "element", path).resolve(previous))); //$NON-NLS-1$
+                break;
+            case MODIFY:
+                ModifyChange modifyChange = new ModifyChange(fromJson(change, "previous", path).resolve(previous), //$NON-NLS-1$
+                        fromJson(change, "current", path).resolve(current)); //$NON-NLS-1$
+                Object hasNullValue = change.get("hasNullValue"); //$NON-NLS-1$
+                if (hasNullValue != null && !(hasNullValue instanceof Boolean)) {
+                    throw unexpectedValue("a boolean", path + ".hasNullValue", hasNullValue); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                modifyChange.setHasNullValue(Boolean.TRUE.equals(hasNullValue));
+                collector.accept(modifyChange);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown change operation (" + operation + ").");
+            }
+        }
+        return collector.getDiffResults();
+    }
+
+    private static boolean appendJsonChange(Appendable output, boolean isFirst, byte operation, Reference element,
+            Reference current, boolean hasNullValue) throws IOException {
+        if (!isFirst) {
+            output.append(',');
+        }
+        output.append("{\"op\":\"").append(OPERATION_NAMES[operation]).append('"'); //$NON-NLS-1$
+        if (operation == MODIFY) {
+            output.append(",\"previous\":"); //$NON-NLS-1$
+            appendJsonReference(output, element);
+            output.append(",\"current\":"); //$NON-NLS-1$
+            appendJsonReference(output, current);
+            output.append(",\"hasNullValue\":").append(String.valueOf(hasNullValue)); //$NON-NLS-1$
+        } else {
+            output.append(",\"element\":"); //$NON-NLS-1$
+            appendJsonReference(output, element);
+        }
+        output.append('}');
+        return false;
+    }
+
+    private static void appendJsonReference(Appendable output, Reference reference) throws IOException {
+        output.append("{\"kind\":\"").append(KIND_NAMES[reference.kind]).append('"'); //$NON-NLS-1$
+        if (reference.kind == TYPE) {
+            output.append(",\"namespace\":"); //$NON-NLS-1$
+            appendJsonString(output, reference.first);
+            output.append(",\"name\":"); //$NON-NLS-1$
+            appendJsonString(output, reference.second);
+        } else {
+            output.append(",\"entity\":"); //$NON-NLS-1$
+            appendJsonString(output, reference.first);
+            if (reference.second != null) {
+                output.append(",\"path\":"); //$NON-NLS-1$
+                appendJsonString(output, reference.second);
+            }
+        }
+        output.append('}');
+    }
+
+    private static void appendJsonString(Appendable output, String value) throws IOException {
+        if (value == null) {
+            output.append("null"); //$NON-NLS-1$
+            return;
+        }
+        output.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                output.append('\\').append(c);
+            } else if (c < 0x20) {
+                String hex = Integer.toHexString(c);
+                output.append("\\u"); //$NON-NLS-1$
+                for (int j = hex.length(); j < 4; j++) {
+                    output.append('0');
+                }
+                output.append(hex);
+            } else {
+                output.append(c);
+            }
+        }
+        output.append('"');
+    }
+
+    private static Reference fromJson(Map<?, ?> change, String key, String changePath) {
+        String path = changePath + '.' + key;
+        Map<?, ?> reference = asObject(change.get(key), path);
+        byte kind = indexOf(KIND_NAMES, getString(reference, "kind", path, false), path + ".kind"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (kind == TYPE) {
+            return new Reference(kind, getString(reference, "namespace", path, true), //$NON-NLS-1$
+                    getString(reference, "name", path, false)); //$NON-NLS-1$
+        }
+        return new Reference(kind, getString(reference, "entity", path, false), //$NON-NLS-1$
+                getString(reference, "path", path, true)); //$NON-NLS-1$
+    }
+
+    private static Map<?, ?> asObject(Object value, String path) {
+        if (!(value instanceof Map)) {
+            throw unexpectedValue("an object", path, value); //$NON-NLS-1$
+        }
+        return (Map<?, ?>) value;
+    }
+
+    private static String getString(Map<?, ?> object, String key, String path, boolean isOptional) {
+        Object value = object.get(key);
+        if (value instanceof String || (isOptional && value == null)) {
+            return (String) value;
+        }
+        throw unexpectedValue("a string", path + '.' + key, value); //$NON-NLS-1$
+    }
+
+    private static IllegalArgumentException unexpectedValue(String expected, String path, Object value) {
+        return new IllegalArgumentException("Expected " + expected + " at '" + path + "' (got '" + value + "').");
+    }
+
+    private static byte indexOf(String[] names, String name, String path) {
+        for (byte i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unexpected value '" + name + "' at '" + path + "'.");
+    }
+
+    /**
+     * @return A path that identifies <code>element</code> in a repository (e.g. <code>field:Person/address/street</code>).
+     */
+    static String toPath(MetadataVisitable element) {
+        Reference reference = toReference(element);
+        StringBuilder path = new StringBuilder(KIND_NAMES[reference.kind]).append(':').append(reference.first);
+        if (reference.second != null) {
+            path.append('/').append(reference.second);
+        }
+        return path.toString();
+    }
+
+    private static Reference toReference(MetadataVisitable element) {
+        if (element instanceof FieldMetadata) {
+            FieldMetadata field = (FieldMetadata) element;
+            return new Reference(FIELD, field.getEntityTypeName(), field.getPath());
+        } else if (element instanceof ComplexTypeMetadata) {
+            ComplexTypeMetadata type = (ComplexTypeMetadata) element;
+            if (type.getContainer() != null) {
+                return new Reference(CONTAINED_TYPE, type.getEntity().getName(), type.getContainer().getPath());
+            } else if (type.isInstantiable()) {
+                return new Reference(ENTITY, type.getName(), null);
+            }
+        }
+        if (element instanceof TypeMetadata) {
+            TypeMetadata type = (TypeMetadata) element;
+            return new Reference(TYPE, type.getNamespace(), type.getName());
+        }
+        throw new IllegalArgumentException("Element '" + element + "' can not be encoded.");
+    }
+
+    /**
+     * Path-based reference to a metadata element: <code>first</code> is an entity type name (or a namespace for
+     * {@link #TYPE}) and <code>second</code> a field path (or a type name for {@link #TYPE}).
+     */
+    private static class Reference {
+
+        private final byte kind;
+
+        private final String first;
+
+        private final String second;
+
+        private Reference(byte kind, String first, String second) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+        }
+
+        private MetadataVisitable resolve(MetadataRepository repository) {
+            MetadataVisitable element;
+            switch (kind) {
+            case TYPE:
+                element = repository.getNonInstantiableType(first, second);
+                break;
+            case ENTITY:
+            case FIELD:
+            case CONTAINED_TYPE:
+                ComplexTypeMetadata entity = repository.getComplexType(first);
+                if (entity == null || kind == ENTITY) {
+                    element = entity;
+                } else if (!entity.hasField(second)) {
+                    element = null;
+                } else {
+                    FieldMetadata field = entity.getField(second);
+                    if (kind == FIELD) {
+                        element = field;
+                    } else if (field instanceof ContainedTypeFieldMetadata) {
+                        element = ((ContainedTypeFieldMetadata) field).getContainedType();
+                    } else {
+                        element = null;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown element kind (" + kind + ").");
+            }
+            if (element == null) {
+                throw new IllegalArgumentException("Could not find " + KIND_NAMES[kind] + " '" + first
+                        + (second == null ? "" : "/" + second) + "' in repository."); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            return element;
+        }
+    }
+
+    private static class BinaryWriter {
+
+        private final DataOutputStream output;
+
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        private BinaryWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        private void writeReference(Reference reference) throws IOException {
+            output.writeByte(reference.kind);
+            writeString(reference.first);
+            writeString(reference.second);
+        }
+
+        // 0 = null, 1 = new string (followed by its UTF value), n > 1 = string at index n - 2 in string table.
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                strings.put(value, strings.size());
+                writeInt(1);
+                output.writeUTF(value);
+            } else {
+                writeInt(index + 2);
+            }
+        }
+
+        // Variable length encoding (7 bits per byte) for positive int values.
+        private void writeInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                output.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output.writeByte(value);
+        }
+    }
+
+    private static class BinaryReader {
+
+        // A positive int value needs at most 5 bytes (7 bits per byte).
+        private static final int MAX_INT_LENGTH = 5;
+
+        private final CountingInputStream counter;
+
+        private final DataInputStream input;
+
+        private final List<String> strings = new ArrayList<String>();
+
+        private BinaryReader(InputStream inputStream) {
+            this.counter = new CountingInputStream(inputStream);
+            this.input = new DataInputStream(counter);
+        }
+
+        private Reference readReference() throws IOException {
+            long offset = getOffset();
+            byte kind = input.readByte();
+            if (kind < 0 || kind >= KIND_NAMES.length) {
+                throw error("Unknown element kind (" + kind + ")", offset); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            String first = readString();
+            String second = readString();
+            return new Reference(kind, first, second);
+        }
+
+        private String readString() throws IOException {
+            long offset = getOffset();
+            int index = readInt();
+            if (index == 0) {
+                return null;
+            } else if (index == 1) {
+                String value = input.readUTF();
+                strings.add(value);
+                return value;
+            } else if (index - 2 < strings.size()) {
+                return strings.get(index - 2);
+            } else {
+                throw error("Invalid string index " + (index - 2) + " (" + strings.size() + " strings read)", offset); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+        }
+
+        private int readInt() throws IOException {
+            long offset = getOffset();
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift == 7 * MAX_INT_LENGTH) {
+                    throw error("Variable length integer is longer than " + MAX_INT_LENGTH + " bytes", offset); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                b = input.readByte();
+                if (shift == 7 * (MAX_INT_LENGTH - 1) && (b & 0x78) != 0) {
+                    // Only 3 bits left in last byte for a positive int.
+                    throw error("Variable length integer exceeds " + Integer.MAX_VALUE, offset); //$NON-NLS-1$
+                }
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private long getOffset() {
+            return counter.count;
+        }
+
+        private IllegalArgumentException error(String message, long offset) {
+            return new IllegalArgumentException(message + " at offset " + offset + "."); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    // Counts bytes read from the encoded diff (for offsets in error messages).
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Minimal JSON parser (objects, arrays, strings, numbers, booleans and null) for content produced by
+     * {@link DiffResultsCodec#encodeJson(Compare.DiffResults, Appendable)}.
+     */
+    private static class JsonParser {
+
+        private final String json;
+
+        private int position;
+
+        private JsonParser(String json) {
+            this.json = json;
+        }
+
+        private Object parse() {
+            Object value = parseValue();
+            skipWhitespaces();
+            if (position != json.length()) {
+                throw error("Unexpected content after JSON value"); //$NON-NLS-1$
+            }
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespaces();
+            if (position >= json.length()) {
+                throw error("Unexpected end of content"); //$NON-NLS-1$
+            }
+            char c = json.charAt(position);
+            switch (c) {
+            case '{':
+                return parseObject();
+            case '[':
+                return parseArray();
+            case '"':
+                return parseString();
+            case 't':
+                expect("true"); //$NON-NLS-1$
+                return Boolean.TRUE;
+            case 'f':
+                expect("false"); //$NON-NLS-1$
+                return Boolean.FALSE;
+            case 'n':
+                expect("null"); //$NON-NLS-1$
+                return null;
+            default:
+                return parseNumber();
+            }
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            position++; // '{'
+            skipWhitespaces();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespaces();
+                String key = parseString();
+                skipWhitespaces();
+                consume(':');
+                object.put(key, parseValue());
+                skipWhitespaces();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    consume('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<Object>();
+            position++; // '['
+            skipWhitespaces();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespaces();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    consume(']');
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() {
+            consume('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return builder.toString();
+                } else if (c == '\\') {
+                    char escaped = next();
+                    switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw error("Invalid unicode escape"); //$NON-NLS-1$
+                        }
+                        builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        builder.append(escaped);
+                    }
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+
+        private Number parseNumber() {
+            int start = position;
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) { //$NON-NLS-1$
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character '" + json.charAt(position) + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            String number = json.substring(start, position);
+            try {
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                    return Long.parseLong(number);
+                }
+                return Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + number + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        private void expect(String keyword) {
+            if (!json.startsWith(keyword, position)) {
+                throw error("Expected '" + keyword + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            position += keyword.length();
+        }
+
+        private void consume(char expected) {
+            if (next() != expected) {
+                position--;
+                throw error("Expected '" + expected + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        private char peek() {
+            if (position >= json.length()) {
+                throw error("Unexpected end of content"); //$NON-NLS-1$
+            }
+            return json.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void skipWhitespaces() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + "."); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+}
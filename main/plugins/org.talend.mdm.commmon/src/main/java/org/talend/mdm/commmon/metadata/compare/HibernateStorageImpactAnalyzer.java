@@ -10,10 +10,13 @@
 
 package org.talend.mdm.commmon.metadata.compare;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.ObjectUtils;
@@ -26,11 +29,41 @@ public class HibernateStorageImpactAnalyzer implements ImpactAnalyzer {
 
     protected final String STRING_DEFAULT_LENGTH = "255"; //$NON-NLS-1$
 
+    private final NullValueProbe nullValueProbe;
+
+    /**
+     * Creates an analyzer that relies on {@link ModifyChange#isHasNullValue()} as set by caller for optional to
+     * mandatory changes.
+     */
+    public HibernateStorageImpactAnalyzer() {
+        this(null);
+    }
+
+    /**
+     * Creates an analyzer that uses <code>nullValueProbe</code> (called once per analysis) instead of
+     * {@link ModifyChange#isHasNullValue()} for all optional to mandatory changes. Analyzed changes are not modified.
+     *
+     * @param nullValueProbe A {@link NullValueProbe} or <code>null</code> to use values set by caller.
+     */
+    public HibernateStorageImpactAnalyzer(NullValueProbe nullValueProbe) {
+        this.nullValueProbe = nullValueProbe;
+    }
+
+    /**
+     * @return <code>true</code> if analysis depends on existing data (and not only on the compared data models), i.e.
+     * if analyzer uses a {@link NullValueProbe}.
+     */
+    public boolean isDataDependent() {
+        return nullValueProbe != null;
+    }
+
     public Map<Impact, List<Change>> analyzeImpacts(Compare.DiffResults diffResult) {
         Map<Impact, List<Change>> impactSort = new EnumMap<Impact, List<Change>>(Impact.class);
         for (Impact impact : Impact.values()) {
             impactSort.put(impact, new LinkedList<Change>());
         }
+        // Changes with null values found by probe (null if analyzer relies on ModifyChange#isHasNullValue()).
+        Set<ModifyChange> changesWithNullValues = nullValueProbe != null ? probeNullValues(diffResult) : null;
         // Add actions
         for (AddChange addAction : diffResult.getAddChanges()) {
             MetadataVisitable element = addAction.getElement();
@@ -127,11 +160,13 @@ public class HibernateStorageImpactAnalyzer implements ImpactAnalyzer {
                     if (!previous.isMandatory() && current.isMandatory()) {
                         // Won't be able to change constraint
                         String defaultValueRule = ((FieldMetadata) current).getData(MetadataRepository.DEFAULT_VALUE_RULE);
-                        if (!modifyAction.isHasNullValue()) {
+                        boolean hasNullValue = changesWithNullValues != null ? changesWithNullValues.contains(modifyAction)
+                                : modifyAction.isHasNullValue();
+                        if (!hasNullValue) {
                             impactSort.get(Impact.LOW).add(modifyAction);
-                        } else if (modifyAction.isHasNullValue() && StringUtils.isBlank(defaultValueRule)) {
+                        } else if (StringUtils.isBlank(defaultValueRule)) {
                             impactSort.get(Impact.HIGH).add(modifyAction);
-                        } else if (modifyAction.isHasNullValue() && StringUtils.isNotBlank(defaultValueRule)) {
+                        } else {
                             impactSort.get(Impact.MEDIUM).add(modifyAction);
                         }
                     } else if(previous.isMandatory() && !current.isMandatory()){
@@ -154,4 +189,24 @@ public class HibernateStorageImpactAnalyzer implements ImpactAnalyzer {
         }
         return impactSort;
     }
+
+    // Returns changes from optional to mandatory with null values in existing data (using a single probe call). Changes
+    // are not modified: they may be shared (e.g. diffs cached by DiffCache).
+    private Set<ModifyChange> probeNullValues(Compare.DiffResults diffResult) {
+        List<ModifyChange> candidates = new ArrayList<ModifyChange>();
+        for (ModifyChange modifyAction : diffResult.getModifyChanges()) {
+            if (modifyAction.getPrevious() instanceof FieldMetadata && modifyAction.getCurrent() instanceof FieldMetadata) {
+                FieldMetadata previous = (FieldMetadata) modifyAction.getPrevious();
+                FieldMetadata current = (FieldMetadata) modifyAction.getCurrent();
+                if (!previous.isMandatory() && current.isMandatory()) {
+                    candidates.add(modifyAction);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<ModifyChange> changesWithNullValues = nullValueProbe.findNullValues(candidates);
+        return changesWithNullValues == null ? Collections.<ModifyChange> emptySet() : changesWithNullValues;
+    }
 }
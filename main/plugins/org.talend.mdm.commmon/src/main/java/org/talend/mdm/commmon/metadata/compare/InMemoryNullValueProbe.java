@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+
+/**
+ * A {@link NullValueProbe} that answers from a fixed set of field paths (<code>Entity/path/to/field</code>) known to
+ * contain null values. Intended for tests and tools that have no access to the database.
+ */
+public class InMemoryNullValueProbe implements NullValueProbe {
+
+    private final Set<String> nullValuePaths = new HashSet<String>();
+
+    private final AtomicInteger callCount = new AtomicInteger();
+
+    public InMemoryNullValueProbe() {
+    }
+
+    /**
+     * @param nullValuePaths Paths of fields with null values, e.g. <code>Person/address/street</code>.
+     */
+    public InMemoryNullValueProbe(Collection<String> nullValuePaths) {
+        this.nullValuePaths.addAll(nullValuePaths);
+    }
+
+    /**
+     * Declares <code>path</code> in <code>entityTypeName</code> as containing null values.
+     *
+     * @param entityTypeName An entity type name.
+     * @param path A field path in the entity type (e.g. <code>address/street</code>).
+     */
+    public synchronized void addNullValues(String entityTypeName, String path) {
+        nullValuePaths.add(entityTypeName + '/' + path);
+    }
+
+    @Override
+    public synchronized Set<ModifyChange> findNullValues(Collection<ModifyChange> changes) {
+        callCount.incrementAndGet();
+        Set<ModifyChange> changesWithNullValues = new HashSet<ModifyChange>();
+        for (ModifyChange change : changes) {
+            FieldMetadata field = (FieldMetadata) change.getCurrent();
+            if (nullValuePaths.contains(field.getEntityTypeName() + '/' + field.getPath())) {
+                changesWithNullValues.add(change);
+            }
+        }
+        return changesWithNullValues;
+    }
+
+    /**
+     * @return Number of times {@link #findNullValues(Collection)} was called.
+     */
+    public int getCallCount() {
+        return callCount.get();
+    }
+}
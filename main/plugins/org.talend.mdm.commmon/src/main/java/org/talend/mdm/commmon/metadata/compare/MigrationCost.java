@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estimated effort of a data model migration: number of rows and bytes rewritten by each {@link Change}.
+ *
+ * @see CostWeightedImpactAnalyzer#estimateCost(Compare.DiffResults)
+ */
+public class MigrationCost {
+
+    private final List<ChangeCost> changeCosts = new ArrayList<ChangeCost>();
+
+    private long totalRows;
+
+    private long totalBytes;
+
+    void add(ChangeCost changeCost) {
+        changeCosts.add(changeCost);
+        totalRows += changeCost.getRows();
+        totalBytes += changeCost.getBytes();
+    }
+
+    /**
+     * @return The estimated cost of each change (in diff order: add, remove then modify changes).
+     */
+    public List<ChangeCost> getChangeCosts() {
+        return Collections.unmodifiableList(changeCosts);
+    }
+
+    /**
+     * @return Total number of rows rewritten by the migration.
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return Total number of bytes rewritten by the migration (this is the plan cost).
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @param bytesPerSecond The rewrite throughput of the database (in bytes per second).
+     * @return The estimated duration (in milliseconds) of the migration.
+     */
+    public long getEstimatedDuration(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Throughput must be greater than 0.");
+        }
+        return (long) Math.ceil(totalBytes * 1000d / bytesPerSecond);
+    }
+
+    /**
+     * Estimated effort for a single {@link Change}.
+     */
+    public static class ChangeCost {
+
+        private final Change change;
+
+        private final ImpactAnalyzer.Impact impact;
+
+        private final long rows;
+
+        private final long bytes;
+
+        ChangeCost(Change change, ImpactAnalyzer.Impact impact, long rows, long bytes) {
+            this.change = change;
+            this.impact = impact;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public ImpactAnalyzer.Impact getImpact() {
+            return impact;
+        }
+
+        /**
+         * @return Number of existing rows rewritten for this change.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return Number of bytes rewritten for this change.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "ChangeCost {" + //$NON-NLS-1$
+                    "change=" + change.getElement() + //$NON-NLS-1$
+                    ", impact=" + impact + //$NON-NLS-1$
+                    ", rows=" + rows + //$NON-NLS-1$
+                    ", bytes=" + bytes + //$NON-NLS-1$
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
+
+/**
+ * <p>
+ * An ordered list of {@link Step migration steps} to apply a diff to a storage. Steps are grouped: steps of a group
+ * have no dependency between them and can run concurrently, and a group must only start once all steps of previous
+ * groups are done.
+ * </p>
+ *
+ * @see MigrationPlanner#plan(Compare.DiffResults, org.talend.mdm.commmon.metadata.MetadataRepository,
+ * org.talend.mdm.commmon.metadata.MetadataRepository)
+ */
+public class MigrationPlan {
+
+    public static enum Phase {
+        /**
+         * Drops foreign keys that point to (or are declared in) modified elements.
+         */
+        DROP_FOREIGN_KEYS,
+        /**
+         * Drops tables of removed entity types (referencing entities first).
+         */
+        DROP_TABLES,
+        /**
+         * Creates tables of added entity types (referenced entities first).
+         */
+        CREATE_TABLES,
+        /**
+         * Adds, removes or alters columns of existing entity types.
+         */
+        ALTER_COLUMNS,
+        /**
+         * Rebuilds tables for modified entity types and contained types.
+         */
+        REBUILD_TABLES,
+        /**
+         * Adds foreign keys (new ones and the ones dropped in {@link #DROP_FOREIGN_KEYS}).
+         */
+        ADD_FOREIGN_KEYS
+    }
+
+    private final List<List<Step>> groups = new ArrayList<List<Step>>();
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    void addGroup(List<Step> group) {
+        if (!group.isEmpty()) {
+            for (Step step : group) {
+                step.group = groups.size();
+            }
+            groups.add(Collections.unmodifiableList(group));
+            steps.addAll(group);
+        }
+    }
+
+    /**
+     * @return All steps in execution order.
+     */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return Steps grouped by {@link Step#getGroup() group}, in execution order.
+     */
+    public List<List<Step>> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * A migration step: a set of operations on the table(s) of a single entity type.
+     */
+    public static class Step {
+
+        private final Phase phase;
+
+        private final String entityTypeName;
+
+        private final List<Change> changes = new ArrayList<Change>();
+
+        private final List<ReferenceFieldMetadata> foreignKeys = new ArrayList<ReferenceFieldMetadata>();
+
+        private int group;
+
+        Step(Phase phase, String entityTypeName) {
+            this.phase = phase;
+            this.entityTypeName = entityTypeName;
+        }
+
+        void addChange(Change change) {
+            changes.add(change);
+        }
+
+        void addForeignKey(ReferenceFieldMetadata foreignKey) {
+            if (!foreignKeys.contains(foreignKey)) {
+                foreignKeys.add(foreignKey);
+            }
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public String getEntityTypeName() {
+            return entityTypeName;
+        }
+
+        /**
+         * @return The changes (from diff) this step implements. Empty for foreign key steps.
+         */
+        public List<Change> getChanges() {
+            return Collections.unmodifiableList(changes);
+        }
+
+        /**
+         * @return The foreign keys to drop (declared in previous data model) or to add (declared in new data model).
+         * Empty for steps other than {@link Phase#DROP_FOREIGN_KEYS} and {@link Phase#ADD_FOREIGN_KEYS}.
+         */
+        public List<ReferenceFieldMetadata> getForeignKeys() {
+            return Collections.unmodifiableList(foreignKeys);
+        }
+
+        /**
+         * @return The group of this step: steps with same group can run concurrently.
+         */
+        public int getGroup() {
+            return group;
+        }
+
+        @Override
+        public String toString() {
+            return "Step {" + //$NON-NLS-1$
+                    "phase=" + phase + //$NON-NLS-1$
+                    ", entity='" + entityTypeName + '\'' + //$NON-NLS-1$
+                    ", group=" + group + //$NON-NLS-1$
+                    ", changes=" + changes.size() + //$NON-NLS-1$
+                    ", foreign keys=" + foreignKeys.size() + //$NON-NLS-1$
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.InboundReferences;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+import org.talend.mdm.commmon.metadata.MetadataUtils;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
+import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
+import org.talend.mdm.commmon.metadata.ReferenceGraph;
+
+/**
+ * <p>
+ * Builds a {@link MigrationPlan} from a diff between 2 data models. Plan runs {@link MigrationPlan.Phase phases} in
+ * this order: drop foreign keys, drop tables, create tables, alter columns, rebuild tables (of modified entity types
+ * and contained types) and finally add foreign keys.
+ * </p>
+ * <p>
+ * Table drops and creations follow entity dependencies (as computed by
+ * {@link MetadataUtils#sortTypesInLevels(MetadataRepository, MetadataUtils.SortType)}): each dependency level is a
+ * group of steps that can run concurrently. All other phases only contain independent steps (foreign keys are dropped
+ * before and added after), so each of them is a single group. When dropped tables reference each other in a cycle,
+ * the foreign keys the level sort had to {@link MetadataUtils.SortLevels#getDeferredReferences() defer} are dropped
+ * first (and not added again).
+ * </p>
+ * <p>
+ * Changes on non instantiable types (reusable types) have no storage operation and are not part of the plan.
+ * </p>
+ */
+public class MigrationPlanner {
+
+    /**
+     * @param diffResults The diff between <code>previous</code> and <code>current</code>.
+     * @param previous The data model currently deployed (the left side of the diff).
+     * @param current The new data model (the right side of the diff).
+     * @return The {@link MigrationPlan} to apply <code>diffResults</code> to storage.
+     * @see Compare#compare(MetadataRepository, MetadataRepository)
+     */
+    public static MigrationPlan plan(Compare.DiffResults diffResults, MetadataRepository previous, MetadataRepository current) {
+        if (diffResults == null || previous == null || current == null) {
+            throw new IllegalArgumentException("Diff and repositories cannot be null.");
+        }
+        Map<String, MigrationPlan.Step> dropForeignKeys = new TreeMap<String, MigrationPlan.Step>();
+        Map<String, MigrationPlan.Step> dropTables = new TreeMap<String, MigrationPlan.Step>();
+        Map<String, MigrationPlan.Step> createTables = new TreeMap<String, MigrationPlan.Step>();
+        Map<String, MigrationPlan.Step> alterColumns = new TreeMap<String, MigrationPlan.Step>();
+        Map<String, MigrationPlan.Step> rebuildTypes = new TreeMap<String, MigrationPlan.Step>();
+        Map<String, MigrationPlan.Step> addForeignKeys = new TreeMap<String, MigrationPlan.Step>();
+        // Dispatch changes
+        for (AddChange change : diffResults.getAddChanges()) {
+            MetadataVisitable element = change.getElement();
+            if (element instanceof ComplexTypeMetadata) {
+                ComplexTypeMetadata type = (ComplexTypeMetadata) element;
+                if (type.getContainer() != null) {
+                    getStep(rebuildTypes, MigrationPlan.Phase.REBUILD_TABLES, type.getEntity().getName()).addChange(change);
+                } else if (type.isInstantiable()) {
+                    getStep(createTables, MigrationPlan.Phase.CREATE_TABLES, type.getName()).addChange(change);
+                }
+            } else if (element instanceof FieldMetadata) {
+                FieldMetadata field = (FieldMetadata) element;
+                addFieldChange(change, field, alterColumns, rebuildTypes);
+                if (field instanceof ReferenceFieldMetadata) {
+                    getStep(addForeignKeys, MigrationPlan.Phase.ADD_FOREIGN_KEYS, field.getEntityTypeName()).addForeignKey(
+                            (ReferenceFieldMetadata) field);
+                }
+            }
+        }
+        for (RemoveChange change : diffResults.getRemoveChanges()) {
+            MetadataVisitable element = change.getElement();
+            if (element instanceof ComplexTypeMetadata) {
+                ComplexTypeMetadata type = (ComplexTypeMetadata) element;
+                if (type.getContainer() != null) {
+                    getStep(rebuildTypes, MigrationPlan.Phase.REBUILD_TABLES, type.getEntity().getName()).addChange(change);
+                } else if (type.isInstantiable()) {
+                    getStep(dropTables, MigrationPlan.Phase.DROP_TABLES, type.getName()).addChange(change);
+                }
+            } else if (element instanceof FieldMetadata) {
+                FieldMetadata field = (FieldMetadata) element;
+                addFieldChange(change, field, alterColumns, rebuildTypes);
+                if (field instanceof ReferenceFieldMetadata) {
+                    getStep(dropForeignKeys, MigrationPlan.Phase.DROP_FOREIGN_KEYS, field.getEntityTypeName()).addForeignKey(
+                            (ReferenceFieldMetadata) field);
+                }
+            }
+        }
+        for (ModifyChange change : diffResults.getModifyChanges()) {
+            MetadataVisitable element = change.getCurrent();
+            if (element instanceof ComplexTypeMetadata) {
+                String entityTypeName = ((ComplexTypeMetadata) element).getEntity().getName();
+                getStep(rebuildTypes, MigrationPlan.Phase.REBUILD_TABLES, entityTypeName).addChange(change);
+            } else if (element instanceof FieldMetadata) {
+                FieldMetadata field = (FieldMetadata) element;
+                addFieldChange(change, field, alterColumns, rebuildTypes);
+                if (change.getPrevious() instanceof ReferenceFieldMetadata) {
+                    getStep(dropForeignKeys, MigrationPlan.Phase.DROP_FOREIGN_KEYS, field.getEntityTypeName()).addForeignKey(
+                            (ReferenceFieldMetadata) change.getPrevious());
+                }
+                if (field instanceof ReferenceFieldMetadata) {
+                    getStep(addForeignKeys, MigrationPlan.Phase.ADD_FOREIGN_KEYS, field.getEntityTypeName()).addForeignKey(
+                            (ReferenceFieldMetadata) field);
+                }
+            }
+        }
+        // Foreign keys from and to removed or rebuilt tables
+        MetadataUtils.SortLevels previousSortLevels = MetadataUtils.sortTypesInLevels(previous, MetadataUtils.SortType.LENIENT);
+        ReferenceGraph previousGraph = new ReferenceGraph(previous);
+        ReferenceGraph currentGraph = new ReferenceGraph(current);
+        List<String> droppedOrRebuilt = new ArrayList<String>(dropTables.keySet());
+        droppedOrRebuilt.addAll(rebuildTypes.keySet());
+        for (String entityTypeName : droppedOrRebuilt) {
+            ComplexTypeMetadata previousType = previous.getComplexType(entityTypeName);
+            if (previousType == null) {
+                continue;
+            }
+            for (ReferenceFieldMetadata inboundReference : previous.accept(new InboundReferences(previousType))) {
+                String source = inboundReference.getEntityTypeName();
+                if (previous.getComplexType(source) == null) {
+                    // Field of a reusable type (no table): its copies in entity types that use it are also visited.
+                    continue;
+                }
+                if (dropTables.containsKey(source)) {
+                    if (previousSortLevels.getDeferredReferences().contains(inboundReference)) {
+                        // Both tables are dropped but are in a cycle: drop order can't follow this foreign key.
+                        getStep(dropForeignKeys, MigrationPlan.Phase.DROP_FOREIGN_KEYS, source).addForeignKey(inboundReference);
+                    }
+                } else {
+                    getStep(dropForeignKeys, MigrationPlan.Phase.DROP_FOREIGN_KEYS, source).addForeignKey(inboundReference);
+                    // Restore foreign key if it still exists in new data model
+                    ComplexTypeMetadata currentSource = current.getComplexType(source);
+                    if (currentSource != null && currentSource.hasField(inboundReference.getPath())) {
+                        FieldMetadata currentField = currentSource.getField(inboundReference.getPath());
+                        if (currentField instanceof ReferenceFieldMetadata) {
+                            getStep(addForeignKeys, MigrationPlan.Phase.ADD_FOREIGN_KEYS, source).addForeignKey(
+                                    (ReferenceFieldMetadata) currentField);
+                        }
+                    }
+                }
+            }
+            if (rebuildTypes.containsKey(entityTypeName)) {
+                for (ReferenceFieldMetadata outboundReference : previousGraph.getReferenceFields(previousType)) {
+                    getStep(dropForeignKeys, MigrationPlan.Phase.DROP_FOREIGN_KEYS, entityTypeName).addForeignKey(outboundReference);
+                }
+                ComplexTypeMetadata currentType = current.getComplexType(entityTypeName);
+                if (currentType != null) {
+                    for (ReferenceFieldMetadata outboundReference : currentGraph.getReferenceFields(currentType)) {
+                        getStep(addForeignKeys, MigrationPlan.Phase.ADD_FOREIGN_KEYS, entityTypeName).addForeignKey(
+                                outboundReference);
+                    }
+                }
+            }
+        }
+        // Foreign keys of new tables
+        for (String entityTypeName : createTables.keySet()) {
+            ComplexTypeMetadata currentType = current.getComplexType(entityTypeName);
+            for (ReferenceFieldMetadata outboundReference : currentGraph.getReferenceFields(currentType)) {
+                getStep(addForeignKeys, MigrationPlan.Phase.ADD_FOREIGN_KEYS, entityTypeName).addForeignKey(outboundReference);
+            }
+        }
+        // Build plan
+        MigrationPlan plan = new MigrationPlan();
+        plan.addGroup(new ArrayList<MigrationPlan.Step>(dropForeignKeys.values()));
+        List<List<ComplexTypeMetadata>> previousLevels = new ArrayList<List<ComplexTypeMetadata>>(previousSortLevels.getLevels());
+        Collections.reverse(previousLevels); // Drop referencing tables first
+        addLevelGroups(plan, previousLevels, dropTables);
+        addLevelGroups(plan, MetadataUtils.sortTypesInLevels(current, MetadataUtils.SortType.LENIENT).getLevels(), createTables);
+        plan.addGroup(new ArrayList<MigrationPlan.Step>(alterColumns.values()));
+        plan.addGroup(new ArrayList<MigrationPlan.Step>(rebuildTypes.values()));
+        plan.addGroup(new ArrayList<MigrationPlan.Step>(addForeignKeys.values()));
+        return plan;
+    }
+
+    private static void addFieldChange(Change change, FieldMetadata field, Map<String, MigrationPlan.Step> alterColumns,
+            Map<String, MigrationPlan.Step> rebuildTypes) {
+        if (field instanceof ContainedTypeFieldMetadata) {
+            getStep(rebuildTypes, MigrationPlan.Phase.REBUILD_TABLES, field.getEntityTypeName()).addChange(change);
+        } else {
+            getStep(alterColumns, MigrationPlan.Phase.ALTER_COLUMNS, field.getEntityTypeName()).addChange(change);
+        }
+    }
+
+    // Adds one group per level (only for entity types in steps), steps for types not found in levels are added last.
+    private static void addLevelGroups(MigrationPlan plan, List<List<ComplexTypeMetadata>> levels,
+            Map<String, MigrationPlan.Step> steps) {
+        Map<String, MigrationPlan.Step> remainingSteps = new TreeMap<String, MigrationPlan.Step>(steps);
+        for (List<ComplexTypeMetadata> level : levels) {
+            List<MigrationPlan.Step> group = new ArrayList<MigrationPlan.Step>();
+            for (ComplexTypeMetadata type : level) {
+                MigrationPlan.Step step = remainingSteps.remove(type.getName());
+                if (step != null) {
+                    group.add(step);
+                }
+            }
+            plan.addGroup(group);
+        }
+        plan.addGroup(new ArrayList<MigrationPlan.Step>(remainingSteps.values()));
+    }
+
+    private static MigrationPlan.Step getStep(Map<String, MigrationPlan.Step> steps, MigrationPlan.Phase phase,
+            String entityTypeName) {
+        MigrationPlan.Step step = steps.get(entityTypeName);
+        if (step == null) {
+            step = new MigrationPlan.Step(phase, entityTypeName);
+            steps.put(entityTypeName, step);
+        }
+        return step;
+    }
+}
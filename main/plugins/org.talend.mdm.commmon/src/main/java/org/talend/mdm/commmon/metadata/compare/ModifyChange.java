@@ -10,20 +10,14 @@
 
 package org.talend.mdm.commmon.metadata.compare;
 
-import java.text.MessageFormat;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
-import java.util.ResourceBundle;
 
-import org.talend.mdm.commmon.metadata.*;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
 
 public class ModifyChange extends Change {
 
     private final MetadataVisitable current;
 
-    private ResourceBundle bundle;
-
     private boolean hasNullValue;
 
     public ModifyChange(MetadataVisitable previous, MetadataVisitable current) {
@@ -49,36 +43,6 @@ public class ModifyChange extends Change {
 
     @Override
     public String getMessage(Locale locale) {
-        if (bundle == null || !bundle.getLocale().equals(locale)) {
-            bundle = ResourceBundle.getBundle(MESSAGE_BUNDLE_NAME, locale);
-        }
-        return element.accept(new DefaultMetadataVisitor<String>() {
-
-            @Override
-            public String visit(ComplexTypeMetadata complexType) {
-                return MessageFormat.format(bundle.getString("modify_entity_type"), complexType.getName()); //$NON-NLS-1$
-            }
-
-            @Override
-            public String visit(ReferenceFieldMetadata referenceField) {
-                return MessageFormat.format(bundle.getString("modify_reference_field"), referenceField.getName()); //$NON-NLS-1$
-            }
-
-            @Override
-            public String visit(ContainedTypeFieldMetadata containedField) {
-                return MessageFormat.format(bundle.getString("modify_contained_field"), containedField.getName()); //$NON-NLS-1$
-            }
-
-            @Override
-            public String visit(SimpleTypeFieldMetadata simpleField) {
-                return MessageFormat.format(bundle.getString("modify_simple_field"), simpleField.getName()); //$NON-NLS-1$
-            }
-
-            @Override
-            public String visit(EnumerationFieldMetadata enumField) {
-                return MessageFormat.format(bundle.getString("modify_enum_field"), enumField.getName()); //$NON-NLS-1$
-            }
-        });
-
+        return ChangeMessageRenderer.getInstance().render(this, locale);
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * <p>
+ * Checks whether existing data contains null values for fields that become mandatory in a data model change. An
+ * {@link ImpactAnalyzer} uses this information to rank an optional to mandatory change: such change has no impact if
+ * there is no null value in the database.
+ * </p>
+ * <p>
+ * All candidate changes are passed at once, so implementations can group fields per entity type and answer with a
+ * single query per table (e.g. <code>SELECT COUNT(*) - COUNT(col1), COUNT(*) - COUNT(col2) ... FROM table</code>, as
+ * <code>COUNT(col)</code> only counts non null values) instead of one query per field.
+ * </p>
+ *
+ * @see HibernateStorageImpactAnalyzer#HibernateStorageImpactAnalyzer(NullValueProbe)
+ */
+public interface NullValueProbe {
+
+    /**
+     * @param changes {@link ModifyChange Changes} of fields from optional to mandatory. For each change,
+     * {@link ModifyChange#getCurrent()} returns a {@link org.talend.mdm.commmon.metadata.FieldMetadata field}.
+     * @return The changes (from <code>changes</code>) for which existing data contains at least one null value. Empty
+     * set if no null value was found.
+     */
+    Set<ModifyChange> findNullValues(Collection<ModifyChange> changes);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+/**
+ * Provides statistics on the data stored for entity types (usually read from database statistics). Used by
+ * {@link CostWeightedImpactAnalyzer} to estimate migration effort.
+ */
+public interface StatisticsProvider {
+
+    /**
+     * @param entityTypeName An entity type name.
+     * @return The number of records for the entity type (0 if unknown).
+     */
+    long getRowCount(String entityTypeName);
+
+    /**
+     * @param entityTypeName An entity type name.
+     * @return The average size (in bytes) of a record for the entity type (0 if unknown).
+     */
+    long getAverageRecordSize(String entityTypeName);
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.compare;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.MetadataFingerprint;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+import org.talend.mdm.commmon.metadata.MetadataVisitable;
+import org.talend.mdm.commmon.metadata.TypeMetadata;
+
+/**
+ * <p>
+ * Three-way merge of data models: merges changes made in 2 data models (<i>ours</i> and <i>theirs</i>) from a common
+ * <i>base</i>. Changes are identified by the path of the changed element (entity type, field path): a path changed on
+ * one side only is merged, a path changed on both sides is merged if both changes are identical and is a conflict
+ * otherwise. Removing an entity type on one side while changing it on the other side is also a conflict (and removal
+ * is not merged).
+ * </p>
+ * <p>
+ * Only entity types with different {@link MetadataFingerprint#getEntityFingerprints(MetadataRepository) fingerprints}
+ * are compared, so merge time depends on the number of changed entity types (not on data model size). Changes on
+ * reusable types are taken into account through the entity types that use them.
+ * </p>
+ */
+public class ThreeWayMerge {
+
+    /**
+     * @param base The common ancestor of <code>ours</code> and <code>theirs</code>.
+     * @param ours A data model derived from <code>base</code>.
+     * @param theirs Another data model derived from <code>base</code>.
+     * @return The {@link MergeResult result} of the merge.
+     */
+    public static MergeResult merge(MetadataRepository base, MetadataRepository ours, MetadataRepository theirs) {
+        if (base == null || ours == null || theirs == null) {
+            throw new IllegalArgumentException("Repositories cannot be null.");
+        }
+        Map<String, Long> baseFingerprints = MetadataFingerprint.getEntityFingerprints(base);
+        Set<String> oursChanged = getChangedEntities(baseFingerprints, MetadataFingerprint.getEntityFingerprints(ours));
+        Set<String> theirsChanged = getChangedEntities(baseFingerprints, MetadataFingerprint.getEntityFingerprints(theirs));
+        Map<String, List<Change>> oursChanges = getChanges(base, ours, oursChanged);
+        Map<String, List<Change>> theirsChanges = getChanges(base, theirs, theirsChanged);
+        Map<String, Change> oursRemovedEntities = getRemovedEntities(oursChanges);
+        Map<String, Change> theirsRemovedEntities = getRemovedEntities(theirsChanges);
+        // Entity types removed on one side and changed on the other side: removal is a conflict (never merged).
+        Set<String> conflictingRemovals = new HashSet<String>();
+        conflictingRemovals.addAll(getChangedRemovedEntities(theirsChanges, oursRemovedEntities));
+        conflictingRemovals.addAll(getChangedRemovedEntities(oursChanges, theirsRemovedEntities));
+        Set<String> paths = new LinkedHashSet<String>(oursChanges.keySet());
+        paths.addAll(theirsChanges.keySet());
+        MergeResult result = new MergeResult();
+        for (String path : paths) {
+            List<Change> ourChanges = oursChanges.get(path);
+            List<Change> theirChanges = theirsChanges.get(path);
+            Change ourRemoval = getRemovedEntity(theirChanges, oursRemovedEntities);
+            Change theirRemoval = getRemovedEntity(ourChanges, theirsRemovedEntities);
+            if (ourRemoval != null) {
+                result.conflicts.add(new Conflict(path, ourChanges != null ? ourChanges : Collections
+                        .singletonList(ourRemoval), theirChanges));
+            } else if (theirRemoval != null) {
+                result.conflicts.add(new Conflict(path, ourChanges, theirChanges != null ? theirChanges : Collections
+                        .singletonList(theirRemoval)));
+            } else if (isConflictingRemoval(ourChanges, conflictingRemovals)
+                    || isConflictingRemoval(theirChanges, conflictingRemovals)) {
+                // Already reported as conflict(s) with the changes made by other side in removed entity type.
+            } else if (theirChanges == null) {
+                result.mergedChanges.addAll(ourChanges);
+            } else if (ourChanges == null) {
+                result.mergedChanges.addAll(theirChanges);
+            } else if (isSameChanges(ourChanges, theirChanges)) {
+                result.mergedChanges.addAll(ourChanges);
+            } else {
+                result.conflicts.add(new Conflict(path, ourChanges, theirChanges));
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> getChangedEntities(Map<String, Long> baseFingerprints, Map<String, Long> fingerprints) {
+        Set<String> changed = new TreeSet<String>();
+        for (Map.Entry<String, Long> entry : fingerprints.entrySet()) {
+            if (!entry.getValue().equals(baseFingerprints.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String entityTypeName : baseFingerprints.keySet()) {
+            if (!fingerprints.containsKey(entityTypeName)) {
+                changed.add(entityTypeName);
+            }
+        }
+        return changed;
+    }
+
+    // Compare may return more than one change for a path (e.g. max length and total digits of a field).
+    private static Map<String, List<Change>> getChanges(MetadataRepository base, MetadataRepository other,
+            Set<String> entityTypeNames) {
+        final Map<String, List<Change>> changes = new LinkedHashMap<String, List<Change>>();
+        Compare.compare(base, other, entityTypeNames, new ChangeConsumer() {
+
+            @Override
+            public boolean accept(Change change) {
+                MetadataVisitable element = change instanceof ModifyChange ? ((ModifyChange) change).getCurrent() : change
+                        .getElement();
+                String path = DiffResultsCodec.toPath(element);
+                List<Change> pathChanges = changes.get(path);
+                if (pathChanges == null) {
+                    pathChanges = new ArrayList<Change>(1);
+                    changes.put(path, pathChanges);
+                }
+                pathChanges.add(change);
+                return true;
+            }
+        });
+        return changes;
+    }
+
+    // Returns removals of entity types (by entity type name).
+    private static Map<String, Change> getRemovedEntities(Map<String, List<Change>> changes) {
+        Map<String, Change> removedEntities = new HashMap<String, Change>();
+        for (List<Change> pathChanges : changes.values()) {
+            for (Change change : pathChanges) {
+                if (isEntityRemoval(change)) {
+                    removedEntities.put(((ComplexTypeMetadata) change.getElement()).getName(), change);
+                }
+            }
+        }
+        return removedEntities;
+    }
+
+    // Returns names of entity types in removedEntities with changes (other than their removal) in changes.
+    private static Set<String> getChangedRemovedEntities(Map<String, List<Change>> changes,
+            Map<String, Change> removedEntities) {
+        Set<String> changedEntities = new HashSet<String>();
+        for (List<Change> pathChanges : changes.values()) {
+            for (Change change : pathChanges) {
+                String entityTypeName = getEntityTypeName(change);
+                if (entityTypeName != null && removedEntities.containsKey(entityTypeName) && !isEntityRemoval(change)) {
+                    changedEntities.add(entityTypeName);
+                }
+            }
+        }
+        return changedEntities;
+    }
+
+    // Returns the removal (by other side) of the entity type that contains one of the changes (if any).
+    private static Change getRemovedEntity(List<Change> changes, Map<String, Change> otherRemovedEntities) {
+        if (changes == null) {
+            return null;
+        }
+        for (Change change : changes) {
+            String entityTypeName = getEntityTypeName(change);
+            if (entityTypeName != null && !isEntityRemoval(change)) {
+                Change removal = otherRemovedEntities.get(entityTypeName);
+                if (removal != null) {
+                    return removal;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isConflictingRemoval(List<Change> changes, Set<String> conflictingRemovals) {
+        if (changes != null) {
+            for (Change change : changes) {
+                if (isEntityRemoval(change) && conflictingRemovals.contains(getEntityTypeName(change))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEntityRemoval(Change change) {
+        MetadataVisitable element = change.getElement();
+        return change instanceof RemoveChange && element instanceof ComplexTypeMetadata
+                && ((ComplexTypeMetadata) element).isInstantiable() && ((ComplexTypeMetadata) element).getContainer() == null;
+    }
+
+    // Returns the name of the entity type that contains the changed element (null for a reusable type).
+    private static String getEntityTypeName(Change change) {
+        MetadataVisitable element = change instanceof ModifyChange ? ((ModifyChange) change).getCurrent() : change
+                .getElement();
+        if (element instanceof FieldMetadata) {
+            return ((FieldMetadata) element).getEntityTypeName();
+        } else if (element instanceof ComplexTypeMetadata) {
+            ComplexTypeMetadata entity = ((ComplexTypeMetadata) element).getEntity();
+            if (entity != null && entity.isInstantiable()) {
+                return entity.getName();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameChanges(List<Change> ourChanges, List<Change> theirChanges) {
+        if (ourChanges.size() != theirChanges.size()) {
+            return false;
+        }
+        for (int i = 0; i < ourChanges.size(); i++) {
+            if (!isSameChange(ourChanges.get(i), theirChanges.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameChange(Change ourChange, Change theirChange) {
+        if (!ourChange.getClass().equals(theirChange.getClass())) {
+            return false;
+        }
+        if (ourChange instanceof RemoveChange) {
+            return true;
+        }
+        MetadataVisitable ourElement = ourChange instanceof ModifyChange ? ((ModifyChange) ourChange).getCurrent() : ourChange
+                .getElement();
+        MetadataVisitable theirElement = theirChange instanceof ModifyChange ? ((ModifyChange) theirChange).getCurrent()
+                : theirChange.getElement();
+        if (ourElement instanceof FieldMetadata && theirElement instanceof FieldMetadata) {
+            return MetadataFingerprint.getFingerprint((FieldMetadata) ourElement) == MetadataFingerprint
+                    .getFingerprint((FieldMetadata) theirElement);
+        } else if (ourElement instanceof TypeMetadata && theirElement instanceof TypeMetadata) {
+            return MetadataFingerprint.getFingerprint((TypeMetadata) ourElement) == MetadataFingerprint
+                    .getFingerprint((TypeMetadata) theirElement);
+        }
+        return false;
+    }
+
+    /**
+     * Result of a {@link ThreeWayMerge#merge(MetadataRepository, MetadataRepository, MetadataRepository) merge}.
+     */
+    public static class MergeResult {
+
+        private final List<Change> mergedChanges = new ArrayList<Change>();
+
+        private final List<Conflict> conflicts = new ArrayList<Conflict>();
+
+        /**
+         * @return Changes (from base) that can be applied without conflict. Changes come from either <i>ours</i> or
+         * <i>theirs</i> side (for identical changes, change from <i>ours</i> side is returned).
+         */
+        public List<Change> getMergedChanges() {
+            return Collections.unmodifiableList(mergedChanges);
+        }
+
+        public List<Conflict> getConflicts() {
+            return Collections.unmodifiableList(conflicts);
+        }
+
+        public boolean hasConflicts() {
+            return !conflicts.isEmpty();
+        }
+    }
+
+    /**
+     * Incompatible changes on the same element.
+     */
+    public static class Conflict {
+
+        private final String path;
+
+        private final List<Change> ourChanges;
+
+        private final List<Change> theirChanges;
+
+        private Conflict(String path, List<Change> ourChanges, List<Change> theirChanges) {
+            this.path = path;
+            this.ourChanges = ourChanges == null ? Collections.<Change> emptyList() : Collections
+                    .unmodifiableList(ourChanges);
+            this.theirChanges = theirChanges == null ? Collections.<Change> emptyList() : Collections
+                    .unmodifiableList(theirChanges);
+        }
+
+        /**
+         * @return Path of the element in conflict (e.g. <code>field:Person/address/street</code>).
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The first of {@link #getOurChanges()}, or <code>null</code> if <i>ours</i> side did not change the
+         * element (i.e. <i>theirs</i> side changed an element of an entity type removed by <i>ours</i> side).
+         */
+        public Change getOurChange() {
+            return ourChanges.isEmpty() ? null : ourChanges.get(0);
+        }
+
+        /**
+         * @return The first of {@link #getTheirChanges()}, or <code>null</code> if <i>theirs</i> side did not change
+         * the element.
+         */
+        public Change getTheirChange() {
+            return theirChanges.isEmpty() ? null : theirChanges.get(0);
+        }
+
+        /**
+         * @return All changes of <i>ours</i> side on the element (or the removal of its entity type).
+         */
+        public List<Change> getOurChanges() {
+            return ourChanges;
+        }
+
+        /**
+         * @return All changes of <i>theirs</i> side on the element (or the removal of its entity type).
+         */
+        public List<Change> getTheirChanges() {
+            return theirChanges;
+        }
+
+        @Override
+        public String toString() {
+            return "Conflict {" + //$NON-NLS-1$
+                    "path='" + path + '\'' + //$NON-NLS-1$
+                    ", ours=" + toString(ourChanges) + //$NON-NLS-1$
+                    ", theirs=" + toString(theirChanges) + //$NON-NLS-1$
+                    '}';
+        }
+
+        private static String toString(List<Change> changes) {
+            List<String> names = new ArrayList<String>(changes.size());
+            for (Change change : changes) {
+                names.add(change.getClass().getSimpleName());
+            }
+            return names.toString();
+        }
+    }
+}
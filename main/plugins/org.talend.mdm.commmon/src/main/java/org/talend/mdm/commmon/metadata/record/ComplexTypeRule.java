@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
+
+/**
+ * Compiled form of a complex type: fields in document order (with their cardinality) and the rules for sub types that
+ * may be selected with <code>xsi:type</code>.
+ */
+class ComplexTypeRule {
+
+    final String typeName;
+
+    final FieldRule[] fields;
+
+    private final Map<String, Integer> fieldIndexes;
+
+    private final Map<String, ComplexTypeRule> subTypes = new HashMap<String, ComplexTypeRule>();
+
+    private ComplexTypeRule(ComplexTypeMetadata type) {
+        typeName = type.getName();
+        Collection<FieldMetadata> typeFields = type.getFields();
+        fields = new FieldRule[typeFields.size()];
+        fieldIndexes = new HashMap<String, Integer>(typeFields.size() * 2);
+        int i = 0;
+        for (FieldMetadata field : typeFields) {
+            fieldIndexes.put(field.getName(), i++);
+        }
+    }
+
+    /**
+     * Compiles <code>type</code> (and the types it contains).
+     */
+    static ComplexTypeRule compile(ComplexTypeMetadata type) {
+        return compile(type, new HashMap<ComplexTypeMetadata, ComplexTypeRule>());
+    }
+
+    // Compiled rules are shared by identity of types (also prevents infinite loops on recursive types).
+    private static ComplexTypeRule compile(ComplexTypeMetadata type, Map<ComplexTypeMetadata, ComplexTypeRule> compiled) {
+        ComplexTypeRule rule = compiled.get(type);
+        if (rule != null) {
+            return rule;
+        }
+        rule = new ComplexTypeRule(type);
+        compiled.put(type, rule);
+        List<FieldMetadata> typeFields = new ArrayList<FieldMetadata>(type.getFields());
+        for (int i = 0; i < rule.fields.length; i++) {
+            FieldMetadata field = typeFields.get(i);
+            ComplexTypeRule containedRule = null;
+            ValueRule valueRule = null;
+            if (field instanceof ContainedTypeFieldMetadata) {
+                containedRule = compile(((ContainedTypeFieldMetadata) field).getContainedType(), compiled);
+            } else if (!(field instanceof ReferenceFieldMetadata)) {
+                valueRule = new ValueRule(field.getType());
+            }
+            rule.fields[i] = new FieldRule(field.getName(), field.isMandatory(), field.isMany(), containedRule, valueRule);
+        }
+        List<ComplexTypeMetadata> subTypes = new ArrayList<ComplexTypeMetadata>(type.getSubTypes());
+        for (int i = 0; i < subTypes.size(); i++) {
+            ComplexTypeMetadata subType = subTypes.get(i);
+            rule.subTypes.put(subType.getName(), compile(subType, compiled));
+            subTypes.addAll(subType.getSubTypes());
+        }
+        return rule;
+    }
+
+    /**
+     * @return Index of field or <code>-1</code> if type has no field named <code>name</code>.
+     */
+    int getFieldIndex(String name) {
+        Integer index = fieldIndexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The rule for <code>xsi:type</code> value <code>typeName</code> (this rule if type name is the name of
+     * this type) or <code>null</code> if type is not this type nor one of its sub types.
+     */
+    ComplexTypeRule getSubType(String typeName) {
+        if (this.typeName.equals(typeName)) {
+            return this;
+        }
+        return subTypes.get(typeName);
+    }
+
+    static class FieldRule {
+
+        final String name;
+
+        final boolean isMandatory;
+
+        final boolean isMany;
+
+        // Not null for contained fields
+        final ComplexTypeRule containedRule;
+
+        // Not null for simple and enumeration fields
+        final ValueRule valueRule;
+
+        private FieldRule(String name, boolean isMandatory, boolean isMany, ComplexTypeRule containedRule, ValueRule valueRule) {
+            this.name = name;
+            this.isMandatory = isMandatory;
+            this.isMany = isMany;
+            this.containedRule = containedRule;
+            this.valueRule = valueRule;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.ContainedTypeFieldMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * <p>
+ * Applies default values to records of an entity type. {@link DefaultValueRule Default value rules} of all fields
+ * (including fields of contained types) are parsed once when evaluator is compiled, and a record is traversed once to
+ * apply all of them.
+ * </p>
+ * <p>
+ * A default value is applied when field element is missing or empty. A missing element is inserted at its position in
+ * type's field order, but only in existing parent elements (missing contained type elements are not created).
+ * </p>
+ * <p>
+ * A compiled evaluator is thread safe (records must not be shared between threads).
+ * </p>
+ */
+public class DefaultValueEvaluator {
+
+    private static final Logger LOGGER = Logger.getLogger(DefaultValueEvaluator.class);
+
+    private final ComplexTypeMetadata type;
+
+    private final RuleNode root;
+
+    private final List<DefaultValueRule> rules;
+
+    private DefaultValueEvaluator(ComplexTypeMetadata type) {
+        this.type = type;
+        List<DefaultValueRule> typeRules = new ArrayList<DefaultValueRule>();
+        root = compile(type, new HashSet<String>(), typeRules);
+        rules = Collections.unmodifiableList(typeRules);
+    }
+
+    /**
+     * @param type An entity type.
+     * @return An evaluator for default value rules of <code>type</code>. Rules that can not be parsed are logged and
+     * ignored.
+     */
+    public static DefaultValueEvaluator compile(ComplexTypeMetadata type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null.");
+        }
+        return new DefaultValueEvaluator(type);
+    }
+
+    // Path contains names of contained types being compiled (prevents infinite loops on recursive types).
+    private static RuleNode compile(ComplexTypeMetadata type, Set<String> path, List<DefaultValueRule> rules) {
+        RuleNode node = new RuleNode();
+        for (FieldMetadata field : type.getFields()) {
+            RuleNode child = null;
+            if (field instanceof ContainedTypeFieldMetadata) {
+                ComplexTypeMetadata containedType = ((ContainedTypeFieldMetadata) field).getContainedType();
+                if (path.add(containedType.getName())) {
+                    child = compile(containedType, path, rules);
+                    path.remove(containedType.getName());
+                    if (child.children.isEmpty()) {
+                        child = null;
+                    }
+                }
+            } else {
+                try {
+                    DefaultValueRule rule = DefaultValueRule.get(field);
+                    if (rule != null) {
+                        child = new RuleNode();
+                        child.rule = rule;
+                        rules.add(rule);
+                    }
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Ignore default value rule of field '" + field.getPath() + "': " + e.getMessage());
+                }
+            }
+            node.fieldIndexes.put(field.getName(), node.fieldIndexes.size());
+            if (child != null) {
+                child.name = field.getName();
+                child.fieldIndex = node.fieldIndexes.get(field.getName());
+                node.children.put(child.name, child);
+            }
+        }
+        return node;
+    }
+
+    public ComplexTypeMetadata getType() {
+        return type;
+    }
+
+    /**
+     * @return All default value rules of the type (in field order).
+     */
+    public List<DefaultValueRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return A map of field path to number of times its default value was applied (in field order).
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+        for (DefaultValueRule rule : rules) {
+            statistics.put(rule.getPath(), rule.getEvaluationCount());
+        }
+        return statistics;
+    }
+
+    public void resetStatistics() {
+        for (DefaultValueRule rule : rules) {
+            rule.resetEvaluationCount();
+        }
+    }
+
+    /**
+     * @param record The root element of a record.
+     * @return Number of default values applied to <code>record</code>.
+     */
+    public int apply(Element record) {
+        if (rules.isEmpty()) {
+            return 0;
+        }
+        return apply(record, root);
+    }
+
+    /**
+     * @param records Root elements of records.
+     * @return Number of default values applied to <code>records</code>.
+     */
+    public int applyAll(Iterable<Element> records) {
+        int count = 0;
+        if (!rules.isEmpty()) {
+            for (Element record : records) {
+                count += apply(record, root);
+            }
+        }
+        return count;
+    }
+
+    private static int apply(Element element, RuleNode node) {
+        int count = 0;
+        Set<String> found = null;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            RuleNode childNode = node.children.get(getName(child));
+            if (childNode == null) {
+                continue;
+            }
+            if (found == null) {
+                found = new HashSet<String>();
+            }
+            found.add(childNode.name);
+            if (childNode.rule != null) {
+                if (isEmpty(child)) {
+                    child.setTextContent(childNode.rule.evaluate());
+                    count++;
+                }
+            } else {
+                count += apply((Element) child, childNode);
+            }
+        }
+        for (RuleNode childNode : node.children.values()) {
+            if (childNode.rule != null && (found == null || !found.contains(childNode.name))) {
+                Element newElement = element.getOwnerDocument().createElement(childNode.name);
+                newElement.setTextContent(childNode.rule.evaluate());
+                element.insertBefore(newElement, getNextSibling(element, node, childNode.fieldIndex));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Returns the first child element of a field declared after field at fieldIndex (null to append).
+    private static Node getNextSibling(Element element, RuleNode node, int fieldIndex) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                Integer childIndex = node.fieldIndexes.get(getName(child));
+                if (childIndex != null && childIndex > fieldIndex) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String getName(Node node) {
+        return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+    }
+
+    private static boolean isEmpty(Node element) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            short nodeType = child.getNodeType();
+            if (nodeType == Node.ELEMENT_NODE) {
+                return false;
+            } else if ((nodeType == Node.TEXT_NODE || nodeType == Node.CDATA_SECTION_NODE)
+                    && !child.getNodeValue().trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A field with a default value rule (leaf) or a contained type field with rules in its fields.
+     */
+    private static class RuleNode {
+
+        private final Map<String, RuleNode> children = new LinkedHashMap<String, RuleNode>();
+
+        // Index of all field names of the type (used to insert missing elements at the right position).
+        private final Map<String, Integer> fieldIndexes = new HashMap<String, Integer>();
+
+        private String name;
+
+        private int fieldIndex;
+
+        private DefaultValueRule rule;
+    }
+}
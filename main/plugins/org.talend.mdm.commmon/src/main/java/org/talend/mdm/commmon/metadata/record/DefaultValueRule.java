@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+
+/**
+ * <p>
+ * A parsed default value rule (see {@link MetadataRepository#DEFAULT_VALUE_RULE}). Rules are XPath expressions made of
+ * string literals (<code>"value"</code>), numbers and function calls (<code>fn:true()</code>, <code>fn:false()</code>,
+ * <code>fn:concat(...)</code>). Functions are evaluated when rule is parsed, so evaluating a rule only returns a
+ * constant value.
+ * </p>
+ * <p>
+ * Numbers are XPath numbers (see {@link #isNumber(String)}) and their value is the XPath string value of the number
+ * (e.g. <code>7</code> for <code>007</code> and <code>1.5</code> for <code>1.50</code>).
+ * </p>
+ * <p>
+ * Each rule counts its evaluations (see {@link #getEvaluationCount()}).
+ * </p>
+ */
+public class DefaultValueRule {
+
+    // XPath number with an optional minus sign (no exponent).
+    private static final Pattern NUMBER = Pattern.compile("-?(\\d+(\\.\\d*)?|\\.\\d+)"); //$NON-NLS-1$
+
+    private final String path;
+
+    private final String rule;
+
+    private final String value;
+
+    private final AtomicLong evaluationCount = new AtomicLong();
+
+    private DefaultValueRule(String path, String rule, String value) {
+        this.path = path;
+        this.rule = rule;
+        this.value = value;
+    }
+
+    /**
+     * @param field A field.
+     * @return The parsed default value rule of <code>field</code> or <code>null</code> if field has no default value
+     * rule.
+     * @throws IllegalArgumentException If rule of <code>field</code> is not supported.
+     */
+    public static DefaultValueRule get(FieldMetadata field) {
+        String rule = field.getData(MetadataRepository.DEFAULT_VALUE_RULE);
+        if (rule == null || rule.trim().isEmpty()) {
+            return null;
+        }
+        return new DefaultValueRule(field.getPath(), rule, parse(rule));
+    }
+
+    /**
+     * @param rule A default value rule.
+     * @return The value of <code>rule</code>.
+     * @throws IllegalArgumentException If <code>rule</code> is not supported.
+     */
+    public static String parse(String rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("Rule cannot be null.");
+        }
+        Parser parser = new Parser(rule);
+        String value = parser.parseExpression();
+        parser.skipWhitespaces();
+        if (parser.position < rule.length()) {
+            throw parser.error("unexpected character '" + rule.charAt(parser.position) + "'");
+        }
+        return value;
+    }
+
+    /**
+     * @param text A text.
+     * @return <code>true</code> if <code>text</code> is a XPath number (digits with an optional decimal part, e.g.
+     * <code>12</code>, <code>1.50</code> or <code>.5</code>), optionally preceded by a minus sign. Exponents, type
+     * suffixes (<code>1L</code>) and hexadecimal numbers are not numbers.
+     */
+    public static boolean isNumber(String text) {
+        return text != null && NUMBER.matcher(text).matches();
+    }
+
+    /**
+     * @return Path of the field (in its entity type).
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The rule as declared in data model.
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * @return The default value (does not count as an evaluation).
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return The default value.
+     */
+    public String evaluate() {
+        evaluationCount.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * @return Number of calls to {@link #evaluate()}.
+     */
+    public long getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    public void resetEvaluationCount() {
+        evaluationCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultValueRule {path='" + path + "', rule='" + rule + "'}"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Recursive descent parser: expression := string | number | function '(' [expression (',' expression)*] ')'.
+     */
+    private static class Parser {
+
+        private final String rule;
+
+        private int position;
+
+        private Parser(String rule) {
+            this.rule = rule;
+        }
+
+        private String parseExpression() {
+            skipWhitespaces();
+            if (position >= rule.length()) {
+                throw error("expression expected");
+            }
+            char c = rule.charAt(position);
+            if (c == '"' || c == '\'') {
+                return parseString(c);
+            } else if (c == '-' || c == '.' || Character.isDigit(c)) {
+                return parseNumber();
+            } else {
+                return parseFunction();
+            }
+        }
+
+        // XPath string literal: quote is escaped by doubling it.
+        private String parseString(char quote) {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < rule.length()) {
+                char c = rule.charAt(position++);
+                if (c == quote) {
+                    if (position < rule.length() && rule.charAt(position) == quote) {
+                        position++;
+                    } else {
+                        return value.toString();
+                    }
+                }
+                value.append(c);
+            }
+            throw error("unterminated string");
+        }
+
+        private String parseNumber() {
+            int start = position;
+            if (rule.charAt(position) == '-') {
+                position++;
+            }
+            while (position < rule.length() && (Character.isDigit(rule.charAt(position)) || rule.charAt(position) == '.')) {
+                position++;
+            }
+            String number = rule.substring(start, position);
+            if (!isNumber(number)) {
+                throw error("invalid number '" + number + "'");
+            }
+            return toXPathString(Double.parseDouble(number));
+        }
+
+        // XPath string value of a number: no exponent, no trailing zeros and integers without decimal point.
+        private static String toXPathString(double number) {
+            if (Double.isInfinite(number)) {
+                return number > 0 ? "Infinity" : "-Infinity"; //$NON-NLS-1$ //$NON-NLS-2$
+            } else if (number == 0) { // Also true for negative zero
+                return "0"; //$NON-NLS-1$
+            }
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == ':' || c == '-';
+        }
+
+        private String parseFunction() {
+            int start = position;
+            while (position < rule.length() && isNameChar(rule.charAt(position))) {
+                position++;
+            }
+            String name = rule.substring(start, position);
+            if (name.isEmpty()) {
+                throw error("unexpected character '" + rule.charAt(position) + "'");
+            }
+            skipWhitespaces();
+            if (position >= rule.length() || rule.charAt(position) != '(') {
+                throw error("'(' expected after '" + name + "'");
+            }
+            position++;
+            List<String> arguments = new ArrayList<String>();
+            skipWhitespaces();
+            if (position < rule.length() && rule.charAt(position) == ')') {
+                position++;
+            } else {
+                while (true) {
+                    arguments.add(parseExpression());
+                    skipWhitespaces();
+                    if (position >= rule.length()) {
+                        throw error("')' expected");
+                    }
+                    char c = rule.charAt(position++);
+                    if (c == ')') {
+                        break;
+                    } else if (c != ',') {
+                        throw error("',' or ')' expected");
+                    }
+                }
+            }
+            return evaluate(name, arguments);
+        }
+
+        // All arguments are constant: functions are evaluated at parse time (names are case insensitive like in
+        // DefaultValueRuleProcessor).
+        private String evaluate(String name, List<String> arguments) {
+            String localName = name.toLowerCase();
+            if (localName.startsWith("fn:")) { //$NON-NLS-1$
+                localName = localName.substring(3);
+            }
+            if ("true".equals(localName) && arguments.isEmpty()) { //$NON-NLS-1$
+                return Boolean.TRUE.toString();
+            } else if ("false".equals(localName) && arguments.isEmpty()) { //$NON-NLS-1$
+                return Boolean.FALSE.toString();
+            } else if ("concat".equals(localName)) { //$NON-NLS-1$
+                StringBuilder value = new StringBuilder();
+                for (String argument : arguments) {
+                    value.append(argument);
+                }
+                return value.toString();
+            } else if ("string".equals(localName) && arguments.size() == 1) { //$NON-NLS-1$
+                return arguments.get(0);
+            }
+            throw error("function '" + name + "' with " + arguments.size() + " argument(s) is not supported");
+        }
+
+        private void skipWhitespaces() {
+            while (position < rule.length() && Character.isWhitespace(rule.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Default value rule '" + rule + "' is invalid (" + message + " at position "
+                    + position + ").");
+        }
+    }
+}
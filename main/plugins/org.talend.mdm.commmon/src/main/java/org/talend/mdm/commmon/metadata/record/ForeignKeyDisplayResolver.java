@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+
+/**
+ * <p>
+ * Resolves display values of many foreign key values of the same foreign key field: distinct foreign key values are
+ * fetched from a {@link RecordSource} in batches (one request per batch instead of one request per foreign key value),
+ * then formatted with a {@link ForeignKeyInfoFormatter}.
+ * </p>
+ * <p>
+ * A resolver is thread safe if its {@link RecordSource} is.
+ * </p>
+ */
+public class ForeignKeyDisplayResolver {
+
+    private final ForeignKeyInfoFormatter formatter;
+
+    private final RecordSource source;
+
+    private final int batchSize;
+
+    /**
+     * @param formatter The formatter for display values.
+     * @param source The source of referenced records.
+     */
+    public ForeignKeyDisplayResolver(ForeignKeyInfoFormatter formatter, RecordSource source) {
+        this(formatter, source, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param formatter The formatter for display values.
+     * @param source The source of referenced records.
+     * @param batchSize Maximum number of foreign key values in a request to <code>source</code>.
+     */
+    public ForeignKeyDisplayResolver(ForeignKeyInfoFormatter formatter, RecordSource source, int batchSize) {
+        if (formatter == null) {
+            throw new IllegalArgumentException("Formatter cannot be null.");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("Record source cannot be null.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than 0.");
+        }
+        this.formatter = formatter;
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+
+    public ForeignKeyInfoFormatter getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * @param foreignKeys Foreign key values (e.g. <code>[id]</code>), duplicates and <code>null</code> values are
+     * allowed.
+     * @return A map of each distinct foreign key value to its display value (in order of first occurrence in
+     * <code>foreignKeys</code>). Display value of a foreign key with no referenced record is the foreign key value.
+     */
+    public Map<String, String> resolve(Collection<String> foreignKeys) {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (String foreignKey : foreignKeys) {
+            if (foreignKey != null && !foreignKey.isEmpty()) {
+                keys.add(foreignKey);
+            }
+        }
+        Map<String, String> displayValues = new LinkedHashMap<String, String>(keys.size() * 2);
+        if (keys.isEmpty()) {
+            return displayValues;
+        }
+        List<String> paths = formatter.getPaths();
+        if (paths.isEmpty()) { // No foreign key info: no need to read referenced records
+            for (String key : keys) {
+                displayValues.put(key, key);
+            }
+            return displayValues;
+        }
+        ComplexTypeMetadata referencedType = formatter.getReferencedType();
+        List<String> batch = new ArrayList<String>(Math.min(keys.size(), batchSize));
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == batchSize) {
+                resolveBatch(referencedType, batch, paths, displayValues);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            resolveBatch(referencedType, batch, paths, displayValues);
+        }
+        return displayValues;
+    }
+
+    private void resolveBatch(ComplexTypeMetadata referencedType, List<String> keys, List<String> paths,
+            Map<String, String> displayValues) {
+        Map<String, String[]> records = source.getValues(referencedType, Collections.unmodifiableList(keys), paths);
+        for (String key : keys) {
+            displayValues.put(key, formatter.format(key, records == null ? null : records.get(key)));
+        }
+    }
+
+    /**
+     * A source of records for {@link ForeignKeyDisplayResolver} (e.g. a storage query with a <code>IN</code> condition
+     * on key).
+     */
+    public interface RecordSource {
+
+        /**
+         * @param type The referenced entity type.
+         * @param keys Distinct foreign key values (e.g. <code>[id]</code>).
+         * @param paths Paths of the values to return (in <code>type</code>).
+         * @return A map of foreign key value to record values (one value per path, in <code>paths</code> order,
+         * <code>null</code> for no value). Keys with no record may be absent from map.
+         */
+        Map<String, String[]> getValues(ComplexTypeMetadata type, List<String> keys, List<String> paths);
+    }
+}
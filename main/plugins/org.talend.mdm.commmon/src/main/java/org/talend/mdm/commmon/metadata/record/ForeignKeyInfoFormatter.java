@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+import org.talend.mdm.commmon.metadata.ReferenceFieldMetadata;
+
+/**
+ * <p>
+ * Formats the display value of a foreign key from the values of its foreign key info fields. The foreign key info
+ * format (e.g. <code>Product/Name + " (" + Product/Price + ")"</code>: paths in the referenced type and quoted
+ * literals joined by <code>+</code>) is parsed and its paths resolved once when formatter is compiled.
+ * </p>
+ * <p>
+ * Without format, foreign key info values are joined with <code>-</code> (empty values are skipped). When a foreign
+ * key has no info or all info values are empty, the display value is the foreign key value itself.
+ * </p>
+ * <p>
+ * A compiled formatter is immutable and thread safe.
+ * </p>
+ *
+ * @see ForeignKeyDisplayResolver
+ */
+public class ForeignKeyInfoFormatter {
+
+    private static final String DEFAULT_SEPARATOR = "-"; //$NON-NLS-1$
+
+    private final ReferenceFieldMetadata field;
+
+    private final List<FieldMetadata> infoFields;
+
+    private final List<String> paths;
+
+    // Format segments: a literal (slot is -1) or the value at index slot in info values.
+    private final String[] literals;
+
+    private final int[] slots;
+
+    // No format: non empty values are joined with DEFAULT_SEPARATOR.
+    private final boolean joinValues;
+
+    private ForeignKeyInfoFormatter(ReferenceFieldMetadata field, List<FieldMetadata> infoFields, String[] literals,
+            int[] slots, boolean joinValues) {
+        this.field = field;
+        this.joinValues = joinValues;
+        this.infoFields = infoFields;
+        this.literals = literals;
+        this.slots = slots;
+        List<String> infoPaths = new ArrayList<String>(infoFields.size());
+        for (FieldMetadata infoField : infoFields) {
+            infoPaths.add(infoField.getPath());
+        }
+        paths = Collections.unmodifiableList(infoPaths);
+    }
+
+    /**
+     * @param field A foreign key field.
+     * @return A formatter for display values of <code>field</code>.
+     * @throws IllegalArgumentException If foreign key info format of <code>field</code> is invalid or uses a path that
+     * does not exist in referenced type.
+     */
+    public static ForeignKeyInfoFormatter compile(ReferenceFieldMetadata field) {
+        if (field == null) {
+            throw new IllegalArgumentException("Field cannot be null.");
+        }
+        List<FieldMetadata> infoFields = new ArrayList<FieldMetadata>(field.getForeignKeyInfoFields());
+        String format = field.getForeignKeyInfoFormat();
+        if (StringUtils.isBlank(format)) {
+            String[] literals = new String[infoFields.size()];
+            int[] slots = new int[infoFields.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = i;
+            }
+            return new ForeignKeyInfoFormatter(field, infoFields, literals, slots, true);
+        }
+        List<String> tokens = tokenize(format);
+        String[] literals = new String[tokens.size()];
+        int[] slots = new int[tokens.size()];
+        for (int i = 0; i < slots.length; i++) {
+            String token = tokens.get(i);
+            char first = token.charAt(0);
+            if (first == '"' || first == '\'') {
+                literals[i] = token.substring(1, token.length() - 1);
+                slots[i] = -1;
+            } else {
+                FieldMetadata infoField = resolve(field, token);
+                int slot = infoFields.indexOf(infoField);
+                if (slot < 0) { // Format may use fields that are not declared as foreign key info
+                    slot = infoFields.size();
+                    infoFields.add(infoField);
+                }
+                slots[i] = slot;
+            }
+        }
+        return new ForeignKeyInfoFormatter(field, infoFields, literals, slots, false);
+    }
+
+    // Splits format on '+' characters that are not in a quoted literal (tokens are trimmed and not empty).
+    private static List<String> tokenize(String format) {
+        List<String> tokens = new ArrayList<String>();
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i <= format.length(); i++) {
+            char c = i < format.length() ? format.charAt(i) : '+';
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (i == format.length()) {
+                    throw new IllegalArgumentException("Foreign key info format '" + format
+                            + "' has an unterminated literal.");
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '+') {
+                String token = format.substring(start, i).trim();
+                if (token.isEmpty()) {
+                    throw new IllegalArgumentException("Foreign key info format '" + format + "' has an empty term.");
+                }
+                char first = token.charAt(0);
+                if ((first == '"' || first == '\'') && (token.length() < 2 || token.charAt(token.length() - 1) != first)) {
+                    throw new IllegalArgumentException("Foreign key info format '" + format + "' has an invalid term '"
+                            + token + "'.");
+                }
+                tokens.add(token);
+                start = i + 1;
+            }
+        }
+        return tokens;
+    }
+
+    private static FieldMetadata resolve(ReferenceFieldMetadata field, String path) {
+        ComplexTypeMetadata referencedType = field.getReferencedType();
+        String fieldPath = path;
+        if (fieldPath.startsWith(referencedType.getName() + '/')) {
+            fieldPath = fieldPath.substring(referencedType.getName().length() + 1);
+        }
+        if (!referencedType.hasField(fieldPath)) {
+            throw new IllegalArgumentException("Path '" + path + "' in foreign key info format of '" + field.getPath()
+                    + "' does not exist in type '" + referencedType.getName() + "'.");
+        }
+        return referencedType.getField(fieldPath);
+    }
+
+    public ReferenceFieldMetadata getField() {
+        return field;
+    }
+
+    public ComplexTypeMetadata getReferencedType() {
+        return field.getReferencedType();
+    }
+
+    /**
+     * @return Paths (in referenced type) of the values needed to format a display value: foreign key info fields
+     * followed by other fields used in format.
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return Fields of the paths returned by {@link #getPaths()}.
+     */
+    public List<FieldMetadata> getFields() {
+        return Collections.unmodifiableList(infoFields);
+    }
+
+    /**
+     * @param foreignKey A foreign key value (e.g. <code>[id]</code>).
+     * @param values Values of referenced record for {@link #getPaths()} (in same order), <code>null</code> if
+     * referenced record is unknown.
+     * @return The display value of <code>foreignKey</code>.
+     */
+    public String format(String foreignKey, String[] values) {
+        if (values == null || slots.length == 0) {
+            return foreignKey;
+        }
+        StringBuilder builder = new StringBuilder();
+        boolean hasValue = false;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (slot < 0) {
+                builder.append(literals[i]);
+            } else {
+                String value = slot < values.length ? values[slot] : null;
+                if (value != null && !value.isEmpty()) {
+                    if (joinValues && hasValue) {
+                        builder.append(DEFAULT_SEPARATOR);
+                    }
+                    builder.append(value);
+                    hasValue = true;
+                }
+            }
+        }
+        return hasValue ? builder.toString() : foreignKey;
+    }
+}
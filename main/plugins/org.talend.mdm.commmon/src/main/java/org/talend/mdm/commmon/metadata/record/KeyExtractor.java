@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.FieldMetadata;
+
+/**
+ * <p>
+ * Extracts primary key of records without building a DOM: the extractor is compiled from the key fields of an entity
+ * type and reads a record (UTF-8 bytes or StAX stream) only until all key values are found.
+ * </p>
+ * <p>
+ * Key is returned in the <code>[id0][id1]...</code> format (one bracketed value per key field in key field order, see
+ * {@link org.talend.mdm.commmon.metadata.CompoundFieldMetadata}), a single key is returned as <code>[id]</code>.
+ * </p>
+ * <p>
+ * A compiled extractor is immutable and thread safe. Byte scanning expects UTF-8 encoded records and supports
+ * elements, attributes, comments, processing instructions, CDATA sections, predefined and character entities (no DTD
+ * defined entities).
+ * </p>
+ */
+public class KeyExtractor {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private final ComplexTypeMetadata type;
+
+    private final Node root;
+
+    private final int keyCount;
+
+    private final int maxDepth;
+
+    private KeyExtractor(ComplexTypeMetadata type, Collection<FieldMetadata> keyFields) {
+        this.type = type;
+        root = new Node(null);
+        int index = 0;
+        int depth = 0;
+        for (FieldMetadata keyField : keyFields) {
+            String[] path = keyField.getPath().split("/"); //$NON-NLS-1$
+            Node current = root;
+            for (String element : path) {
+                current = current.getOrAddChild(element);
+            }
+            current.keyIndex = index++;
+            depth = Math.max(depth, path.length);
+        }
+        keyCount = index;
+        maxDepth = depth + 1; // Includes record root element
+    }
+
+    /**
+     * @param type An entity type with key fields.
+     * @return A key extractor for records of <code>type</code>.
+     */
+    public static KeyExtractor compile(ComplexTypeMetadata type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null.");
+        }
+        Collection<FieldMetadata> keyFields = type.getKeyFields();
+        if (keyFields.isEmpty()) {
+            throw new IllegalArgumentException("Type '" + type.getName() + "' has no key field.");
+        }
+        return new KeyExtractor(type, keyFields);
+    }
+
+    public ComplexTypeMetadata getType() {
+        return type;
+    }
+
+    /**
+     * @param record A UTF-8 encoded record.
+     * @return The key of the record or <code>null</code> if record does not contain a value for all key fields.
+     */
+    public String extract(byte[] record) {
+        return extract(record, 0, record.length);
+    }
+
+    /**
+     * @param record A buffer that contains a UTF-8 encoded record.
+     * @param offset Start of record in <code>record</code>.
+     * @param length Length of record in <code>record</code>.
+     * @return The key of the record or <code>null</code> if record does not contain a value for all key fields.
+     */
+    public String extract(byte[] record, int offset, int length) {
+        Scan scan = new Scan();
+        return scan.scan(record, offset, offset + length) ? scan.key.toString() : null;
+    }
+
+    /**
+     * Reads <code>reader</code> until all key values are found: reader is left positioned on the end element of the
+     * last key field read (or at the end of the record if a key is missing).
+     *
+     * @param reader A StAX reader positioned before (or on) the record root element.
+     * @return The key of the record or <code>null</code> if record does not contain a value for all key fields.
+     * @throws XMLStreamException In case of XML parsing error.
+     */
+    public String extract(XMLStreamReader reader) throws XMLStreamException {
+        Scan scan = new Scan();
+        return scan.scan(reader) ? scan.key.toString() : null;
+    }
+
+    /**
+     * Extracts keys of all <code>records</code>: state used for extraction is allocated once for all records and
+     * keys are passed to <code>consumer</code> as a reused buffer (no String allocated per key).
+     *
+     * @param records UTF-8 encoded records.
+     * @param consumer Receives keys (<code>null</code> key if a record does not contain all key values).
+     * @return Number of records processed.
+     */
+    public int extractAll(Iterator<byte[]> records, KeyConsumer consumer) {
+        Scan scan = new Scan();
+        int index = 0;
+        while (records.hasNext()) {
+            byte[] record = records.next();
+            boolean found = scan.scan(record, 0, record.length);
+            if (!consumer.accept(index++, found ? scan.key : null)) {
+                break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Receives keys extracted by {@link KeyExtractor#extractAll(Iterator, KeyConsumer)}.
+     */
+    public interface KeyConsumer {
+
+        /**
+         * @param recordIndex Index of the record in the batch.
+         * @param key The record key (only valid during the call, copy it with <code>toString()</code> to keep it), or
+         * <code>null</code> if record does not contain all key values.
+         * @return <code>true</code> to continue extraction, <code>false</code> to stop.
+         */
+        boolean accept(int recordIndex, CharSequence key);
+    }
+
+    /**
+     * A node in the tree of key field paths (root node stands for the record root element).
+     */
+    private static class Node {
+
+        private final String name;
+
+        private final byte[] encodedName;
+
+        private final List<Node> children = new ArrayList<Node>();
+
+        private int keyIndex = -1;
+
+        private Node(String name) {
+            this.name = name;
+            this.encodedName = name == null ? null : name.getBytes(UTF_8);
+        }
+
+        private Node getOrAddChild(String childName) {
+            Node child = getChild(childName);
+            if (child == null) {
+                child = new Node(childName);
+                children.add(child);
+            }
+            return child;
+        }
+
+        private Node getChild(String childName) {
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
+                if (child.name.equals(childName)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        // Element name is in bytes [start, end[ (prefix excluded).
+        private Node getChild(byte[] bytes, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
+                byte[] childName = child.encodedName;
+                if (childName.length == length) {
+                    int j = 0;
+                    while (j < length && childName[j] == bytes[start + j]) {
+                        j++;
+                    }
+                    if (j == length) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Extraction state (reused across records by batch extraction).
+     */
+    private class Scan {
+
+        private final StringBuilder[] values = new StringBuilder[keyCount];
+
+        private final boolean[] found = new boolean[keyCount];
+
+        // Path nodes of the current element (null when element is not on a key path).
+        private final Node[] nodes = new Node[maxDepth + 1];
+
+        private final StringBuilder key = new StringBuilder();
+
+        private int foundCount;
+
+        private int depth;
+
+        private Scan() {
+            for (int i = 0; i < keyCount; i++) {
+                values[i] = new StringBuilder();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < keyCount; i++) {
+                values[i].setLength(0);
+                found[i] = false;
+            }
+            foundCount = 0;
+            depth = 0;
+            key.setLength(0);
+        }
+
+        // Returns the key node being read (element is a key field) or null.
+        private Node currentKey() {
+            if (depth == 0 || depth > maxDepth) {
+                return null;
+            }
+            Node node = nodes[depth - 1];
+            return node != null && node.keyIndex >= 0 && !found[node.keyIndex] ? node : null;
+        }
+
+        private void startElement(Node node) {
+            if (depth < nodes.length) {
+                nodes[depth] = node;
+            }
+            depth++;
+        }
+
+        // Returns true if all keys are found.
+        private boolean endElement() {
+            Node node = currentKey();
+            depth--;
+            if (node != null) {
+                found[node.keyIndex] = true;
+                foundCount++;
+                if (foundCount == keyCount) {
+                    key.setLength(0);
+                    for (StringBuilder value : values) {
+                        key.append('[').append(value).append(']');
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Node getChild(String name) {
+            if (depth == 0) {
+                return root;
+            }
+            Node parent = depth <= maxDepth ? nodes[depth - 1] : null;
+            return parent == null ? null : parent.getChild(name);
+        }
+
+        private boolean scan(XMLStreamReader reader) throws XMLStreamException {
+            reset();
+            int event = reader.getEventType();
+            while (true) {
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement(getChild(reader.getLocalName()));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    Node node = currentKey();
+                    if (node != null) {
+                        values[node.keyIndex].append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (endElement()) {
+                        return true;
+                    }
+                    if (depth == 0) {
+                        return false; // End of record
+                    }
+                    break;
+                default:
+                    break;
+                }
+                if (!reader.hasNext()) {
+                    return false;
+                }
+                event = reader.next();
+            }
+        }
+
+        private boolean scan(byte[] bytes, int start, int end) {
+            reset();
+            int i = start;
+            while (i < end) {
+                if (bytes[i] != '<') {
+                    int textEnd = indexOf(bytes, (byte) '<', i, end);
+                    Node node = currentKey();
+                    if (node != null) {
+                        decode(bytes, i, textEnd, values[node.keyIndex], true);
+                    }
+                    i = textEnd;
+                    continue;
+                }
+                if (i + 1 >= end) {
+                    return false;
+                }
+                byte next = bytes[i + 1];
+                if (next == '/') { // End tag
+                    i = indexOf(bytes, (byte) '>', i, end) + 1;
+                    if (endElement()) {
+                        return true;
+                    }
+                    if (depth == 0) {
+                        return false; // End of record
+                    }
+                } else if (next == '?') { // Processing instruction (or XML declaration)
+                    i = indexOf(bytes, "?>", i + 2, end) + 2;
+                } else if (next == '!') {
+                    if (startsWith(bytes, "<!--", i, end)) {
+                        i = indexOf(bytes, "-->", i + 4, end) + 3;
+                    } else if (startsWith(bytes, "<![CDATA[", i, end)) {
+                        int contentEnd = indexOf(bytes, "]]>", i + 9, end);
+                        Node node = currentKey();
+                        if (node != null) {
+                            decode(bytes, i + 9, contentEnd, values[node.keyIndex], false);
+                        }
+                        i = contentEnd + 3;
+                    } else {
+                        i = indexOf(bytes, (byte) '>', i, end) + 1; // DOCTYPE
+                    }
+                } else { // Start tag
+                    int nameStart = i + 1;
+                    int nameEnd = nameStart;
+                    int localNameStart = nameStart;
+                    while (nameEnd < end && !isNameEnd(bytes[nameEnd])) {
+                        if (bytes[nameEnd] == ':') {
+                            localNameStart = nameEnd + 1;
+                        }
+                        nameEnd++;
+                    }
+                    int tagEnd = skipAttributes(bytes, nameEnd, end);
+                    Node node;
+                    if (depth == 0) {
+                        node = root;
+                    } else {
+                        Node parent = depth <= maxDepth ? nodes[depth - 1] : null;
+                        node = parent == null ? null : parent.getChild(bytes, localNameStart, nameEnd);
+                    }
+                    startElement(node);
+                    if (tagEnd > start && bytes[tagEnd - 1] == '/') { // Empty element
+                        if (endElement()) {
+                            return true;
+                        }
+                        if (depth == 0) {
+                            return false;
+                        }
+                    }
+                    i = tagEnd + 1;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    // Returns index of the '>' that ends the tag (skips quoted attribute values).
+    private static int skipAttributes(byte[] bytes, int start, int end) {
+        int i = start;
+        byte quote = 0;
+        while (i < end) {
+            byte b = bytes[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+            i++;
+        }
+        return end;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    // Only used with ASCII patterns.
+    private static int indexOf(byte[] bytes, String pattern, int start, int end) {
+        int last = end - pattern.length();
+        for (int i = start; i <= last; i++) {
+            if (startsWith(bytes, pattern, i, end)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static boolean startsWith(byte[] bytes, String pattern, int start, int end) {
+        if (end - start < pattern.length()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if (bytes[start + i] != pattern.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Decodes UTF-8 bytes [start, end[ to output (resolves entity references if resolveEntities is true).
+    private static void decode(byte[] bytes, int start, int end, StringBuilder output, boolean resolveEntities) {
+        int i = start;
+        while (i < end) {
+            int b = bytes[i] & 0xFF;
+            if (b == '&' && resolveEntities) {
+                int entityEnd = indexOf(bytes, (byte) ';', i + 1, end);
+                appendEntity(bytes, i + 1, entityEnd, output);
+                i = entityEnd + 1;
+            } else if (b < 0x80) {
+                output.append((char) b);
+                i++;
+            } else {
+                int length = b < 0xE0 ? 2 : (b < 0xF0 ? 3 : 4);
+                if (i + length > end) {
+                    output.append('\uFFFD'); // Truncated sequence
+                    return;
+                }
+                int codePoint = b & (0xFF >> (length + 1));
+                for (int j = 1; j < length; j++) {
+                    codePoint = (codePoint << 6) | (bytes[i + j] & 0x3F);
+                }
+                output.appendCodePoint(codePoint);
+                i += length;
+            }
+        }
+    }
+
+    private static void appendEntity(byte[] bytes, int start, int end, StringBuilder output) {
+        if (startsWith(bytes, "amp", start, end) && end - start == 3) { //$NON-NLS-1$
+            output.append('&');
+        } else if (startsWith(bytes, "lt", start, end) && end - start == 2) { //$NON-NLS-1$
+            output.append('<');
+        } else if (startsWith(bytes, "gt", start, end) && end - start == 2) { //$NON-NLS-1$
+            output.append('>');
+        } else if (startsWith(bytes, "quot", start, end) && end - start == 4) { //$NON-NLS-1$
+            output.append('"');
+        } else if (startsWith(bytes, "apos", start, end) && end - start == 4) { //$NON-NLS-1$
+            output.append('\'');
+        } else if (end - start > 1 && bytes[start] == '#') {
+            int codePoint = 0;
+            boolean isHex = bytes[start + 1] == 'x';
+            for (int i = start + (isHex ? 2 : 1); i < end; i++) {
+                int digit = Character.digit((char) bytes[i], isHex ? 16 : 10);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Invalid character reference in record.");
+                }
+                codePoint = codePoint * (isHex ? 16 : 10) + digit;
+            }
+            output.appendCodePoint(codePoint);
+        } else {
+            throw new IllegalArgumentException("Unsupported entity reference in record: '"
+                    + new String(bytes, start, end - start, UTF_8) + "'.");
+        }
+    }
+}
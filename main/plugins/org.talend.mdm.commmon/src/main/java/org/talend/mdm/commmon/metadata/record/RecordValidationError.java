@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+/**
+ * An error found in a record by a {@link RecordValidator}.
+ */
+public class RecordValidationError {
+
+    private final String path;
+
+    private final String message;
+
+    private final int lineNumber;
+
+    private final int columnNumber;
+
+    RecordValidationError(String path, String message, int lineNumber, int columnNumber) {
+        this.path = path;
+        this.message = message;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * @return Path of the element in error (e.g. <code>Person/address/street</code>).
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return Line number in record document or <code>-1</code> if not available.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return Column number in record document or <code>-1</code> if not available.
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + message + " (line: " + lineNumber + " / column: " + columnNumber + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
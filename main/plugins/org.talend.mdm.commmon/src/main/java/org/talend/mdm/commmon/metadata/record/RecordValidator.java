@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+
+/**
+ * <p>
+ * Validates XML records of an entity type in a single streaming pass (StAX events, no DOM). The validator is compiled
+ * once from a frozen {@link ComplexTypeMetadata} and checks:
+ * <ul>
+ * <li>Element order (fields must appear in type declaration order) and unknown elements.</li>
+ * <li>Cardinality ({@link org.talend.mdm.commmon.metadata.FieldMetadata#isMandatory() mandatory} and
+ * {@link org.talend.mdm.commmon.metadata.FieldMetadata#isMany() many} fields).</li>
+ * <li>Max length, total digits, fraction digits and enumeration facets, and format of numbers and booleans.</li>
+ * <li><code>xsi:type</code> values (must be the declared type or one of its sub types).</li>
+ * </ul>
+ * </p>
+ * <p>
+ * A compiled validator is immutable and thread safe. Use {@link RecordValidatorCache} to share validators per entity
+ * type.
+ * </p>
+ */
+public class RecordValidator {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final ComplexTypeMetadata type;
+
+    private final ComplexTypeRule rule;
+
+    private RecordValidator(ComplexTypeMetadata type) {
+        this.type = type;
+        this.rule = ComplexTypeRule.compile(type);
+    }
+
+    /**
+     * @param type A frozen entity type.
+     * @return A validator for records of <code>type</code>.
+     */
+    public static RecordValidator compile(ComplexTypeMetadata type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null.");
+        }
+        if (!type.isFrozen()) {
+            throw new IllegalStateException("Type '" + type.getName() + "' must be frozen before compiling a validator.");
+        }
+        return new RecordValidator(type);
+    }
+
+    /**
+     * @return The type this validator was compiled from.
+     */
+    public ComplexTypeMetadata getType() {
+        return type;
+    }
+
+    /**
+     * @param record A stream that contains a record (stream is not closed).
+     * @return Errors found in record (empty list if record is valid).
+     * @throws XMLStreamException If <code>record</code> is not well formed XML.
+     */
+    public List<RecordValidationError> validate(InputStream record) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(record);
+        try {
+            return validate(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Validates the next element read from <code>reader</code> (reader is positioned after the end of this element
+     * when method returns).
+     *
+     * @param reader A StAX reader positioned before (or on) the record root element.
+     * @return Errors found in record (empty list if record is valid).
+     * @throws XMLStreamException If <code>record</code> is not well formed XML.
+     */
+    public List<RecordValidationError> validate(XMLStreamReader reader) throws XMLStreamException {
+        List<RecordValidationError> errors = new ArrayList<RecordValidationError>();
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                errors.add(error(reader, type.getName(), "Record has no root element.")); //$NON-NLS-1$
+                return errors;
+            }
+            reader.next();
+        }
+        String rootName = reader.getLocalName();
+        if (!rule.typeName.equals(rootName)) {
+            errors.add(error(reader, rootName, "Root element should be '" + rule.typeName + "'.")); //$NON-NLS-1$ //$NON-NLS-2$
+            skipElement(reader);
+            return errors;
+        }
+        ComplexTypeRule rootRule = resolveType(reader, rule, rootName, errors);
+        validateComplex(reader, rootRule, rootName, errors);
+        return errors;
+    }
+
+    // Reader is on the start element of the complex element, returns when reader is on its end element.
+    private static void validateComplex(XMLStreamReader reader, ComplexTypeRule rule, String path,
+            List<RecordValidationError> errors) throws XMLStreamException {
+        int[] counts = new int[rule.fields.length];
+        int position = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                checkMissingFields(reader, rule, counts, position, rule.fields.length, path, errors);
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            String fieldPath = path + '/' + name;
+            int index = rule.getFieldIndex(name);
+            if (index < 0) {
+                errors.add(error(reader, fieldPath, "Element is not declared in type '" + rule.typeName + "'.")); //$NON-NLS-1$ //$NON-NLS-2$
+                skipElement(reader);
+                continue;
+            }
+            ComplexTypeRule.FieldRule field = rule.fields[index];
+            if (index < position) {
+                errors.add(error(reader, fieldPath, "Element is not in expected order.")); //$NON-NLS-1$
+            } else {
+                checkMissingFields(reader, rule, counts, position, index, path, errors);
+                position = index;
+            }
+            counts[index]++;
+            if (counts[index] > 1 && !field.isMany) {
+                errors.add(error(reader, fieldPath, "Element can not occur more than once.")); //$NON-NLS-1$
+            }
+            if (field.containedRule != null) {
+                ComplexTypeRule containedRule = resolveType(reader, field.containedRule, fieldPath, errors);
+                validateComplex(reader, containedRule, fieldPath, errors);
+            } else {
+                validateSimple(reader, field, fieldPath, errors);
+            }
+        }
+    }
+
+    // Reader is on the start element of the simple element, returns when reader is on its end element.
+    private static void validateSimple(XMLStreamReader reader, ComplexTypeRule.FieldRule field, String path,
+            List<RecordValidationError> errors) throws XMLStreamException {
+        Location location = reader.getLocation();
+        StringBuilder value = null;
+        String text = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                if (text == null) {
+                    text = reader.getText();
+                } else {
+                    if (value == null) {
+                        value = new StringBuilder(text);
+                    }
+                    value.append(reader.getText());
+                }
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                errors.add(error(reader, path + '/' + reader.getLocalName(), "Element '" + field.name //$NON-NLS-1$
+                        + "' can not contain elements.")); //$NON-NLS-1$
+                skipElement(reader);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        String fieldValue = value != null ? value.toString() : text;
+        if (fieldValue == null || fieldValue.trim().isEmpty()) {
+            if (field.isMandatory) {
+                errors.add(error(location, path, "Mandatory element has no value.")); //$NON-NLS-1$
+            }
+            return;
+        }
+        if (field.valueRule != null) {
+            String message = field.valueRule.check(fieldValue);
+            if (message != null) {
+                errors.add(error(location, path, message));
+            }
+        }
+    }
+
+    private static void checkMissingFields(XMLStreamReader reader, ComplexTypeRule rule, int[] counts, int from, int to,
+            String path, List<RecordValidationError> errors) {
+        for (int i = from; i < to; i++) {
+            if (counts[i] == 0 && rule.fields[i].isMandatory) {
+                errors.add(error(reader, path + '/' + rule.fields[i].name, "Mandatory element is missing.")); //$NON-NLS-1$
+            }
+        }
+    }
+
+    // Returns rule to use for element (declared type or type selected with xsi:type).
+    private static ComplexTypeRule resolveType(XMLStreamReader reader, ComplexTypeRule declaredRule, String path,
+            List<RecordValidationError> errors) {
+        String xsiType = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type"); //$NON-NLS-1$
+        if (xsiType == null) {
+            return declaredRule;
+        }
+        String typeName = xsiType.substring(xsiType.indexOf(':') + 1);
+        ComplexTypeRule subTypeRule = declaredRule.getSubType(typeName);
+        if (subTypeRule == null) {
+            errors.add(error(reader, path, "Type '" + typeName + "' is not a sub type of '" + declaredRule.typeName + "'.")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return declaredRule;
+        }
+        return subTypeRule;
+    }
+
+    // Reader is on a start element, returns when reader is on the matching end element.
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static RecordValidationError error(XMLStreamReader reader, String path, String message) {
+        return error(reader.getLocation(), path, message);
+    }
+
+    private static RecordValidationError error(Location location, String path, String message) {
+        int line = location == null ? -1 : location.getLineNumber();
+        int column = location == null ? -1 : location.getColumnNumber();
+        return new RecordValidationError(path, message, line, column);
+    }
+}
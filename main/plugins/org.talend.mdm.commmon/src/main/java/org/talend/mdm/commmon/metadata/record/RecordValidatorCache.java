@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.talend.mdm.commmon.metadata.ComplexTypeMetadata;
+import org.talend.mdm.commmon.metadata.MetadataRepository;
+
+/**
+ * Keeps one compiled {@link RecordValidator} per entity type. Validators are kept in the
+ * {@link MetadataRepository#getComputedValues() computed values} of the repository that contains the entity type, so
+ * they are discarded when the repository is modified and never keep a replaced repository in memory. Repositories
+ * with entity types of same name have their own validators. This class is thread safe.
+ */
+public class RecordValidatorCache {
+
+    // Key of validators in repository computed values (a new key on clear() makes previous validators unreachable).
+    private volatile Object key = new Object();
+
+    /**
+     * @param repository The repository that contains <code>type</code>.
+     * @param type A frozen entity type.
+     * @return The compiled validator for <code>type</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public RecordValidator getValidator(MetadataRepository repository, ComplexTypeMetadata type) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null.");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null.");
+        }
+        Object currentKey = key;
+        ConcurrentMap<Object, Object> computedValues = repository.getComputedValues();
+        ConcurrentMap<String, RecordValidator> validators = (ConcurrentMap<String, RecordValidator>) computedValues
+                .get(currentKey);
+        if (validators == null) {
+            validators = new ConcurrentHashMap<String, RecordValidator>();
+            ConcurrentMap<String, RecordValidator> previous = (ConcurrentMap<String, RecordValidator>) computedValues
+                    .putIfAbsent(currentKey, validators);
+            if (previous != null) {
+                validators = previous;
+            }
+        }
+        RecordValidator validator = validators.get(type.getName());
+        if (validator == null || validator.getType() != type) {
+            validator = RecordValidator.compile(type);
+            validators.put(type.getName(), validator);
+        }
+        return validator;
+    }
+
+    /**
+     * @param repository A loaded repository.
+     * @param entityTypeName An entity type name.
+     * @return The compiled validator for entity type <code>entityTypeName</code>.
+     */
+    public RecordValidator getValidator(MetadataRepository repository, String entityTypeName) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null.");
+        }
+        ComplexTypeMetadata type = repository.getComplexType(entityTypeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Entity type '" + entityTypeName + "' does not exist.");
+        }
+        return getValidator(repository, type);
+    }
+
+    /**
+     * Removes all compiled validators (validators kept in repositories are released with their repository).
+     */
+    public void clear() {
+        key = new Object();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ *
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ *
+ * You should have received a copy of the agreement
+ * along with this program; if not, write to Talend SA
+ * 9 rue Pages 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.record;
+
+import java.math.BigInteger;
+
+import org.talend.mdm.commmon.metadata.Facets;
+import org.talend.mdm.commmon.metadata.MetadataUtils;
+import org.talend.mdm.commmon.metadata.TypeMetadata;
+import org.talend.mdm.commmon.metadata.Types;
+
+/**
+ * Checks for a simple value: {@link Facets facets} (max length, total and fraction digits, enumeration) and lexical
+ * format for numbers and booleans. Checks apply to the value after XML schema white space normalization (preserved
+ * for string, replaced for normalizedString and collapsed for all other types).
+ */
+class ValueRule {
+
+    private static enum Kind {
+        STRING,
+        INTEGER,
+        DECIMAL,
+        FLOATING,
+        BOOLEAN
+    }
+
+    private static enum WhiteSpace {
+        PRESERVE,
+        REPLACE,
+        COLLAPSE
+    }
+
+    private final Kind kind;
+
+    private final WhiteSpace whiteSpace;
+
+    private final String typeName;
+
+    private final Facets facets;
+
+    // Range of integer types: signed decimal value without leading zeros, null if unbounded
+    private final String minValue;
+
+    private final String maxValue;
+
+    ValueRule(TypeMetadata type) {
+        String concreteTypeName = MetadataUtils.getSuperConcreteType(type).getName();
+        typeName = concreteTypeName;
+        facets = Facets.of(type);
+        if (Types.DECIMAL.equals(concreteTypeName)) {
+            kind = Kind.DECIMAL;
+        } else if (Types.DOUBLE.equals(concreteTypeName) || Types.FLOAT.equals(concreteTypeName)
+                || Types.UNSIGNED_DOUBLE.equals(concreteTypeName)) {
+            kind = Kind.FLOATING;
+        } else if (Types.BOOLEAN.equals(concreteTypeName)) {
+            kind = Kind.BOOLEAN;
+        } else if (Types.INTEGERS.contains(concreteTypeName) || Types.LONGS.contains(concreteTypeName)
+                || Types.SHORTS.contains(concreteTypeName) || Types.BYTE.equals(concreteTypeName)
+                || Types.UNSIGNED_BYTE.equals(concreteTypeName)) {
+            kind = Kind.INTEGER;
+        } else {
+            kind = Kind.STRING;
+        }
+        if (Types.STRING.equals(concreteTypeName)) {
+            whiteSpace = WhiteSpace.PRESERVE;
+        } else if ("normalizedString".equals(concreteTypeName)) { //$NON-NLS-1$
+            whiteSpace = WhiteSpace.REPLACE;
+        } else {
+            whiteSpace = WhiteSpace.COLLAPSE;
+        }
+        String[] range = getRange(concreteTypeName);
+        minValue = range[0];
+        maxValue = range[1];
+    }
+
+    /**
+     * @param value A non empty value.
+     * @return An error message or <code>null</code> if value is valid.
+     */
+    String check(String value) {
+        String normalizedValue = normalize(value, whiteSpace);
+        String facetError = facets.check(normalizedValue);
+        if (facetError != null) {
+            return facetError;
+        }
+        switch (kind) {
+        case INTEGER:
+            return checkInteger(normalizedValue);
+        case DECIMAL:
+            return checkDecimal(normalizedValue);
+        case FLOATING:
+            return checkFloating(normalizedValue);
+        case BOOLEAN:
+            if (!"true".equals(normalizedValue) && !"false".equals(normalizedValue) && !"1".equals(normalizedValue) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    && !"0".equals(normalizedValue)) { //$NON-NLS-1$
+                return invalidValue(normalizedValue);
+            }
+            return null;
+        default:
+            return null;
+        }
+    }
+
+    // Single scan of digits (same format as Facets digits count), range check is done on the scanned digits.
+    private String checkInteger(String value) {
+        int start = 0;
+        boolean negative = false;
+        if (start < value.length() && (value.charAt(start) == '+' || value.charAt(start) == '-')) {
+            negative = value.charAt(start) == '-';
+            start++;
+        }
+        if (start == value.length()) {
+            return invalidValue(value);
+        }
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return invalidValue(value);
+            }
+        }
+        while (start < value.length() - 1 && value.charAt(start) == '0') {
+            start++;
+        }
+        if (value.charAt(start) == '0') {
+            negative = false; // "-0" is zero
+        }
+        if ((minValue != null && compare(value, start, negative, minValue) < 0)
+                || (maxValue != null && compare(value, start, negative, maxValue) > 0)) {
+            return "Value '" + value + "' is out of range for type '" + typeName + "'."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        return null;
+    }
+
+    // Compares an integer (sign and digits from start, without leading zeros) with a bound.
+    private static int compare(String value, int start, boolean negative, String bound) {
+        boolean boundNegative = bound.charAt(0) == '-';
+        if (negative != boundNegative) {
+            return negative ? -1 : 1;
+        }
+        int boundStart = boundNegative ? 1 : 0;
+        int result = (value.length() - start) - (bound.length() - boundStart);
+        for (int i = 0; result == 0 && start + i < value.length(); i++) {
+            result = value.charAt(start + i) - bound.charAt(boundStart + i);
+        }
+        return negative ? -result : result;
+    }
+
+    // xsd:decimal lexical format: optional sign, digits with an optional decimal point (no exponent).
+    private String checkDecimal(String value) {
+        int start = 0;
+        if (start < value.length() && (value.charAt(start) == '+' || value.charAt(start) == '-')) {
+            start++;
+        }
+        boolean hasDigit = false;
+        boolean hasPoint = false;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c == '.' && !hasPoint) {
+                hasPoint = true;
+            } else {
+                return invalidValue(value);
+            }
+        }
+        return hasDigit ? null : invalidValue(value);
+    }
+
+    // xsd:double and xsd:float lexical format: decimal with an optional exponent, INF, -INF or NaN (Java suffixes,
+    // hexadecimal and "Infinity" are not allowed).
+    private String checkFloating(String value) {
+        if ("INF".equals(value) || "-INF".equals(value) || "NaN".equals(value)) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return null;
+        }
+        int length = value.length();
+        int i = 0;
+        if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            i++;
+        }
+        int mantissaStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        int integerDigits = i - mantissaStart;
+        int fractionDigits = 0;
+        if (i < length && value.charAt(i) == '.') {
+            int fractionStart = ++i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            fractionDigits = i - fractionStart;
+        }
+        if (integerDigits + fractionDigits == 0) {
+            return invalidValue(value);
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return invalidValue(value);
+            }
+        }
+        return i == length ? null : invalidValue(value);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return <code>value</code> with XML schema white space normalization applied (same instance if value is already
+     * normalized).
+     */
+    private static String normalize(String value, WhiteSpace whiteSpace) {
+        if (whiteSpace == WhiteSpace.PRESERVE || !needsNormalization(value, whiteSpace)) {
+            return value;
+        }
+        StringBuilder normalizedValue = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean isSpace = c == ' ' || c == '\t' || c == '\n' || c == '\r';
+            if (whiteSpace == WhiteSpace.REPLACE) {
+                normalizedValue.append(isSpace ? ' ' : c);
+            } else if (isSpace) {
+                pendingSpace = normalizedValue.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalizedValue.append(' ');
+                    pendingSpace = false;
+                }
+                normalizedValue.append(c);
+            }
+        }
+        return normalizedValue.toString();
+    }
+
+    private static boolean needsNormalization(String value, WhiteSpace whiteSpace) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') {
+                return true;
+            }
+            if (c == ' ' && whiteSpace == WhiteSpace.COLLAPSE
+                    && (i == 0 || i == length - 1 || value.charAt(i + 1) == ' ')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String invalidValue(String value) {
+        return "Value '" + value + "' is not a valid '" + typeName + "'."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    private static String[] getRange(String typeName) {
+        if (Types.INT.equals(typeName)) {
+            return range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        } else if (Types.LONG.equals(typeName)) {
+            return range(Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (Types.SHORT.equals(typeName)) {
+            return range(Short.MIN_VALUE, Short.MAX_VALUE);
+        } else if (Types.BYTE.equals(typeName)) {
+            return range(Byte.MIN_VALUE, Byte.MAX_VALUE);
+        } else if (Types.UNSIGNED_INT.equals(typeName)) {
+            return range(0, 0xFFFFFFFFL);
+        } else if (Types.UNSIGNED_SHORT.equals(typeName)) {
+            return range(0, 0xFFFF);
+        } else if (Types.UNSIGNED_BYTE.equals(typeName)) {
+            return range(0, 0xFF);
+        } else if (Types.UNSIGNED_LONG.equals(typeName)) {
+            return new String[] { "0", BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE).toString() }; //$NON-NLS-1$
+        } else if (Types.POSITIVE_INTEGER.equals(typeName)) {
+            return new String[] { "1", null }; //$NON-NLS-1$
+        } else if (Types.NON_NEGATIVE_INTEGER.equals(typeName)) {
+            return new String[] { "0", null }; //$NON-NLS-1$
+        } else if (Types.NEGATIVE_INTEGER.equals(typeName)) {
+            return new String[] { null, "-1" }; //$NON-NLS-1$
+        } else if (Types.NON_POSITIVE_INTEGER.equals(typeName)) {
+            return new String[] { null, "0" }; //$NON-NLS-1$
+        }
+        return new String[] { null, null };
+    }
+
+    private static String[] range(long min, long max) {
+        return new String[] { String.valueOf(min), String.valueOf(max) };
+    }
+}
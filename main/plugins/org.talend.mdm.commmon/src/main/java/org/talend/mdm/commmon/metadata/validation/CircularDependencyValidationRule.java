@@ -27,15 +27,31 @@ class CircularDependencyValidationRule implements ValidationRule {
 
     private final MetadataRepository repository;
 
+    private final List<ComplexTypeMetadata> types;
+
     public CircularDependencyValidationRule(MetadataRepository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * @param repository The repository that contains types.
+     * @param types The types to check (expected to contain all types they depend on) or <code>null</code> to check all
+     * types in <code>repository</code>.
+     */
+    public CircularDependencyValidationRule(MetadataRepository repository, List<ComplexTypeMetadata> types) {
         this.repository = repository;
+        this.types = types;
     }
 
     @Override
     public boolean perform(ValidationHandler handler) {
         try {
             // Attempts to sort all types in dependency order (throw exception if can't be done).
-            MetadataUtils.sortTypes(repository, MetadataUtils.SortType.STRICT);
+            if (types == null) {
+                MetadataUtils.sortTypes(repository, MetadataUtils.SortType.STRICT);
+            } else {
+                MetadataUtils.sortTypes(repository, types, MetadataUtils.SortType.STRICT);
+            }
             return true;
         } catch (CircularDependencyException e) {
             Map<ComplexTypeMetadata, List<FieldMetadata>> cycleHints = e.getCycleHints();
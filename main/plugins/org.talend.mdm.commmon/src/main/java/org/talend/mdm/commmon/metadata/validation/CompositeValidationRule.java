@@ -28,7 +28,7 @@ public class CompositeValidationRule implements ValidationRule {
     public boolean perform(ValidationHandler handler) {
         boolean allSucceed = true;
         for (ValidationRule rule : rules) {
-            boolean succeeded = rule.perform(handler);
+            boolean succeeded = ValidationStats.perform(rule, handler);
             allSucceed &= succeeded;
             if (!succeeded && !rule.continueOnFail()) {
                 break;
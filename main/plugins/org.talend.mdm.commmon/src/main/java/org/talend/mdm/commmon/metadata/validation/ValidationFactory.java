@@ -10,8 +10,12 @@
 
 package org.talend.mdm.commmon.metadata.validation;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.talend.mdm.commmon.metadata.*;
@@ -20,7 +24,12 @@ public class ValidationFactory {
 
     private static final String VALIDATION_MARKER = "validation.validated"; //$NON-NLS-1$
 
-    private static boolean isValidated(MetadataExtensible metadataElement) {
+    /**
+     * @param metadataElement A type or a field.
+     * @return <code>true</code> if validation rule of <code>metadataElement</code> was already returned by
+     * <code>getRule</code> (i.e. element was validated).
+     */
+    public static boolean isValidated(MetadataExtensible metadataElement) {
         return BooleanUtils.isTrue(metadataElement.<Boolean> getData(VALIDATION_MARKER));
     }
 
@@ -33,11 +42,66 @@ public class ValidationFactory {
             }
         }
         field.setData(VALIDATION_MARKER, true);
-        return field.createValidationRule();
+        return ValidationStats.profile(field.createValidationRule());
     }
 
     public static ValidationRule getRule(MetadataRepository repository) {
-        return new CircularDependencyValidationRule(repository);
+        return ValidationStats.profile(new CircularDependencyValidationRule(repository));
+    }
+
+    /**
+     * @param repository A repository.
+     * @param types A sub set of entity types in <code>repository</code> (expected to contain all types they depend on).
+     * @return The data model-scoped validation rule that only checks <code>types</code>.
+     */
+    public static ValidationRule getRule(MetadataRepository repository, List<ComplexTypeMetadata> types) {
+        return ValidationStats.profile(new CircularDependencyValidationRule(repository, types));
+    }
+
+    /**
+     * Clears validation state of <code>type</code>, of its fields and of its contained types: next call to
+     * <code>getRule</code> for them returns their validation rules again (instead of a no op rule).
+     *
+     * @param type A type to validate again.
+     */
+    public static void resetValidation(ComplexTypeMetadata type) {
+        setValidation(type, false);
+    }
+
+    /**
+     * Marks <code>type</code>, its fields and its contained types as validated: next call to <code>getRule</code> for
+     * them returns a no op rule (e.g. because validation results were replayed from a cache).
+     *
+     * @param type A type to consider as validated.
+     */
+    public static void markValidated(ComplexTypeMetadata type) {
+        setValidation(type, true);
+    }
+
+    private static void setValidation(ComplexTypeMetadata type, boolean isValidated) {
+        Set<ComplexTypeMetadata> processedTypes = new HashSet<ComplexTypeMetadata>();
+        Deque<ComplexTypeMetadata> typesToReset = new ArrayDeque<ComplexTypeMetadata>();
+        typesToReset.push(type);
+        while (!typesToReset.isEmpty()) {
+            ComplexTypeMetadata current = typesToReset.pop();
+            if (!processedTypes.add(current)) {
+                continue;
+            }
+            setValidationMarker(current, isValidated);
+            for (FieldMetadata field : current.getFields()) {
+                setValidationMarker(field, isValidated);
+                if (field instanceof ContainedTypeFieldMetadata) {
+                    typesToReset.push(((ContainedTypeFieldMetadata) field).getContainedType());
+                }
+            }
+        }
+    }
+
+    // Reset only updates validated elements (no need to add a data entry to elements never validated).
+    private static void setValidationMarker(MetadataExtensible metadataElement, boolean isValidated) {
+        if (isValidated || isValidated(metadataElement)) {
+            metadataElement.setData(VALIDATION_MARKER, isValidated);
+        }
     }
 
     public static ValidationRule getRule(SoftFieldRef field) {
@@ -104,7 +168,7 @@ public class ValidationFactory {
             }
         }
         type.setData(VALIDATION_MARKER, true);
-        return type.createValidationRule();
+        return ValidationStats.profile(type.createValidationRule());
     }
 
     public static ValidationRule getRule(SoftTypeRef type) {
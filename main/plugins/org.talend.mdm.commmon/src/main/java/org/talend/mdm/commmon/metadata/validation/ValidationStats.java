@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2006-2016 Talend Inc. - www.talend.com
+ * 
+ * This source code is available under agreement available at
+ * %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+ * 
+ * You should have received a copy of the agreement along with this program; if not, write to Talend SA 9 rue Pages
+ * 92150 Suresnes, France
+ */
+
+package org.talend.mdm.commmon.metadata.validation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.talend.mdm.commmon.metadata.ValidationHandler;
+
+/**
+ * <p>
+ * Collects validation rule statistics: number of invocations, total and max execution time and number of failures per
+ * rule class. Statistics are collected by {@link CompositeValidationRule} (for each grouped rule) and for rules returned
+ * by {@link ValidationFactory} that are not composite (e.g. circular dependency check).
+ * </p>
+ * <p>
+ * Only leaf rules are recorded (composite rules are not), and times are <i>self</i> times: time spent in rules
+ * performed during a rule execution (e.g. a foreign key check that validates the referenced type) is recorded for
+ * these rules only. So the sum of all rule times is the time spent in validation rules.
+ * </p>
+ * <p>
+ * Collection is disabled by default (enable it with {@link #setEnabled(boolean)} or with system property
+ * <code>mdm.validation.stats=true</code>). When disabled, the only overhead is a volatile read per rule execution.
+ * Statistics are cumulative until {@link #reset()} is called.
+ * </p>
+ */
+public class ValidationStats {
+
+    private static final Logger LOGGER = Logger.getLogger(ValidationStats.class);
+
+    private static final ConcurrentMap<Class<?>, RuleStatistics> STATISTICS = new ConcurrentHashMap<Class<?>, RuleStatistics>();
+
+    private static volatile boolean enabled = Boolean.getBoolean("mdm.validation.stats"); //$NON-NLS-1$
+
+    // Rules being performed by current thread: each frame holds the time spent in rules nested in the frame's rule.
+    private static final ThreadLocal<Deque<long[]>> FRAMES = new ThreadLocal<Deque<long[]>>() {
+
+        @Override
+        protected Deque<long[]> initialValue() {
+            return new ArrayDeque<long[]>();
+        }
+    };
+
+    private ValidationStats() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled <code>true</code> to collect statistics for next rule executions, <code>false</code> to stop
+     * collection (statistics collected so far are kept).
+     */
+    public static void setEnabled(boolean enabled) {
+        ValidationStats.enabled = enabled;
+    }
+
+    /**
+     * Removes all statistics collected so far.
+     */
+    public static void reset() {
+        STATISTICS.clear();
+    }
+
+    /**
+     * @return A snapshot of statistics (rule class name to statistics), ordered by decreasing total time.
+     */
+    public static Map<String, RuleStatistics> getStatistics() {
+        List<RuleStatistics> snapshot = new ArrayList<RuleStatistics>();
+        for (RuleStatistics statistics : STATISTICS.values()) {
+            snapshot.add(statistics.copy());
+        }
+        Collections.sort(snapshot, new Comparator<RuleStatistics>() {
+
+            @Override
+            public int compare(RuleStatistics o1, RuleStatistics o2) {
+                long diff = o2.getTotalTimeNanos() - o1.getTotalTimeNanos();
+                return diff > 0 ? 1 : (diff < 0 ? -1 : o1.getRuleName().compareTo(o2.getRuleName()));
+            }
+        });
+        Map<String, RuleStatistics> statistics = new LinkedHashMap<String, RuleStatistics>();
+        for (RuleStatistics ruleStatistics : snapshot) {
+            statistics.put(ruleStatistics.getRuleName(), ruleStatistics);
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * @return A human readable summary of statistics (one line per rule, slowest rules first).
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder("Validation rule statistics:"); //$NON-NLS-1$
+        for (RuleStatistics statistics : getStatistics().values()) {
+            summary.append('\n').append(statistics);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Logs {@link #getSummary() summary} (at INFO level) if statistics collection is enabled.
+     */
+    public static void logSummary() {
+        if (enabled && LOGGER.isInfoEnabled()) {
+            LOGGER.info(getSummary());
+        }
+    }
+
+    /**
+     * Performs <code>rule</code> and records its statistics if collection is enabled.
+     * 
+     * @param rule A validation rule.
+     * @param handler Handler passed to <code>rule</code>.
+     * @return Result of <code>rule</code> execution.
+     */
+    static boolean perform(ValidationRule rule, ValidationHandler handler) {
+        if (rule instanceof ProfiledValidationRule) {
+            rule = ((ProfiledValidationRule) rule).rule;
+        }
+        if (!enabled || rule instanceof CompositeValidationRule) {
+            return rule.perform(handler);
+        }
+        Deque<long[]> frames = FRAMES.get();
+        long[] nestedTime = new long[1];
+        frames.push(nestedTime);
+        long start = System.nanoTime();
+        boolean succeeded;
+        long time;
+        try {
+            succeeded = rule.perform(handler);
+        } finally {
+            time = System.nanoTime() - start;
+            frames.pop();
+            long[] parentNestedTime = frames.peek();
+            if (parentNestedTime != null) {
+                parentNestedTime[0] += time;
+            }
+        }
+        record(rule.getClass(), time - nestedTime[0], succeeded);
+        return succeeded;
+    }
+
+    /**
+     * @return <code>rule</code> wrapped so its executions are recorded if collection is enabled (composite rules and
+     * constant rules are returned as is).
+     */
+    static ValidationRule profile(ValidationRule rule) {
+        if (!enabled || rule instanceof CompositeValidationRule || rule instanceof NoOpValidationRule) {
+            return rule;
+        }
+        return new ProfiledValidationRule(rule);
+    }
+
+    private static void record(Class<?> ruleClass, long time, boolean succeeded) {
+        RuleStatistics statistics = STATISTICS.get(ruleClass);
+        if (statistics == null) {
+            statistics = new RuleStatistics(ruleClass.getName());
+            RuleStatistics previous = STATISTICS.putIfAbsent(ruleClass, statistics);
+            if (previous != null) {
+                statistics = previous;
+            }
+        }
+        statistics.record(time, succeeded);
+    }
+
+    /**
+     * Statistics for a validation rule class.
+     */
+    public static class RuleStatistics {
+
+        private final String ruleName;
+
+        private final AtomicLong invocationCount = new AtomicLong();
+
+        private final AtomicLong totalTime = new AtomicLong();
+
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private final AtomicLong failureCount = new AtomicLong();
+
+        private RuleStatistics(String ruleName) {
+            this.ruleName = ruleName;
+        }
+
+        private void record(long time, boolean succeeded) {
+            invocationCount.incrementAndGet();
+            totalTime.addAndGet(time);
+            long max = maxTime.get();
+            while (time > max && !maxTime.compareAndSet(max, time)) {
+                max = maxTime.get();
+            }
+            if (!succeeded) {
+                failureCount.incrementAndGet();
+            }
+        }
+
+        private RuleStatistics copy() {
+            RuleStatistics copy = new RuleStatistics(ruleName);
+            copy.invocationCount.set(invocationCount.get());
+            copy.totalTime.set(totalTime.get());
+            copy.maxTime.set(maxTime.get());
+            copy.failureCount.set(failureCount.get());
+            return copy;
+        }
+
+        /**
+         * @return Class name of the rule.
+         */
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public long getInvocationCount() {
+            return invocationCount.get();
+        }
+
+        /**
+         * @return Total self time (time spent in nested rules is excluded).
+         */
+        public long getTotalTimeNanos() {
+            return totalTime.get();
+        }
+
+        public long getMaxTimeNanos() {
+            return maxTime.get();
+        }
+
+        public long getAverageTimeNanos() {
+            long count = invocationCount.get();
+            return count == 0 ? 0 : totalTime.get() / count;
+        }
+
+        /**
+         * @return Number of executions where rule returned <code>false</code>.
+         */
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        @Override
+        public String toString() {
+            return ruleName + ": " + getInvocationCount() + " invocation(s), " //$NON-NLS-1$ //$NON-NLS-2$
+                    + TimeUnit.NANOSECONDS.toMillis(getTotalTimeNanos()) + " ms total, " //$NON-NLS-1$
+                    + TimeUnit.NANOSECONDS.toMicros(getMaxTimeNanos()) + " us max, " //$NON-NLS-1$
+                    + getFailureCount() + " failure(s)"; //$NON-NLS-1$
+        }
+    }
+
+    private static class ProfiledValidationRule implements ValidationRule {
+
+        private final ValidationRule rule;
+
+        private ProfiledValidationRule(ValidationRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public boolean perform(ValidationHandler handler) {
+            return ValidationStats.perform(rule, handler);
+        }
+
+        @Override
+        public boolean continueOnFail() {
+            return rule.continueOnFail();
+        }
+    }
+}